@@ -0,0 +1,70 @@
+// File: src/jmh/java/com/swedtrac/workorder/pricelist/PriceListLoadBenchmark.java
+package com.swedtrac.workorder.pricelist;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kall inläsning av prislistan: tolkning av arbetsboken (utan kompilerad fil)
+ * respektive start från en redan kompilerad, minnesmappad fil.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PriceListLoadBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"streaming", "workbook"})
+    public String loader;
+
+    private Path workbook;
+    private Path parsedCache;
+    private Path compiledCache;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        workbook = SyntheticPriceList.write(rows);
+        parsedCache = Files.createTempFile("prislista-parse-", ".swpl");
+        compiledCache = Files.createTempFile("prislista-mapped-", ".swpl");
+        Files.delete(compiledCache);
+        SyntheticPriceList.service(workbook, loader, compiledCache).load();
+    }
+
+    @Setup(Level.Invocation)
+    public void dropParsedCache() throws IOException {
+        // utan kompilerad fil måste arbetsboken tolkas om
+        Files.deleteIfExists(parsedCache);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(workbook);
+        Files.deleteIfExists(parsedCache);
+        Files.deleteIfExists(compiledCache);
+    }
+
+    @Benchmark
+    public PriceListSnapshot parseWorkbook() {
+        PriceListService service = SyntheticPriceList.service(workbook, loader, parsedCache);
+        service.load();
+        service.shutdown();
+        return service.getSnapshot();
+    }
+
+    @Benchmark
+    public PriceListSnapshot mapCompiled() {
+        PriceListService service = SyntheticPriceList.service(workbook, loader, compiledCache);
+        service.load();
+        service.shutdown();
+        return service.getSnapshot();
+    }
+}
@@ -0,0 +1,95 @@
+// File: src/jmh/java/com/swedtrac/workorder/pricelist/PriceListLookupBenchmark.java
+package com.swedtrac.workorder.pricelist;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Varma uppslag mot en inläst prislista: exakt EM-nummer, EM-prefix (autocomplete),
+ * namnsökning via trigramindexet och felstavade EM-nummer.
+ * Frågorna väljs ur en fast uppsättning så att alla körningar ser samma mix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceListLookupBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private PriceListService service;
+    private String[] exact;
+    private String[] prefixes;
+    private String[] names;
+    private String[] typos;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        Path workbook = SyntheticPriceList.write(rows);
+        Path compiled = Files.createTempFile("prislista-bench-", ".swpl");
+        Files.delete(compiled);
+        service = SyntheticPriceList.service(workbook, "streaming", compiled);
+        service.load();
+        Files.deleteIfExists(workbook);
+        Files.deleteIfExists(compiled);
+
+        Random random = new Random(42);
+        exact = new String[QUERIES];
+        prefixes = new String[QUERIES];
+        names = new String[QUERIES];
+        typos = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String em = SyntheticPriceList.emNr(random.nextInt(rows));
+            exact[i] = em;
+            prefixes[i] = em.substring(0, 2 + random.nextInt(4));
+            names[i] = SyntheticPriceList.WORDS[random.nextInt(SyntheticPriceList.WORDS.length)].substring(0, 4);
+            // en siffra utbytt = redigeringsavstånd 1
+            char[] c = em.toCharArray();
+            int pos = c.length - 1 - random.nextInt(3);
+            c[pos] = c[pos] == '9' ? '0' : (char) (c[pos] + 1);
+            typos[i] = new String(c);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        service.shutdown();
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public PriceItem exactLookup() {
+        return service.findByArticleNumber(exact[nextQuery()]);
+    }
+
+    @Benchmark
+    public List<PriceItem> prefixSearch() {
+        return service.searchByPrefix(prefixes[nextQuery()], 20);
+    }
+
+    @Benchmark
+    public List<PriceItem> nameSearch() {
+        return service.searchByPrefix(names[nextQuery()], 20);
+    }
+
+    @Benchmark
+    public List<PriceItem> fuzzySearch() {
+        return service.fuzzySearch(typos[nextQuery()], 2, 20);
+    }
+}
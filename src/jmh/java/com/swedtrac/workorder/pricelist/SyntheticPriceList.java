@@ -0,0 +1,72 @@
+// File: src/jmh/java/com/swedtrac/workorder/pricelist/SyntheticPriceList.java
+package com.swedtrac.workorder.pricelist;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Genererar en prislista med samma rubriker som den riktiga (Material, EM nr, Art nr,
+ * Pris inköp, Pris till kund, Enhet) men med valfritt antal rader, för benchmarks.
+ * Innehållet är deterministiskt (fast seed) så att mätningar går att jämföra.
+ */
+final class SyntheticPriceList {
+
+    static final String[] WORDS = {
+            "FILTER", "OLJA", "HYDRAULOLJA", "LAGER", "PACKNING", "SLANG", "KOPPLING", "BROMSBELÄGG",
+            "SKRUV", "MUTTER", "BRICKA", "TÄTNING", "KABEL", "RELÄ", "SÄKRING", "LAMPA",
+            "FLÄKT", "PUMP", "VENTIL", "FJÄDER", "AXEL", "HJUL", "KOLBORSTE", "GIVARE"
+    };
+    static final String[] UNITS = {"st", "kg", "L", "m", "sats"};
+
+    private SyntheticPriceList() {
+    }
+
+    /** EM-nummer för rad i, på formen "12 34 567" (unikt per rad). */
+    static String emNr(int i) {
+        int n = 1_000_000 + i * 7;
+        String s = Integer.toString(n);
+        return s.substring(0, 2) + " " + s.substring(2, 4) + " " + s.substring(4);
+    }
+
+    static String name(int i, Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + (10 + i % 90);
+    }
+
+    static Path write(int rows) throws IOException {
+        Path file = Files.createTempFile("prislista-" + rows + "-", ".xlsx");
+        Random random = new Random(rows);
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(200)) {
+            Sheet sheet = wb.createSheet("Prislista");
+            Row header = sheet.createRow(0);
+            String[] titles = {"Material", "EM nr", "Art nr", "Pris inköp", "Pris till kund", "Enhet"};
+            for (int c = 0; c < titles.length; c++) header.createCell(c).setCellValue(titles[c]);
+            for (int i = 0; i < rows; i++) {
+                Row row = sheet.createRow(i + 1);
+                double purchase = Math.round(random.nextDouble() * 500_00) / 100.0 + 1;
+                row.createCell(0).setCellValue(name(i, random));
+                row.createCell(1).setCellValue(emNr(i));
+                row.createCell(2).setCellValue("A" + (100000 + i));
+                row.createCell(3).setCellValue(purchase);
+                row.createCell(4).setCellValue(Math.round(purchase * 125) / 100.0);
+                row.createCell(5).setCellValue(UNITS[random.nextInt(UNITS.length)]);
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                wb.write(out);
+            }
+            wb.dispose();
+        }
+        return file;
+    }
+
+    /** Tjänst som läser den genererade filen; compiledPath pekar ut cachefilen för binärformatet. */
+    static PriceListService service(Path workbook, String loader, Path compiledPath) {
+        return new PriceListService("file:" + workbook, false, 0, loader, 0, compiledPath.toString(), event -> { });
+    }
+}
@@ -0,0 +1,56 @@
+// File: src/main/java/com/swedtrac/workorder/archive/ArchiveController.java
+package com.swedtrac.workorder.archive;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/archive")
+@CrossOrigin(origins = "*")
+public class ArchiveController {
+
+    private final WorkOrderArchiver archiver;
+
+    public ArchiveController(WorkOrderArchiver archiver) {
+        this.archiver = archiver;
+    }
+
+    // ================================
+    // POST /api/archive/run
+    // Flytta gamla arkiverade ordrar till arkivtabellerna nu, i stället för att vänta på schemat.
+    // Körningen kan ta lång tid: 202 direkt med körningens id, läget hämtas från GET /api/archive/runs/{id}.
+    // ================================
+    @PostMapping("/run")
+    public ResponseEntity<?> run() {
+        return archiver.start()
+                .<ResponseEntity<?>>map(job -> ResponseEntity.accepted()
+                        .location(URI.create("/api/archive/runs/" + job.id()))
+                        .body(job))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(archiver.current().<Object>map(job -> job).orElse("Arkivering pågår redan")));
+    }
+
+    // ================================
+    // GET /api/archive/runs/{id}
+    // Läget för en körning: RUNNING, DONE (med resultat) eller FAILED (med fel)
+    // ================================
+    @GetMapping("/runs/{id}")
+    public ResponseEntity<ArchiveJob> getRun(@PathVariable long id) {
+        return archiver.job(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // ================================
+    // GET /api/archive/runs
+    // De senaste körningarna, senast startad först
+    // ================================
+    @GetMapping("/runs")
+    public List<ArchiveJob> getRuns() {
+        return archiver.jobs();
+    }
+}
@@ -0,0 +1,36 @@
+// File: src/main/java/com/swedtrac/workorder/archive/ArchiveJob.java
+package com.swedtrac.workorder.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * En arkiveringskörning som startats (schemat eller POST /api/archive/run) och dess läge.
+ * 'result' finns när körningen är klar, 'error' om den misslyckades.
+ */
+public record ArchiveJob(
+        long id,
+        State state,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        ArchiveRun result,
+        String error
+) {
+
+    public enum State {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    static ArchiveJob started(long id) {
+        return new ArchiveJob(id, State.RUNNING, LocalDateTime.now(), null, null, null);
+    }
+
+    ArchiveJob done(ArchiveRun result) {
+        return new ArchiveJob(id, State.DONE, startedAt, LocalDateTime.now(), result, null);
+    }
+
+    ArchiveJob failed(String error) {
+        return new ArchiveJob(id, State.FAILED, startedAt, LocalDateTime.now(), null, error);
+    }
+}
@@ -0,0 +1,18 @@
+// File: src/main/java/com/swedtrac/workorder/archive/ArchiveRun.java
+package com.swedtrac.workorder.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultatet av en arkiveringskörning: ordrar arkiverade före 'cutoff' som flyttats,
+ * i hur många batchar, och hur lång tid det tog.
+ */
+public record ArchiveRun(
+        LocalDateTime cutoff,
+        int batches,
+        int orders,
+        int timeEntries,
+        int materialEntries,
+        long millis
+) {
+}
@@ -0,0 +1,293 @@
+// File: src/main/java/com/swedtrac/workorder/archive/WorkOrderArchiver.java
+package com.swedtrac.workorder.archive;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderMaterialEntry;
+import com.swedtrac.workorder.domain.WorkOrderTimeEntry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flyttar ordrar som varit arkiverade längre än 'after-days' från work_orders (och deras tid-
+ * och materialrader) till arkivtabellerna work_orders_archive m.fl., så att de dagliga tabellerna
+ * och deras index bara innehåller ordrar som används.
+ *
+ * Körs enligt 'cron' (och via POST /api/archive/run) i bakgrunden på en egen tråd, en körning i taget;
+ * de senaste körningarnas läge finns kvar för GET /api/archive/runs. Ordrarna flyttas i batchar om 'batch-size',
+ * en transaktion per batch, äldst arkiverade först; högst 'max-batches' per körning, resten tas nästa gång.
+ * Varje batch låser sina ordrar (FOR UPDATE SKIP LOCKED): en samtidig statusändring väntar tills
+ * flytten är klar, och ordrar som någon annan håller på med hoppas över till nästa körning.
+ * Flytten är en DELETE ... RETURNING som matas rakt in i arkivtabellens INSERT (PostgreSQL),
+ * så varje rad läses en gång och id behålls.
+ *
+ * Kolumnerna som flyttas läses ur databasens metadata (alla kolumner i work_orders m.fl.) och
+ * kontrolleras mot arkivtabellerna när applikationen startat. Saknar en arkivtabell någon kolumn
+ * — t.ex. ett nytt fält i WorkOrder som inte lagts till i ArchivedWorkOrder — arkiveras ingenting
+ * förrän det är rättat, i stället för att kolumnen tyst försvinner vid flytten.
+ *
+ * Flyttade ordrar läses fortfarande via samma endpoints och finns kvar i sökindexet; de går
+ * däremot inte att ändra. Second-level-cachen för de berörda entiteterna töms av Hibernate
+ * efter varje batch (native DELETE synkad mot entitetsklasserna).
+ */
+@Component
+public class WorkOrderArchiver {
+
+    // Tabellerna som flyttas; arkivtabellen heter likadant med suffixet _archive
+    private static final List<String> TABLES = List.of("work_orders", "work_order_time_entries", "work_order_material_entries");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transaction;
+    private final DataSource dataSource;
+    // tabell -> kolumnlista att flytta; null tills schemat kontrollerats utan fel
+    private volatile Map<String, String> columns;
+    private final int afterDays;
+    private final int batchSize;
+    private final int maxBatches;
+    private static final int KEEP_JOBS = 20;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong jobIds = new AtomicLong();
+    // senaste körningarna, äldst först
+    private final Map<Long, ArchiveJob> jobs = new LinkedHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "arkivering");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WorkOrderArchiver(
+            PlatformTransactionManager transactionManager,
+            DataSource dataSource,
+            @Value("${swedtrac.archive.after-days:365}") int afterDays,
+            @Value("${swedtrac.archive.batch-size:500}") int batchSize,
+            @Value("${swedtrac.archive.max-batches:200}") int maxBatches) {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.dataSource = dataSource;
+        this.afterDays = afterDays;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatches = Math.max(1, maxBatches);
+    }
+
+    /**
+     * Kontrollera arkivtabellerna direkt vid start, så att ett fel syns i loggen redan då
+     * och inte först vid nattens körning.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifySchema() {
+        try {
+            columns();
+            System.out.println("Arkivering: arkivtabellerna stämmer med " + TABLES);
+        } catch (IllegalStateException e) {
+            System.err.println("Arkivering avstängd: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${swedtrac.archive.cron:0 15 3 * * *}")
+    public void scheduled() {
+        if (start().isEmpty()) {
+            System.out.println("Arkivering: förra körningen pågår fortfarande, hoppar över");
+        }
+    }
+
+    /**
+     * Starta en arkivering i bakgrunden och returnera direkt. Tomt om en körning redan pågår.
+     */
+    public Optional<ArchiveJob> start() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        ArchiveJob job = ArchiveJob.started(jobIds.incrementAndGet());
+        record(job);
+        try {
+            executor.execute(() -> execute(job));
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            record(job.failed("Arkiveringen är avstängd"));
+            throw e;
+        }
+        return Optional.of(job);
+    }
+
+    /** En körning (pågående eller någon av de senaste), om den finns kvar. */
+    public Optional<ArchiveJob> job(long id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    /** De senaste körningarna, senast startad först. */
+    public List<ArchiveJob> jobs() {
+        synchronized (jobs) {
+            List<ArchiveJob> out = new ArrayList<>(jobs.values());
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    /** Den körning som pågår just nu, om någon. */
+    public Optional<ArchiveJob> current() {
+        return jobs().stream().filter(j -> j.state() == ArchiveJob.State.RUNNING).findFirst();
+    }
+
+    private void record(ArchiveJob job) {
+        synchronized (jobs) {
+            jobs.put(job.id(), job);
+            while (jobs.size() > KEEP_JOBS) {
+                jobs.remove(jobs.keySet().iterator().next());
+            }
+        }
+    }
+
+    private void execute(ArchiveJob job) {
+        try {
+            record(job.done(moveAll()));
+        } catch (RuntimeException e) {
+            System.err.println("Arkivering misslyckades: " + e.getMessage());
+            record(job.failed(e.getMessage()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ArchiveRun moveAll() {
+        Map<String, String> columns = columns();
+        long start = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+        int batches = 0;
+        int orders = 0;
+        int timeEntries = 0;
+        int materialEntries = 0;
+        while (batches < maxBatches) {
+            int[] moved = transaction.execute(status -> moveBatch(cutoff, columns));
+            if (moved == null || moved[0] == 0) break;
+            batches++;
+            orders += moved[0];
+            timeEntries += moved[1];
+            materialEntries += moved[2];
+            if (moved[0] < batchSize) break;
+        }
+        ArchiveRun result = new ArchiveRun(cutoff, batches, orders, timeEntries, materialEntries,
+                (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Arkivering: " + orders + " ordrar (" + timeEntries + " tidrader, " + materialEntries
+                + " materialrader) arkiverade före " + cutoff + " flyttade i " + batches + " batchar på "
+                + result.millis() + " ms");
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // En batch: {ordrar, tidrader, materialrader} som flyttats
+    private int[] moveBatch(LocalDateTime cutoff, Map<String, String> columns) {
+        @SuppressWarnings("unchecked")
+        List<Number> rows = entityManager.createNativeQuery(
+                        "SELECT id FROM work_orders WHERE archived_at < :cutoff "
+                                + "ORDER BY archived_at, id LIMIT :limit FOR UPDATE SKIP LOCKED")
+                .setParameter("cutoff", cutoff)
+                .setParameter("limit", batchSize)
+                .getResultList();
+        if (rows.isEmpty()) return new int[3];
+        List<Long> ids = rows.stream().map(Number::longValue).toList();
+
+        // raderna först, de refererar ordern
+        int time = move("work_order_time_entries", "work_order_id", columns, ids, WorkOrderTimeEntry.class);
+        int material = move("work_order_material_entries", "work_order_id", columns, ids, WorkOrderMaterialEntry.class);
+        int orders = move("work_orders", "id", columns, ids, WorkOrder.class);
+        return new int[]{orders, time, material};
+    }
+
+    private int move(String table, String key, Map<String, String> columnsByTable, List<Long> ids, Class<?> entity) {
+        String columns = columnsByTable.get(table);
+        String sql = "WITH moved AS (DELETE FROM " + table + " WHERE " + key + " IN (:ids) RETURNING " + columns + ") "
+                + "INSERT INTO " + table + "_archive (" + columns + ") SELECT " + columns + " FROM moved";
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                // bara den här entitetens cache töms, inte alla regioner
+                .addSynchronizedEntityClass(entity)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * Kolumnlistorna, lästa och kontrollerade första gången de behövs. Kastar IllegalStateException
+     * om en tabell saknas eller en arkivtabell saknar någon av tabellens kolumner (kontrolleras då
+     * igen nästa gång, så en rättning i databasen räcker).
+     */
+    private Map<String, String> columns() {
+        Map<String, String> checked = columns;
+        if (checked != null) return checked;
+        synchronized (this) {
+            if (columns != null) return columns;
+            Map<String, String> found = new HashMap<>();
+            List<String> problems = new ArrayList<>();
+            try (Connection connection = dataSource.getConnection()) {
+                for (String table : TABLES) {
+                    List<String> hot = columnNames(connection, table);
+                    Set<String> cold = new HashSet<>(columnNames(connection, table + "_archive"));
+                    List<String> missing = hot.stream().filter(c -> !cold.contains(c)).toList();
+                    if (hot.isEmpty()) {
+                        problems.add(table + " hittades inte");
+                    } else if (cold.isEmpty()) {
+                        problems.add(table + "_archive hittades inte");
+                    } else if (!missing.isEmpty()) {
+                        problems.add(table + "_archive saknar " + missing);
+                    }
+                    found.put(table, String.join(", ", hot));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("kunde inte läsa tabellernas kolumner: " + e.getMessage(), e);
+            }
+            if (!problems.isEmpty()) {
+                throw new IllegalStateException(String.join("; ", problems));
+            }
+            columns = Map.copyOf(found);
+            return columns;
+        }
+    }
+
+    // Tabellens kolumner i databasens ordning, i gemener (tom lista om tabellen saknas)
+    private static List<String> columnNames(Connection connection, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        // Databaser som lagrar ociterade namn med versaler (t.ex. H2) hittar annars inga tabeller
+        String name = meta.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        // tabellnamnet är ett LIKE-mönster där "_" matchar vilket tecken som helst; escapa det och
+        // behåll bara rader för exakt den tabellen (alla drivrutiner har ingen escape-sträng)
+        String escape = meta.getSearchStringEscape();
+        String pattern = escape == null || escape.isEmpty() ? name
+                : name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), connection.getSchema(), pattern, null)) {
+            while (rs.next()) {
+                if (!name.equals(rs.getString("TABLE_NAME"))) continue;
+                names.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+            }
+        }
+        return names;
+    }
+}
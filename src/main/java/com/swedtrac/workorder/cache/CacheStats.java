@@ -0,0 +1,31 @@
+// File: src/main/java/com/swedtrac/workorder/cache/CacheStats.java
+package com.swedtrac.workorder.cache;
+
+import java.util.List;
+
+/**
+ * Träffar och missar i second-level cache (per region) och frågecachen, sedan start.
+ * Med statistiken avstängd (swedtrac.cache.stats) är 'regions' tom och 'queries' null.
+ */
+public record CacheStats(
+        boolean secondLevelCacheEnabled,
+        boolean queryCacheEnabled,
+        boolean statisticsEnabled,
+        List<Region> regions,
+        Region queries
+) {
+
+    public record Region(
+            String name,
+            long hits,
+            long misses,
+            long puts,
+            double hitRatio
+    ) {
+
+        static Region of(String name, long hits, long misses, long puts) {
+            long lookups = hits + misses;
+            return new Region(name, hits, misses, puts, lookups > 0 ? (double) hits / lookups : 0.0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// File: src/main/java/com/swedtrac/workorder/cache/CacheStatsController.java
+package com.swedtrac.workorder.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "*")
+public class CacheStatsController {
+
+    // SessionFactoryImplementor: inställningarna (getSessionFactoryOptions) är bara
+    // icke-föråldrade där, inte på det publika SessionFactory-gränssnittet
+    private final SessionFactoryImplementor sessionFactory;
+
+    public CacheStatsController(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    }
+
+    // ================================
+    // GET /api/cache/stats
+    // Träff/miss per cacheregion och för frågecachen (kräver swedtrac.cache.stats=true)
+    // ================================
+    @GetMapping("/stats")
+    public CacheStats getStats() {
+        Statistics stats = sessionFactory.getStatistics();
+        var options = sessionFactory.getSessionFactoryOptions();
+        if (!stats.isStatisticsEnabled()) {
+            // inga siffror hellre än nollor som ser ut som en cache utan träffar
+            return new CacheStats(options.isSecondLevelCacheEnabled(), options.isQueryCacheEnabled(), false, List.of(), null);
+        }
+
+        List<CacheStats.Region> regions = new ArrayList<>();
+        String[] names = stats.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+        for (String name : names) {
+            CacheRegionStatistics r = stats.getCacheRegionStatistics(name);
+            if (r == null) continue;
+            regions.add(CacheStats.Region.of(name, r.getHitCount(), r.getMissCount(), r.getPutCount()));
+        }
+        CacheStats.Region queries = CacheStats.Region.of("queries",
+                stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount(), stats.getQueryCachePutCount());
+
+        return new CacheStats(options.isSecondLevelCacheEnabled(), options.isQueryCacheEnabled(), true, regions, queries);
+    }
+}
@@ -0,0 +1,51 @@
+// File: src/main/java/com/swedtrac/workorder/cache/EntityCacheConfig.java
+package com.swedtrac.workorder.cache;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderMaterialEntry;
+import com.swedtrac.workorder.domain.WorkOrderTimeEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Slår på second-level cache per entitet utifrån swedtrac.cache.*.
+ * Entiteterna har ingen @Cacheable; med sharedCache.mode ENABLE_SELECTIVE cachas bara de som
+ * här får en hibernate.classcache-inställning, så en entitet kan stängas av utan kodändring.
+ * Strategin är read-write: Hibernate låser posten under en ändring så att ingen läser ett halvt uppdaterat värde.
+ * Träff/miss-statistiken (swedtrac.cache.stats) är av som standard.
+ */
+@Configuration
+public class EntityCacheConfig implements HibernatePropertiesCustomizer {
+
+    private static final String CLASS_CACHE = "hibernate.classcache.";
+    private static final String READ_WRITE = "read-write";
+    private static final String STATISTICS = "hibernate.generate_statistics";
+
+    private final boolean workOrders;
+    private final boolean timeEntries;
+    private final boolean materialEntries;
+    private final boolean stats;
+
+    public EntityCacheConfig(
+            @Value("${swedtrac.cache.work-orders:true}") boolean workOrders,
+            @Value("${swedtrac.cache.time-entries:true}") boolean timeEntries,
+            @Value("${swedtrac.cache.material-entries:true}") boolean materialEntries,
+            @Value("${swedtrac.cache.stats:false}") boolean stats
+    ) {
+        this.workOrders = workOrders;
+        this.timeEntries = timeEntries;
+        this.materialEntries = materialEntries;
+        this.stats = stats;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (workOrders) hibernateProperties.put(CLASS_CACHE + WorkOrder.class.getName(), READ_WRITE);
+        if (timeEntries) hibernateProperties.put(CLASS_CACHE + WorkOrderTimeEntry.class.getName(), READ_WRITE);
+        if (materialEntries) hibernateProperties.put(CLASS_CACHE + WorkOrderMaterialEntry.class.getName(), READ_WRITE);
+        hibernateProperties.put(STATISTICS, stats);
+    }
+}
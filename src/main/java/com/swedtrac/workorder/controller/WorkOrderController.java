@@ -2,40 +2,193 @@ package com.swedtrac.workorder.web;
 
 import com.swedtrac.workorder.domain.WorkOrder;
 import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.feed.ChangeSet;
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.TrainBoardRow;
+import com.swedtrac.workorder.repository.WorkOrderFilter;
+import com.swedtrac.workorder.repository.WorkOrderListItem;
 import com.swedtrac.workorder.repository.WorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderSummary;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/workorders")
 @CrossOrigin(origins = "*") // tillåter frontend (kan låsas ned senare)
 public class WorkOrderController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BULK_SIZE = 5000;
+    private static final int MAX_DELTA_SIZE = 500;
+    // token för ändringsflödet, skickas med listan så att klienten kan fortsätta med ?since=
+    private static final String CHANGE_TOKEN_HEADER = "X-Change-Token";
+
     private final WorkOrderRepository workOrderRepository;
+    private final ArchivedWorkOrderRepository archivedWorkOrderRepository;
+    private final WorkOrderChangeFeed changeFeed;
 
-    public WorkOrderController(WorkOrderRepository workOrderRepository) {
+    public WorkOrderController(WorkOrderRepository workOrderRepository,
+                               ArchivedWorkOrderRepository archivedWorkOrderRepository,
+                               WorkOrderChangeFeed changeFeed) {
         this.workOrderRepository = workOrderRepository;
+        this.archivedWorkOrderRepository = archivedWorkOrderRepository;
+        this.changeFeed = changeFeed;
     }
 
     // ================================
-    // GET /api/workorders
+    // GET /api/workorders?status=OPEN&status=IN_PROGRESS&archived=false&limit=100&cursor=...
+    // Filtrerad lista, senast uppdaterade först, med keyset-paginering
     // ================================
     @GetMapping
-    public List<WorkOrder> getAllWorkOrders() {
-        return workOrderRepository.findAll();
+    public ResponseEntity<?> getAllWorkOrders(
+            @RequestParam(name = "status", required = false) List<WorkOrderStatus> statuses,
+            @RequestParam(name = "location", required = false) String location,
+            @RequestParam(name = "customer", required = false) String customer,
+            @RequestParam(name = "archived", required = false) Boolean archived,
+            @RequestParam(name = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(name = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(name = "updatedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedFrom,
+            @RequestParam(name = "updatedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedTo,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false, defaultValue = "100") int limit
+    ) {
+        WorkOrderFilter filter = buildFilter(statuses, location, customer, archived,
+                createdFrom, createdTo, updatedFrom, updatedTo);
+        if (cursor != null && !cursor.isBlank() && !decodeCursor(cursor, filter)) {
+            return ResponseEntity.badRequest().body("Ogiltig cursor");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Token före frågan: en ändring som hinner in under tiden kommer med i nästa delta (i värsta fall två gånger)
+        String token = changeFeed.token();
+        // Hämta en extra rad för att veta om det finns en nästa sida
+        List<WorkOrderListItem> rows = workOrderRepository.findPage(filter, pageSize + 1);
+        String next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            WorkOrderListItem last = rows.get(pageSize - 1);
+            next = encodeCursor(last.updatedAt(), last.id());
+        }
+        return ResponseEntity.ok()
+                .header(CHANGE_TOKEN_HEADER, token)
+                .body(new WorkOrderPage<>(rows, next));
+    }
+
+    // ================================
+    // GET /api/workorders/stream  (text/event-stream)
+    // Ändringsflöde: "hello" med token vid anslutning, sedan "changes" efter commit,
+    // ihopslagna per order (se WorkOrderChangeFeed)
+    // ================================
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return changeFeed.subscribe();
+    }
+
+    // ================================
+    // GET /api/workorders/changes?since=<token>&status=OPEN&archived=false&limit=500
+    // Ordrar ändrade efter token, med samma filter som listan: matchande rader i 'items',
+    // övriga ändrade id i 'removed'. Okänd/för gammal token ger reset = ladda om listan.
+    // ================================
+    @GetMapping("/changes")
+    public ResponseEntity<WorkOrderDelta> getChanges(
+            @RequestParam(name = "since", required = false) String since,
+            @RequestParam(name = "status", required = false) List<WorkOrderStatus> statuses,
+            @RequestParam(name = "location", required = false) String location,
+            @RequestParam(name = "customer", required = false) String customer,
+            @RequestParam(name = "archived", required = false) Boolean archived,
+            @RequestParam(name = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(name = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(name = "updatedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedFrom,
+            @RequestParam(name = "updatedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedTo,
+            @RequestParam(name = "limit", required = false, defaultValue = "500") int limit
+    ) {
+        ChangeSet changes = changeFeed.since(since, Math.max(1, Math.min(limit, MAX_DELTA_SIZE)));
+        if (changes.reset() || changes.changes().isEmpty()) {
+            return ResponseEntity.ok(new WorkOrderDelta(changes.token(), changes.reset(), false, List.of(), List.of()));
+        }
+
+        List<Long> ids = changes.changes().stream().map(WorkOrderChange::id).toList();
+        WorkOrderFilter filter = buildFilter(statuses, location, customer, archived,
+                createdFrom, createdTo, updatedFrom, updatedTo);
+        filter.setIds(ids);
+        List<WorkOrderListItem> items = workOrderRepository.findPage(filter, ids.size());
+
+        Set<Long> matched = new HashSet<>();
+        items.forEach(item -> matched.add(item.id()));
+        List<Long> removed = ids.stream().filter(id -> !matched.contains(id)).toList();
+        return ResponseEntity.ok(new WorkOrderDelta(changes.token(), false, changes.more(), items, removed));
+    }
+
+    // ================================
+    // GET /api/workorders/summary?status=READY_FOR_INVOICING&customer=...&limit=100&cursor=...
+    // Ordrar med timmar och kostnader (tid, material, totalt), samma filter och paginering som listan
+    // ================================
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummaries(
+            @RequestParam(name = "status", required = false) List<WorkOrderStatus> statuses,
+            @RequestParam(name = "location", required = false) String location,
+            @RequestParam(name = "customer", required = false) String customer,
+            @RequestParam(name = "archived", required = false) Boolean archived,
+            @RequestParam(name = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(name = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(name = "updatedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedFrom,
+            @RequestParam(name = "updatedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedTo,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false, defaultValue = "100") int limit
+    ) {
+        WorkOrderFilter filter = buildFilter(statuses, location, customer, archived,
+                createdFrom, createdTo, updatedFrom, updatedTo);
+        if (cursor != null && !cursor.isBlank() && !decodeCursor(cursor, filter)) {
+            return ResponseEntity.badRequest().body("Ogiltig cursor");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<WorkOrderSummary> rows = workOrderRepository.findSummaryPage(filter, pageSize + 1);
+        String next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            WorkOrderSummary last = rows.get(pageSize - 1);
+            next = encodeCursor(last.updatedAt(), last.id());
+        }
+        return ResponseEntity.ok(new WorkOrderPage<>(rows, next));
+    }
+
+    // ================================
+    // GET /api/workorders/trains-in-workshop
+    // Öppna/pågående, ej arkiverade ordrar grupperade per plats (för väggskärmarna)
+    // ================================
+    @GetMapping("/trains-in-workshop")
+    public List<TrainLocationGroup> getTrainsInWorkshop() {
+        List<TrainBoardRow> rows = workOrderRepository.findTrainBoard(
+                EnumSet.of(WorkOrderStatus.OPEN, WorkOrderStatus.IN_PROGRESS));
+        // raderna kommer sorterade per plats, så grupperingen behåller ordningen
+        Map<String, List<TrainBoardRow>> byLocation = new LinkedHashMap<>();
+        for (TrainBoardRow row : rows) {
+            byLocation.computeIfAbsent(row.location(), k -> new ArrayList<>()).add(row);
+        }
+        List<TrainLocationGroup> groups = new ArrayList<>(byLocation.size());
+        byLocation.forEach((location, trains) -> groups.add(new TrainLocationGroup(location, trains)));
+        return groups;
     }
 
     // ================================
     // GET /api/workorders/{id}
+    // Även ordrar som flyttats till arkivet
     // ================================
     @GetMapping("/{id}")
     public ResponseEntity<WorkOrder> getWorkOrderById(@PathVariable Long id) {
-        Optional<WorkOrder> optional = workOrderRepository.findById(id);
+        Optional<WorkOrder> optional = workOrderRepository.findIncludingArchive(id);
         return optional
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -72,6 +225,7 @@ public class WorkOrderController {
 
         // archivedAt ska vara null på nya ordrar
         workOrder.setArchivedAt(null);
+        workOrder.setVersion(null);
 
         WorkOrder saved = workOrderRepository.save(workOrder);
         return new ResponseEntity<>(saved, HttpStatus.CREATED);
@@ -79,19 +233,26 @@ public class WorkOrderController {
 
     // ================================
     // PUT /api/workorders/{id}
-    // Uppdatera befintlig arbetsorder (ej status/arkiv)
+    // Uppdatera befintlig arbetsorder (ej status/arkiv).
+    // version i kroppen är obligatorisk: 428 utan, 409 om den är gammal.
     // ================================
     @PutMapping("/{id}")
     public ResponseEntity<?> updateWorkOrder(
             @PathVariable Long id,
             @RequestBody WorkOrder updated
     ) {
+        if (updated.getVersion() == null) {
+            return versionRequired();
+        }
         Optional<WorkOrder> optional = workOrderRepository.findById(id);
         if (optional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+            return archivedOrNotFound(id);
         }
 
         WorkOrder existing = optional.get();
+        if (!updated.getVersion().equals(existing.getVersion())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(existing);
+        }
 
         // Uppdatera fält som ska gå att ändra från formuläret
         existing.setOrderNumber(updated.getOrderNumber());
@@ -110,65 +271,166 @@ public class WorkOrderController {
         // Vi låter status / archivedAt INTE påverkas av detta PUT
         // (de styrs via egen endpoint nedan)
 
-        WorkOrder saved = workOrderRepository.save(existing);
-        return ResponseEntity.ok(saved);
+        // versionen kontrolleras igen i UPDATE ... WHERE version = ? om någon hinner emellan
+        try {
+            WorkOrder saved = workOrderRepository.save(existing);
+            return ResponseEntity.ok(saved);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Arbetsordern har ändrats av någon annan");
+        }
     }
 
     // ================================
-    // PATCH /api/workorders/{id}/status?status=IN_PROGRESS
-    // Uppdatera status + hantera arkivering
+    // PATCH /api/workorders/{id}/status?status=IN_PROGRESS&version=3
+    // Uppdatera status + hantera arkivering (regeln ligger på WorkOrderStatus).
+    // version är obligatorisk (428 utan): 409 om någon annan hunnit ändra ordern sedan klienten läste den.
     // ================================
     @PatchMapping("/{id}/status")
     public ResponseEntity<?> updateStatus(
             @PathVariable Long id,
-            @RequestParam("status") WorkOrderStatus newStatus
+            @RequestParam("status") WorkOrderStatus newStatus,
+            @RequestParam(name = "version", required = false) Long version
     ) {
-        Optional<WorkOrder> optional = workOrderRepository.findById(id);
-        if (optional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+        if (version == null) {
+            return versionRequired();
         }
-
-        WorkOrder workOrder = optional.get();
-
-        // Sätt ny status
-        workOrder.setStatus(newStatus);
-        workOrder.setUpdatedAt(LocalDateTime.now());
-
-        // Hantera arkivering
-        if (newStatus == WorkOrderStatus.CANCELLED) {
-            // Avbrutna ordrar markeras som arkiverade direkt
-            workOrder.setArchivedAt(LocalDateTime.now());
-        } else if (newStatus == WorkOrderStatus.COMPLETED ||
-                newStatus == WorkOrderStatus.READY_FOR_INVOICING ||
-                newStatus == WorkOrderStatus.INVOICED) {
-            // Här kan vi välja att INTE arkivera automatiskt
-            // utan bara lämna archivedAt som den är
-            // (t.ex. arkiveras man manuellt senare).
-        } else {
-            // OPEN eller IN_PROGRESS -> inte arkiverad
-            workOrder.setArchivedAt(null);
+        Optional<WorkOrder> updated = workOrderRepository.updateStatus(id, newStatus, version);
+        if (updated.isPresent()) {
+            return ResponseEntity.ok(updated.get());
         }
-
-        WorkOrder saved = workOrderRepository.save(workOrder);
-        return ResponseEntity.ok(saved);
+        return notFoundOrConflict(id);
     }
 
     // ================================
-    // PATCH /api/workorders/{id}/archive
+    // PATCH /api/workorders/{id}/archive?version=3
     // Manuell arkivering (t.ex. från frontend senare)
     // ================================
     @PatchMapping("/{id}/archive")
-    public ResponseEntity<?> archiveWorkOrder(@PathVariable Long id) {
-        Optional<WorkOrder> optional = workOrderRepository.findById(id);
-        if (optional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<?> archiveWorkOrder(
+            @PathVariable Long id,
+            @RequestParam(name = "version", required = false) Long version
+    ) {
+        if (version == null) {
+            return versionRequired();
+        }
+        Optional<WorkOrder> updated = workOrderRepository.archive(id, version);
+        if (updated.isPresent()) {
+            return ResponseEntity.ok(updated.get());
         }
+        return notFoundOrConflict(id);
+    }
 
-        WorkOrder workOrder = optional.get();
-        workOrder.setArchivedAt(LocalDateTime.now());
-        workOrder.setUpdatedAt(LocalDateTime.now());
+    // ================================
+    // POST /api/workorders/bulk/status
+    // { "ids": [1, 2, 3], "status": "INVOICED", "fromStatuses": ["READY_FOR_INVOICING"] }
+    // eller { "filter": { "statuses": ["COMPLETED"], "customer": "SJ" }, "status": "READY_FOR_INVOICING" }
+    // Ett UPDATE för alla ordrar i en transaktion, med samma arkiveringsregler som ovan.
+    // ================================
+    @PostMapping("/bulk/status")
+    public ResponseEntity<?> updateStatusBulk(@RequestBody BulkStatusRequest request) {
+        if (request.status() == null) {
+            return ResponseEntity.badRequest().body("status är obligatoriskt");
+        }
+        List<Long> ids = resolveBulkIds(request.ids(), request.filter());
+        if (ids == null) {
+            return ResponseEntity.badRequest().body("Ange antingen ids eller filter");
+        }
+        if (ids.size() > MAX_BULK_SIZE) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Högst " + MAX_BULK_SIZE + " ordrar per anrop");
+        }
+        return ResponseEntity.ok(BulkResponse.of(
+                workOrderRepository.updateStatusBulk(ids, request.status(), request.fromStatuses())));
+    }
 
-        WorkOrder saved = workOrderRepository.save(workOrder);
-        return ResponseEntity.ok(saved);
+    // ================================
+    // POST /api/workorders/bulk/archive
+    // { "ids": [...] } eller { "filter": { ... } } — redan arkiverade ordrar hoppas över
+    // ================================
+    @PostMapping("/bulk/archive")
+    public ResponseEntity<?> archiveBulk(@RequestBody BulkArchiveRequest request) {
+        List<Long> ids = resolveBulkIds(request.ids(), request.filter());
+        if (ids == null) {
+            return ResponseEntity.badRequest().body("Ange antingen ids eller filter");
+        }
+        if (ids.size() > MAX_BULK_SIZE) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Högst " + MAX_BULK_SIZE + " ordrar per anrop");
+        }
+        return ResponseEntity.ok(BulkResponse.of(workOrderRepository.archiveBulk(ids)));
+    }
+
+    // Id-listan i anropet, eller de ordrar filtret matchar (en rad extra för att upptäcka för många).
+    // null om varken ids eller ett icke-tomt filter angetts.
+    private List<Long> resolveBulkIds(List<Long> ids, WorkOrderFilter filter) {
+        if (ids != null && !ids.isEmpty()) {
+            return ids.stream().filter(Objects::nonNull).distinct().toList();
+        }
+        if (filter == null) {
+            return null;
+        }
+        // markören hör till listan, inte till massuppdateringar
+        filter.setAfterUpdatedAt(null);
+        filter.setAfterId(null);
+        if (filter.equals(new WorkOrderFilter())) {
+            // ett tomt filter skulle träffa alla ordrar
+            return null;
+        }
+        return workOrderRepository.findIds(filter, MAX_BULK_SIZE + 1);
+    }
+
+    // Ändringar av en enskild order måste ange vilken version klienten utgick från; utan den
+    // skulle en ändring tyst kunna skriva över någon annans. Massuppdateringarna har egna villkor (fromStatuses).
+    private static ResponseEntity<?> versionRequired() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).body("version är obligatoriskt");
+    }
+
+    // Ingen rad uppdaterades: antingen finns ordern inte, eller så var versionen gammal.
+    // Vid konflikt skickas aktuellt läge med så att klienten kan visa det.
+    private ResponseEntity<?> notFoundOrConflict(Long id) {
+        Optional<WorkOrder> current = workOrderRepository.findById(id);
+        if (current.isEmpty()) {
+            return archivedOrNotFound(id);
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(current.get());
+    }
+
+    // Ordern finns inte i work_orders: 409 om den flyttats till arkivet (går inte att ändra), annars 404
+    private ResponseEntity<?> archivedOrNotFound(Long id) {
+        if (archivedWorkOrderRepository.existsById(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Arbetsordern ligger i arkivet och kan inte ändras");
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    private static WorkOrderFilter buildFilter(List<WorkOrderStatus> statuses, String location, String customer,
+                                               Boolean archived, LocalDateTime createdFrom, LocalDateTime createdTo,
+                                               LocalDateTime updatedFrom, LocalDateTime updatedTo) {
+        WorkOrderFilter filter = new WorkOrderFilter();
+        filter.setStatuses(statuses);
+        filter.setLocation(location);
+        filter.setCustomer(customer);
+        filter.setArchived(archived);
+        filter.setCreatedFrom(createdFrom);
+        filter.setCreatedTo(createdTo);
+        filter.setUpdatedFrom(updatedFrom);
+        filter.setUpdatedTo(updatedTo);
+        return filter;
+    }
+
+    // Markören är (updatedAt, id) för sidans sista rad, base64url-kodad så att klienten ser den som opak
+    private static String encodeCursor(LocalDateTime updatedAt, Long id) {
+        String raw = updatedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean decodeCursor(String cursor, WorkOrderFilter filter) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            filter.setAfterUpdatedAt(LocalDateTime.parse(raw.substring(0, sep)));
+            filter.setAfterId(Long.parseLong(raw.substring(sep + 1)));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
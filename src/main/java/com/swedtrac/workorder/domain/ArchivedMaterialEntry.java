@@ -0,0 +1,47 @@
+package com.swedtrac.workorder.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Materialrad för en order i arkivet (se {@link ArchivedWorkOrder}).
+ */
+@Entity
+@Immutable
+@Table(name = "work_order_material_entries_archive", indexes = {
+        @Index(name = "idx_material_entries_archive_work_order", columnList = "workOrderId")
+})
+@Data
+@NoArgsConstructor
+public class ArchivedMaterialEntry {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long workOrderId;
+
+    private String articleNumber;
+    private String description;
+
+    @Column(nullable = false)
+    private double quantity;
+
+    private String unit;
+
+    @Column(nullable = false)
+    private double price;
+
+    @Column(nullable = false)
+    private double total;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,49 @@
+package com.swedtrac.workorder.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tidrad för en order i arkivet (se {@link ArchivedWorkOrder}).
+ * Ordern refereras med id utan främmande nyckel; raden och ordern flyttas i samma transaktion.
+ */
+@Entity
+@Immutable
+@Table(name = "work_order_time_entries_archive", indexes = {
+        @Index(name = "idx_time_entries_archive_work_order", columnList = "workOrderId")
+})
+@Data
+@NoArgsConstructor
+public class ArchivedTimeEntry {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long workOrderId;
+
+    @Column(nullable = false)
+    private String action;
+
+    @Column(nullable = false)
+    private String work;
+
+    @Column(nullable = false)
+    private double hours;
+
+    @Column(nullable = false)
+    private double rate;
+
+    @Column(nullable = false)
+    private double total;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,89 @@
+package com.swedtrac.workorder.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Arbetsorder i arkivet (kall lagring): samma kolumner som work_orders, flyttad dit av
+ * WorkOrderArchiver när den varit arkiverad tillräckligt länge. Ändras aldrig efter flytten.
+ * Läses via samma endpoints som vanliga ordrar (se {@link #toWorkOrder()}).
+ */
+@Entity
+@Immutable
+@Table(name = "work_orders_archive", indexes = {
+        // listor över arkivet använder samma keyset-paginering som work_orders
+        @Index(name = "idx_work_orders_archive_updated_at_id", columnList = "updatedAt, id")
+})
+@Data
+@NoArgsConstructor
+public class ArchivedWorkOrder {
+
+    // id behålls från work_orders, så länkar och sökträffar fortsätter gälla
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private String orderNumber;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(nullable = false)
+    private String customer;
+
+    private String category;
+
+    private String trainNumber;
+    private String vehicle;
+    private String location;
+    private String track;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private WorkOrderStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime archivedAt;
+
+    private Long version;
+
+    private Double hours;
+    private Double timeTotal;
+    private Double materialTotal;
+
+    /** Fristående WorkOrder med samma värden, för svar som annars visar en vanlig order. Sparas aldrig. */
+    public WorkOrder toWorkOrder() {
+        WorkOrder wo = new WorkOrder();
+        wo.setId(id);
+        wo.setOrderNumber(orderNumber);
+        wo.setTitle(title);
+        wo.setDescription(description);
+        wo.setCustomer(customer);
+        wo.setCategory(category);
+        wo.setTrainNumber(trainNumber);
+        wo.setVehicle(vehicle);
+        wo.setLocation(location);
+        wo.setTrack(track);
+        wo.setStatus(status);
+        wo.setCreatedAt(createdAt);
+        wo.setUpdatedAt(updatedAt);
+        wo.setArchivedAt(archivedAt);
+        wo.setVersion(version);
+        wo.setHours(hours);
+        wo.setTimeTotal(timeTotal);
+        wo.setMaterialTotal(materialTotal);
+        return wo;
+    }
+}
@@ -1,21 +1,42 @@
 package com.swedtrac.workorder.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.swedtrac.workorder.feed.WorkOrderChangeListener;
+import com.swedtrac.workorder.search.WorkOrderSearchListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "work_orders")
+@EntityListeners({WorkOrderSearchListener.class, WorkOrderChangeListener.class})
+@Table(name = "work_orders", indexes = {
+        // keyset-paginering av listan: ORDER BY updated_at DESC, id DESC
+        @Index(name = "idx_work_orders_updated_at_id", columnList = "updatedAt, id"),
+        // tavlan "Tåg i verkstad": status IN (...) AND archived_at IS NULL, grupperat per plats
+        @Index(name = "idx_work_orders_status_archived_location", columnList = "status, archivedAt, location"),
+        // arkiveraren: ordrar arkiverade före en viss tidpunkt, äldst först
+        @Index(name = "idx_work_orders_archived_at", columnList = "archivedAt")
+})
+// Bara ändrade kolumner skrivs, så en PUT inte skriver tillbaka summor/status den läst tidigare
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class WorkOrder {
 
+    // Sekvens med pooled-optimerare: id hämtas 50 åt gången, så inserts kan batchas (IDENTITY stänger av batchning)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_orders_seq")
+    @SequenceGenerator(name = "work_orders_seq", sequenceName = "work_orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -53,6 +74,37 @@ public class WorkOrder {
     // Arkivering (null = inte arkiverad)
     private LocalDateTime archivedAt;
 
+    // Optimistisk låsning: ökas vid varje ändring, ändringar mot en gammal version ger 409
+    @Version
+    private Long version;
+
+    // Summor av tid- och materialraderna. Uppdateras i samma transaktion som raderna sparas
+    // (WorkOrderDetailController), så listor och fakturering slipper hämta och summera raderna.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Double hours;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Double timeTotal;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Double materialTotal;
+
+    // Raderna hämtas bara via detaljfrågorna (fetch join i WorkOrderRepository); de ingår inte i
+    // orderns JSON, toString eller equals så att vanliga svar inte laddar dem.
+    @OneToMany(mappedBy = "workOrder")
+    @OrderBy("id")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<WorkOrderTimeEntry> timeEntries = new ArrayList<>();
+
+    @OneToMany(mappedBy = "workOrder")
+    @OrderBy("id")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<WorkOrderMaterialEntry> materialEntries = new ArrayList<>();
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
@@ -64,6 +116,15 @@ public class WorkOrder {
         if (status == null) {
             status = WorkOrderStatus.OPEN;
         }
+        if (hours == null) {
+            hours = 0.0;
+        }
+        if (timeTotal == null) {
+            timeTotal = 0.0;
+        }
+        if (materialTotal == null) {
+            materialTotal = 0.0;
+        }
     }
 
     @PreUpdate
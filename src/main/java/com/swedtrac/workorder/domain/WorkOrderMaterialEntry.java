@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class WorkOrderMaterialEntry {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_order_material_entries_seq")
+    @SequenceGenerator(name = "work_order_material_entries_seq", sequenceName = "work_order_material_entries_seq", allocationSize = 50)
     private Long id;
 
     // Koppling till arbetsorder
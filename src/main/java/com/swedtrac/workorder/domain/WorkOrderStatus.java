@@ -1,10 +1,32 @@
 package com.swedtrac.workorder.domain;
 
 public enum WorkOrderStatus {
-    OPEN,
-    IN_PROGRESS,
-    COMPLETED,
-    READY_FOR_INVOICING,
-    INVOICED,
-    CANCELLED
-}
\ No newline at end of file
+    OPEN(ArchiveEffect.UNARCHIVE),
+    IN_PROGRESS(ArchiveEffect.UNARCHIVE),
+    COMPLETED(ArchiveEffect.KEEP),
+    READY_FOR_INVOICING(ArchiveEffect.KEEP),
+    INVOICED(ArchiveEffect.KEEP),
+    CANCELLED(ArchiveEffect.ARCHIVE);
+
+    /**
+     * Vad ett byte till statusen gör med arkiveringen.
+     */
+    public enum ArchiveEffect {
+        /** Arkivera direkt (avbrutna ordrar). */
+        ARCHIVE,
+        /** Lämna archivedAt som den är — arkiveras manuellt senare. */
+        KEEP,
+        /** Aktiva ordrar är aldrig arkiverade. */
+        UNARCHIVE
+    }
+
+    private final ArchiveEffect archiveEffect;
+
+    WorkOrderStatus(ArchiveEffect archiveEffect) {
+        this.archiveEffect = archiveEffect;
+    }
+
+    public ArchiveEffect getArchiveEffect() {
+        return archiveEffect;
+    }
+}
@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class WorkOrderTimeEntry {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_order_time_entries_seq")
+    @SequenceGenerator(name = "work_order_time_entries_seq", sequenceName = "work_order_time_entries_seq", allocationSize = 50)
     private Long id;
 
     // Koppling till arbetsorder (JsonIgnore för att undvika cirkulär serialisering)
@@ -0,0 +1,14 @@
+// File: src/main/java/com/swedtrac/workorder/feed/ChangeBatch.java
+package com.swedtrac.workorder.feed;
+
+import java.util.List;
+
+/**
+ * Ett SSE-meddelande: ändringarna sedan förra meddelandet, en per order,
+ * och token att skicka som ?since=... för att hämta de ändrade raderna.
+ */
+public record ChangeBatch(
+        String token,
+        List<WorkOrderChange> changes
+) {
+}
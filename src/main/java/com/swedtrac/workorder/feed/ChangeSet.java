@@ -0,0 +1,18 @@
+// File: src/main/java/com/swedtrac/workorder/feed/ChangeSet.java
+package com.swedtrac.workorder.feed;
+
+import java.util.List;
+
+/**
+ * Ändringar efter en token, en per order i den ordning de committades.
+ * 'reset' = tokenen går inte att fortsätta från (servern har startats om eller ändringarna är
+ * för gamla för loggen); klienten laddar då om allt och fortsätter från 'token'.
+ * 'more' = det finns fler ändringar än som fick plats; fråga igen med 'token'.
+ */
+public record ChangeSet(
+        String token,
+        boolean reset,
+        boolean more,
+        List<WorkOrderChange> changes
+) {
+}
@@ -0,0 +1,34 @@
+// File: src/main/java/com/swedtrac/workorder/feed/WorkOrderChange.java
+package com.swedtrac.workorder.feed;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+/**
+ * En ändring av en arbetsorder som den skickas i flödet: vilken order, vad som hände
+ * och orderns version/status efteråt (null för DELETED och när det inte är känt).
+ */
+public record WorkOrderChange(
+        Long id,
+        Type type,
+        Long version,
+        WorkOrderStatus status
+) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        STATUS,
+        DELETED
+    }
+
+    /**
+     * Slår ihop två ändringar av samma order till en. Den senaste vinner, men en order som
+     * skapats i samma skur förblir CREATED (klienten har aldrig sett den).
+     */
+    WorkOrderChange merge(WorkOrderChange later) {
+        if (type == Type.CREATED && later.type != Type.DELETED) {
+            return new WorkOrderChange(id, Type.CREATED, later.version, later.status);
+        }
+        return later;
+    }
+}
@@ -0,0 +1,248 @@
+// File: src/main/java/com/swedtrac/workorder/feed/WorkOrderChangeFeed.java
+package com.swedtrac.workorder.feed;
+
+import com.swedtrac.workorder.pricelist.PriceListChanged;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ändringsflöde för arbetsordrar.
+ *
+ * Ändringar anmäls med {@link #publish} och registreras först efter commit (en rollback syns aldrig),
+ * då de får ett löpnummer. Två saker byggs av dem:
+ * <ul>
+ *   <li>En logg med den senaste ändringen per order, i löpnummerordning. En token är
+ *       "serverstart-löpnummer"; {@link #since} ger de ordrar som ändrats efter den.
+ *       Loggen har ett tak och finns bara i minnet: en för gammal token, eller en från före en
+ *       omstart, ger reset och klienten laddar om listan.</li>
+ *   <li>SSE till anslutna klienter. Ändringar samlas ihop per order och skickas som ett
+ *       meddelande per flush-intervall, så en massuppdatering av tusen ordrar blir ett
+ *       meddelande i stället för tusen.</li>
+ * </ul>
+ */
+@Component
+public class WorkOrderChangeFeed {
+
+    private static final long HEARTBEAT_MILLIS = 20_000;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int logSize;
+    private final long emitterTimeout;
+
+    private final Object lock = new Object();
+    private long seq;
+    private long floor;                                                 // löpnummer före loggens äldsta post
+    private final NavigableMap<Long, WorkOrderChange> log = new TreeMap<>(); // löpnummer -> ändring
+    private final Map<Long, Long> latest = new HashMap<>();             // order -> dess löpnummer i loggen
+    private Map<Long, WorkOrderChange> pending = new LinkedHashMap<>(); // ej skickade, per order
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<WorkOrderChange>>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+    private volatile long lastSent = System.currentTimeMillis();
+
+    public WorkOrderChangeFeed(
+            @Value("${swedtrac.feed.flush-ms:250}") long flushMillis,
+            @Value("${swedtrac.feed.log-size:10000}") int logSize,
+            @Value("${swedtrac.feed.emitter-timeout-ms:1800000}") long emitterTimeout) {
+        this.logSize = Math.max(1, logSize);
+        this.emitterTimeout = emitterTimeout;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "orderflode");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushMillis, Math.max(10, flushMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /** Anmäl en ändring; den registreras när transaktionen committats (direkt utan transaktion). */
+    public void publish(WorkOrderChange change) {
+        publish(List.of(change));
+    }
+
+    public void publish(Collection<WorkOrderChange> changes) {
+        if (changes.isEmpty()) return;
+        List<WorkOrderChange> copy = List.copyOf(changes);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(copy);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(copy);
+            }
+        });
+    }
+
+    /**
+     * Lyssnare i samma process (t.ex. sökindexet) som får varje registrerad omgång ändringar,
+     * efter commit och på den tråd som committade.
+     */
+    public void addListener(Consumer<List<WorkOrderChange>> listener) {
+        listeners.add(listener);
+    }
+
+    private void record(List<WorkOrderChange> changes) {
+        synchronized (lock) {
+            for (WorkOrderChange change : changes) {
+                Long previous = latest.remove(change.id());
+                if (previous != null) log.remove(previous);
+                log.put(++seq, change);
+                latest.put(change.id(), seq);
+                pending.merge(change.id(), change, WorkOrderChange::merge);
+            }
+            while (log.size() > logSize) {
+                Map.Entry<Long, WorkOrderChange> oldest = log.pollFirstEntry();
+                latest.remove(oldest.getValue().id());
+                floor = oldest.getKey();
+            }
+        }
+        for (Consumer<List<WorkOrderChange>> listener : listeners) {
+            try {
+                listener.accept(changes);
+            } catch (RuntimeException e) {
+                System.err.println("Orderflöde: lyssnare misslyckades: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Token för läget just nu: det klienten ska fortsätta från efter en full laddning. */
+    public String token() {
+        synchronized (lock) {
+            return epoch + "-" + seq;
+        }
+    }
+
+    /**
+     * Högst 'limit' ordrar som ändrats efter 'token', äldsta ändringen först.
+     * Tom eller ogiltig token ger reset.
+     */
+    public ChangeSet since(String token, int limit) {
+        long after = parse(token);
+        synchronized (lock) {
+            if (after < floor || after > seq) {
+                return new ChangeSet(epoch + "-" + seq, true, false, List.of());
+            }
+            List<WorkOrderChange> out = new ArrayList<>();
+            long last = seq;
+            for (Map.Entry<Long, WorkOrderChange> e : log.tailMap(after, false).entrySet()) {
+                if (out.size() == limit) {
+                    return new ChangeSet(epoch + "-" + last, false, true, out);
+                }
+                out.add(e.getValue());
+                last = e.getKey();
+            }
+            return new ChangeSet(epoch + "-" + seq, false, false, out);
+        }
+    }
+
+    // löpnumret i en token från den här serverstarten, annars -1 (= reset)
+    private long parse(String token) {
+        if (token == null) return -1;
+        int sep = token.lastIndexOf('-');
+        if (sep < 0 || !token.substring(0, sep).equals(epoch)) return -1;
+        try {
+            return Long.parseLong(token.substring(sep + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Ny SSE-anslutning. Första meddelandet ("hello") bär aktuell token; därefter kommer
+     * "changes" med {@link ChangeBatch}. Webbläsarens EventSource ansluter själv igen när
+     * anslutningen bryts eller når sin timeout.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeout);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            String token = token();
+            emitter.send(SseEmitter.event().name("hello").id(token).data(Map.of("token", token), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Skicka en egen händelse till alla anslutna klienter (utanför orderloggen, så den
+     * påverkar varken token eller {@link #since}). Skickas på flödets egen tråd.
+     */
+    public void broadcast(String name, Object data) {
+        flusher.execute(() -> send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON)));
+    }
+
+    /**
+     * Ny prislista inläst: skicka de ändrade EM-nycklarna till klienterna ("pricelist").
+     */
+    @EventListener
+    public void onPriceListChanged(PriceListChanged change) {
+        broadcast("pricelist", change);
+    }
+
+    public int subscribers() {
+        return emitters.size();
+    }
+
+    private void flush() {
+        try {
+            ChangeBatch batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    batch = null;
+                } else {
+                    batch = new ChangeBatch(epoch + "-" + seq, new ArrayList<>(pending.values()));
+                    pending = new LinkedHashMap<>();
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (batch != null) {
+                send(SseEmitter.event().name("changes").id(batch.token()).data(batch, MediaType.APPLICATION_JSON));
+                lastSent = now;
+            } else if (now - lastSent >= HEARTBEAT_MILLIS) {
+                // kommentar som håller proxyer vid liv och upptäcker klienter som försvunnit
+                send(SseEmitter.event().comment("ping"));
+                lastSent = now;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Orderflöde: flush misslyckades: " + e.getMessage());
+        }
+    }
+
+    private void send(SseEmitter.SseEventBuilder event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        flusher.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+}
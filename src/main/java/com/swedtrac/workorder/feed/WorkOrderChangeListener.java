@@ -0,0 +1,38 @@
+// File: src/main/java/com/swedtrac/workorder/feed/WorkOrderChangeListener.java
+package com.swedtrac.workorder.feed;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA-lyssnare som anmäler skapade, ändrade och borttagna ordrar till {@link WorkOrderChangeFeed}.
+ * Status- och arkivbyten (native SQL) och summorna (JDBC-UPDATE) går inte via lyssnaren;
+ * de anmäls av repository respektive controller.
+ */
+@Component
+public class WorkOrderChangeListener {
+
+    private final WorkOrderChangeFeed feed;
+
+    public WorkOrderChangeListener(WorkOrderChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    @PostPersist
+    void onCreate(WorkOrder wo) {
+        feed.publish(new WorkOrderChange(wo.getId(), WorkOrderChange.Type.CREATED, wo.getVersion(), wo.getStatus()));
+    }
+
+    @PostUpdate
+    void onUpdate(WorkOrder wo) {
+        feed.publish(new WorkOrderChange(wo.getId(), WorkOrderChange.Type.UPDATED, wo.getVersion(), wo.getStatus()));
+    }
+
+    @PostRemove
+    void onRemove(WorkOrder wo) {
+        feed.publish(new WorkOrderChange(wo.getId(), WorkOrderChange.Type.DELETED, null, null));
+    }
+}
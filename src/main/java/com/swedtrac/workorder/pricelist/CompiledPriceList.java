@@ -0,0 +1,319 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/CompiledPriceList.java
+package com.swedtrac.workorder.pricelist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Förkompilerad, versionerad binärform av en tolkad prislista.
+ * Filen kan minnesmappas direkt vid start, så Excel-filen behöver bara tolkas
+ * om när källans hash ändras — och flera instanser kan dela samma fil.
+ * Allt läses direkt ur bufferten; ingenting avkodas eller kopieras till heapen vid mappning.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   0  int    MAGIC ("SWPL")
+ *   4  int    FORMAT_VERSION
+ *   8  byte[32] SHA-256 av källfilen
+ *  40  int    antal artiklar
+ *  44  int    antal strängar i strängtabellen
+ *  48  int    antal platser i hashindexet (tvåpotens)
+ *  52  int    offset till strängtabellens offset-array
+ *  56  int    offset till strängdata (UTF-8)
+ *  60  int    offset till hashindexet
+ *  64  int    offset till nyckelordningen
+ *  68  int    (reserverad, 0)
+ *  72  artikelposter, RECORD_SIZE byte var:
+ *        double pris, int nyckel, int emNr, int namn, int enhet, int blad (index i strängtabellen)
+ *      strängtabell: (antal + 1) int-offsets in i strängdatan, sedan själva datan
+ *      hashindex: int per plats, artikelindex + 1 (0 = tom), linjär sondering på nyckelns hashCode
+ *      nyckelordning: int per artikel, artikelindex sorterade på nyckelns UTF-8-byte (osignerat),
+ *        dvs. i kodpunktsordning — används för prefixsökning (se {@link PrefixIndex})
+ * </pre>
+ * Upprepade strängar (enheter, bladnamn) lagras bara en gång.
+ */
+final class CompiledPriceList {
+
+    static final int MAGIC = 0x5357504C; // "SWPL"
+    static final int FORMAT_VERSION = 2;
+
+    private static final int HASH_LENGTH = 32;
+    private static final int HEADER_SIZE = 72;
+    private static final int RECORD_SIZE = 8 + 5 * 4;
+
+    private final ByteBuffer buf;
+    private final byte[] sourceHash;
+    private final int itemCount;
+    private final int stringCount;
+    private final int hashSlots;
+    private final int stringOffsets;
+    private final int stringData;
+    private final int hashIndex;
+    private final int keyOrder;
+
+    private CompiledPriceList(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("Inte en kompilerad prislista");
+        }
+        if (buf.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Okänd formatversion " + buf.getInt(4));
+        }
+        this.sourceHash = new byte[HASH_LENGTH];
+        buf.get(8, sourceHash);
+        this.itemCount = buf.getInt(40);
+        this.stringCount = buf.getInt(44);
+        this.hashSlots = buf.getInt(48);
+        this.stringOffsets = buf.getInt(52);
+        this.stringData = buf.getInt(56);
+        this.hashIndex = buf.getInt(60);
+        this.keyOrder = buf.getInt(64);
+        if (stringOffsets + 4L * (stringCount + 1) > buf.capacity()
+                || hashIndex + 4L * hashSlots > buf.capacity()
+                || keyOrder + 4L * itemCount > buf.capacity()) {
+            throw new IOException("Kompilerad prislista är trunkerad");
+        }
+    }
+
+    static CompiledPriceList of(ByteBuffer buf) throws IOException {
+        return new CompiledPriceList(buf);
+    }
+
+    /**
+     * Minnesmappa en kompilerad fil (skrivskyddat).
+     */
+    static CompiledPriceList map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CompiledPriceList(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Skriv en kompilerad lista till fil. Skrivs först till en temporärfil och flyttas
+     * sedan på plats, så att andra instanser aldrig mappar en halvskriven fil.
+     */
+    static void write(ByteBuffer compiled, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer src = compiled.duplicate().rewind();
+                while (src.hasRemaining()) ch.write(src);
+                ch.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Kompilera artiklar (med sina normaliserade, unika nycklar) till binärformatet.
+     */
+    static ByteBuffer compile(List<String> keys, List<PriceItem> items, byte[] sourceHash) {
+        int n = items.size();
+
+        // Strängtabell med deduplicering
+        Map<String, Integer> dict = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] refs = new int[n * 5];
+        byte[][] keyBytes = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            PriceItem it = items.get(i);
+            refs[i * 5] = intern(keys.get(i), dict, strings);
+            keyBytes[i] = strings.get(refs[i * 5]);
+            refs[i * 5 + 1] = intern(it.getEmNr(), dict, strings);
+            refs[i * 5 + 2] = intern(it.getName(), dict, strings);
+            refs[i * 5 + 3] = intern(it.getUnit(), dict, strings);
+            refs[i * 5 + 4] = intern(it.getSourceSheet(), dict, strings);
+        }
+        int dataLength = 0;
+        for (byte[] s : strings) dataLength += s.length;
+
+        int slots = Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+        int offsets = HEADER_SIZE + n * RECORD_SIZE;
+        int data = offsets + (strings.size() + 1) * 4;
+        int hash = data + dataLength;
+        // hashindexet läggs 4-byte-justerat efter strängdatan
+        hash = (hash + 3) & ~3;
+        int order = hash + slots * 4;
+
+        ByteBuffer buf = ByteBuffer.allocate(order + n * 4);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, FORMAT_VERSION);
+        buf.put(8, sourceHash != null ? sourceHash : new byte[HASH_LENGTH]);
+        buf.putInt(40, n);
+        buf.putInt(44, strings.size());
+        buf.putInt(48, slots);
+        buf.putInt(52, offsets);
+        buf.putInt(56, data);
+        buf.putInt(60, hash);
+        buf.putInt(64, order);
+
+        for (int i = 0; i < n; i++) {
+            int rec = HEADER_SIZE + i * RECORD_SIZE;
+            buf.putDouble(rec, items.get(i).getPrice());
+            for (int f = 0; f < 5; f++) {
+                buf.putInt(rec + 8 + f * 4, refs[i * 5 + f]);
+            }
+        }
+
+        int pos = 0;
+        for (int s = 0; s < strings.size(); s++) {
+            buf.putInt(offsets + s * 4, pos);
+            buf.put(data + pos, strings.get(s));
+            pos += strings.get(s).length;
+        }
+        buf.putInt(offsets + strings.size() * 4, pos);
+
+        for (int i = 0; i < n; i++) {
+            int slot = slotFor(keys.get(i).hashCode(), slots);
+            while (buf.getInt(hash + slot * 4) != 0) slot = (slot + 1) & (slots - 1);
+            buf.putInt(hash + slot * 4, i + 1);
+        }
+
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(keyBytes[a], keyBytes[b]));
+        for (int i = 0; i < n; i++) {
+            buf.putInt(order + i * 4, sorted[i]);
+        }
+        return buf;
+    }
+
+    private static int intern(String s, Map<String, Integer> dict, List<byte[]> strings) {
+        String v = s != null ? s : "";
+        return dict.computeIfAbsent(v, k -> {
+            strings.add(k.getBytes(StandardCharsets.UTF_8));
+            return strings.size() - 1;
+        });
+    }
+
+    private static int slotFor(int hashCode, int slots) {
+        return (hashCode ^ (hashCode >>> 16)) & (slots - 1);
+    }
+
+    byte[] sourceHash() {
+        return sourceHash.clone();
+    }
+
+    boolean hasSourceHash(byte[] hash) {
+        return Arrays.equals(sourceHash, hash);
+    }
+
+    int itemCount() {
+        return itemCount;
+    }
+
+    /** Storlek i byte (för loggning). */
+    int byteSize() {
+        return buf.capacity();
+    }
+
+    /**
+     * Slå upp en normaliserad nyckel i hashindexet. Returnerar artikelindex eller -1.
+     */
+    int find(String normalizedKey) {
+        if (itemCount == 0) return -1;
+        byte[] key = normalizedKey.getBytes(StandardCharsets.UTF_8);
+        int slot = slotFor(normalizedKey.hashCode(), hashSlots);
+        while (true) {
+            int entry = buf.getInt(hashIndex + slot * 4);
+            if (entry == 0) return -1;
+            int ord = entry - 1;
+            if (stringEquals(ref(ord, 0), key)) return ord;
+            slot = (slot + 1) & (hashSlots - 1);
+        }
+    }
+
+    double price(int ord) {
+        return buf.getDouble(HEADER_SIZE + ord * RECORD_SIZE);
+    }
+
+    /**
+     * Avkoda sträng 'ref' ur strängtabellen. Skapas vid varje anrop; ingenting cachas.
+     */
+    String string(int ref) {
+        int start = buf.getInt(stringOffsets + ref * 4);
+        int end = buf.getInt(stringOffsets + (ref + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        buf.get(stringData + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Artikelindex på plats 'i' i nyckelordningen. */
+    int keyOrder(int i) {
+        return buf.getInt(keyOrder + i * 4);
+    }
+
+    /**
+     * Jämför nyckeln för artikel 'ord' med 'key' (UTF-8), byte för byte osignerat
+     * — samma ordning som nyckelordningen är sorterad i.
+     */
+    int compareKey(int ord, byte[] key) {
+        int s = keyRef(ord);
+        int start = buf.getInt(stringOffsets + s * 4);
+        int len = buf.getInt(stringOffsets + (s + 1) * 4) - start;
+        int base = stringData + start;
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int d = Byte.toUnsignedInt(buf.get(base + i)) - Byte.toUnsignedInt(key[i]);
+            if (d != 0) return d;
+        }
+        return len - key.length;
+    }
+
+    /** Om nyckeln för artikel 'ord' börjar med 'prefix' (UTF-8). */
+    boolean keyStartsWith(int ord, byte[] prefix) {
+        int s = keyRef(ord);
+        int start = buf.getInt(stringOffsets + s * 4);
+        int len = buf.getInt(stringOffsets + (s + 1) * 4) - start;
+        if (len < prefix.length) return false;
+        int base = stringData + start;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(base + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /** Nyckelns index i strängtabellen. */
+    int keyRef(int ord) {
+        return ref(ord, 0);
+    }
+
+    int emNrRef(int ord) {
+        return ref(ord, 1);
+    }
+
+    int nameRef(int ord) {
+        return ref(ord, 2);
+    }
+
+    int unitRef(int ord) {
+        return ref(ord, 3);
+    }
+
+    int sheetRef(int ord) {
+        return ref(ord, 4);
+    }
+
+    private int ref(int ord, int field) {
+        return buf.getInt(HEADER_SIZE + ord * RECORD_SIZE + 8 + field * 4);
+    }
+
+    private boolean stringEquals(int s, byte[] key) {
+        int start = buf.getInt(stringOffsets + s * 4);
+        int end = buf.getInt(stringOffsets + (s + 1) * 4);
+        if (end - start != key.length) return false;
+        int base = stringData + start;
+        for (int i = 0; i < key.length; i++) {
+            if (buf.get(base + i) != key[i]) return false;
+        }
+        return true;
+    }
+}
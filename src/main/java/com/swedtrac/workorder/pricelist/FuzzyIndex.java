@@ -0,0 +1,179 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/FuzzyIndex.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.*;
+
+/**
+ * BK-träd för felstavningstoleranta uppslag (Levenshtein-avstånd 1–2).
+ * Termerna är normaliserade EM-nycklar och de enskilda orden i artikelnamnen.
+ * Varje nod har ett avstånd till sin förälder; eftersom avståndet är en metrik
+ * behöver en fråga med max avstånd k bara besöka barn vars kant ligger inom
+ * [d - k, d + k] från nodens avstånd d — resten av trädet hoppas över.
+ * Avståndet beräknas bandat och avbryts så fort det överstiger vad noden kan behöva.
+ */
+final class FuzzyIndex {
+
+    static final int MAX_DISTANCE = 2;
+
+    // Kortare namnord än så här ger mest brus ("ST", "MM")
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private final PackedStrings terms;   // nod -> term
+    private final int[][] postings;      // nod -> artikelordinaler
+    private final int[] edge;            // nod -> avstånd till föräldern
+    private final int[] firstChild;      // nod -> första barnet, -1 om inget
+    private final int[] nextSibling;     // nod -> nästa syskon, -1 om inget
+    private final int[] maxEdge;         // nod -> största kant bland barnen
+
+    /**
+     * @param keys  normaliserade nycklar, index = artikelns ordinal
+     * @param names normaliserade namn, index = artikelns ordinal
+     */
+    FuzzyIndex(String[] keys, PackedStrings names) {
+        // term -> ordinaler (nycklar först, sedan namnord), i stabil ordning
+        Map<String, List<Integer>> byTerm = new LinkedHashMap<>();
+        for (int ord = 0; ord < keys.length; ord++) {
+            if (keys[ord].isEmpty()) continue;
+            byTerm.computeIfAbsent(keys[ord], k -> new ArrayList<>()).add(ord);
+        }
+        for (int ord = 0; ord < names.size(); ord++) {
+            for (String word : names.get(ord).split(" ")) {
+                if (word.length() < MIN_WORD_LENGTH) continue;
+                List<Integer> ords = byTerm.computeIfAbsent(word, k -> new ArrayList<>());
+                if (ords.isEmpty() || ords.get(ords.size() - 1) != ord) ords.add(ord);
+            }
+        }
+
+        int n = byTerm.size();
+        String[] termArray = byTerm.keySet().toArray(new String[0]);
+        this.postings = new int[n][];
+        this.edge = new int[n];
+        this.firstChild = new int[n];
+        this.nextSibling = new int[n];
+        this.maxEdge = new int[n];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+
+        int node = 0;
+        for (List<Integer> ords : byTerm.values()) {
+            postings[node] = ords.stream().mapToInt(Integer::intValue).toArray();
+            if (node > 0) insert(termArray, node);
+            node++;
+        }
+        this.terms = new PackedStrings(termArray);
+    }
+
+    private void insert(String[] termArray, int node) {
+        String term = termArray[node];
+        int cur = 0;
+        while (true) {
+            int d = distance(term, termArray[cur]);
+            int child = firstChild[cur];
+            while (child != -1 && edge[child] != d) child = nextSibling[child];
+            if (child == -1) {
+                edge[node] = d;
+                nextSibling[node] = firstChild[cur];
+                firstChild[cur] = node;
+                maxEdge[cur] = Math.max(maxEdge[cur], d);
+                return;
+            }
+            cur = child;
+        }
+    }
+
+    /**
+     * Ordinaler för artiklar med en term inom 'maxDistance' från frågan (redan normaliserad),
+     * närmast först och därefter i inläsningsordning, högst 'limit' stycken.
+     */
+    int[] search(String q, int maxDistance, int limit) {
+        if (q == null || q.isEmpty() || limit <= 0 || postings.length == 0) return new int[0];
+        int k = Math.max(0, Math.min(maxDistance, MAX_DISTANCE));
+
+        // (avstånd, nod) packat i en long för sortering
+        List<Long> hits = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            // Exakt avstånd behövs bara upp till k + största kant; därutöver kan inget barn matcha
+            int d = distance(q, node, k + maxEdge[node]);
+            if (d <= k) hits.add(((long) d << 32) | node);
+            for (int c = firstChild[node]; c != -1; c = nextSibling[c]) {
+                if (Math.abs(edge[c] - d) <= k) stack.push(c);
+            }
+        }
+        Collections.sort(hits);
+
+        // Samla ordinaler per avståndsnivå, sorterade inom nivån, utan dubbletter
+        Set<Integer> seen = new LinkedHashSet<>();
+        int i = 0;
+        while (i < hits.size() && seen.size() < limit) {
+            int level = (int) (hits.get(i) >>> 32);
+            TreeSet<Integer> sameLevel = new TreeSet<>();
+            for (; i < hits.size() && (int) (hits.get(i) >>> 32) == level; i++) {
+                for (int ord : postings[(int) (long) hits.get(i)]) sameLevel.add(ord);
+            }
+            for (int ord : sameLevel) {
+                if (seen.size() >= limit) break;
+                seen.add(ord);
+            }
+        }
+        return seen.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int size() {
+        return postings.length;
+    }
+
+    /**
+     * Levenshtein-avstånd mellan frågan och nodens term, beräknat i ett band med
+     * bredd 'bound' runt diagonalen. Returnerar bound + 1 om avståndet är större.
+     */
+    private int distance(String q, int node, int bound) {
+        int m = terms.length(node);
+        int n = q.length();
+        if (Math.abs(m - n) > bound) return bound + 1;
+        int over = bound + 1;
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        for (int j = 0; j <= n; j++) prev[j] = j <= bound ? j : over;
+        for (int i = 1; i <= m; i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(n, i + bound);
+            cur[0] = i <= bound ? i : over;
+            if (from > 1) cur[from - 1] = over;
+            int rowMin = cur[0];
+            char c = terms.charAt(node, i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = c == q.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(prev[j - 1] + cost, Math.min(prev[j] + 1, cur[j - 1] + 1));
+                cur[j] = Math.min(v, over);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (to < n) cur[to + 1] = over;
+            if (rowMin > bound) return over;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[n], over);
+    }
+
+    /** Fullständigt Levenshtein-avstånd (används när trädet byggs). */
+    private static int distance(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(prev[j - 1] + cost, Math.min(prev[j] + 1, cur[j - 1] + 1));
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+}
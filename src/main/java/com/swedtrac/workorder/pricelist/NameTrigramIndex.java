@@ -0,0 +1,162 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/NameTrigramIndex.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.*;
+
+/**
+ * Inverterat trigram-index över normaliserade artikelnamn.
+ * En fråga slår upp postlistan för varje trigram i söksträngen, snittar dem
+ * (kortaste listan först) och verifierar kandidaterna med contains. Träffarna
+ * rankas: exakt namn, namn som börjar med frågan, ordbörjan, övrig delsträng.
+ * Frågor på två tecken har inget trigram och slås upp i en egen bigram-postlista,
+ * så t.ex. "M8" mitt i ett namn hittas utan att alla namn gås igenom. Ett enda tecken
+ * ger inga namnträffar alls (det matchar nästan allt); sådana frågor besvaras bara
+ * av EM-prefixindexet.
+ */
+final class NameTrigramIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final PackedStrings names;       // normaliserade namn, index = ordinal i snapshoten
+    private final Map<Long, int[]> postings; // trigram -> stigande ordinaler
+    private final Map<Integer, int[]> bigrams; // bigram -> stigande ordinaler (frågor på två tecken)
+
+    NameTrigramIndex(PackedStrings names) {
+        this.names = names;
+
+        Map<Long, Posting> building = new HashMap<>();
+        Map<Integer, Posting> buildingBigrams = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.isEmpty(i)) continue;
+            for (int j = 0; j + 2 <= names.length(i); j++) {
+                buildingBigrams.computeIfAbsent(bigram(names, i, j), k -> new Posting()).add(i);
+                if (j + 3 <= names.length(i)) {
+                    building.computeIfAbsent(trigram(names, i, j), k -> new Posting()).add(i);
+                }
+            }
+        }
+        this.postings = freeze(building);
+        this.bigrams = freeze(buildingBigrams);
+    }
+
+    private static <K> Map<K, int[]> freeze(Map<K, Posting> building) {
+        Map<K, int[]> built = new HashMap<>(building.size() * 4 / 3 + 1);
+        building.forEach((k, v) -> built.put(k, v.toArray()));
+        return built;
+    }
+
+    /**
+     * Returnerar upp till 'limit' ordinaler vars namn innehåller frågan (redan normaliserad),
+     * bäst matchning först.
+     */
+    int[] search(String q, int limit) {
+        if (q == null || q.length() < 2 || limit <= 0) return NONE;
+        if (q.length() == 2) {
+            int[] p = bigrams.get(bigram(q));
+            return p == null ? NONE : rank(p, p.length, q, limit);
+        }
+
+        // Hämta postlistor för frågans trigram; saknas någon finns ingen träff
+        int gramCount = q.length() - 2;
+        int[][] lists = new int[gramCount][];
+        for (int j = 0; j < gramCount; j++) {
+            int[] p = postings.get(trigram(q, j));
+            if (p == null) return NONE;
+            lists[j] = p;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(a -> a.length));
+
+        int[] cand = lists[0].clone();
+        int len = cand.length;
+        for (int j = 1; j < lists.length && len > 0; j++) {
+            len = intersect(cand, len, lists[j]);
+        }
+
+        // Verifiera (trigram garanterar inte sammanhängande träff) och poängsätt
+        return rank(cand, len, q, limit);
+    }
+
+    /**
+     * Behåller kandidaterna vars namn innehåller frågan och returnerar de 'limit' bäst rankade.
+     */
+    private int[] rank(int[] cand, int len, String q, int limit) {
+        long[] scored = new long[Math.max(16, Math.min(len, 1024))];
+        int hits = 0;
+        for (int c = 0; c < len; c++) {
+            int ord = cand[c];
+            if (names.length(ord) < q.length()) continue;
+            int pos = names.indexOf(ord, q);
+            if (pos < 0) continue;
+            int length = names.length(ord);
+            int tier;
+            if (pos == 0) tier = length == q.length() ? 0 : 1;
+            else tier = names.charAt(ord, pos - 1) == ' ' ? 2 : 3;
+            if (hits == scored.length) scored = Arrays.copyOf(scored, hits * 2);
+            scored[hits++] = score(tier, pos, length, ord);
+        }
+        Arrays.sort(scored, 0, hits);
+
+        int[] out = new int[Math.min(hits, limit)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (int) (scored[i] & 0xFFFFFFFL);
+        }
+        return out;
+    }
+
+    // tier (4 bitar) | position (16) | namnlängd (16) | ordinal (28) — lägre är bättre
+    private static long score(int tier, int pos, int length, int ordinal) {
+        return ((long) tier << 60)
+                | ((long) Math.min(pos, 0xFFFF) << 44)
+                | ((long) Math.min(length, 0xFFFF) << 28)
+                | ordinal;
+    }
+
+    private static int bigram(String s) {
+        return (s.charAt(0) << 16) | s.charAt(1);
+    }
+
+    private static int bigram(PackedStrings s, int i, int at) {
+        return (s.charAt(i, at) << 16) | s.charAt(i, at + 1);
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    private static long trigram(PackedStrings s, int i, int at) {
+        return ((long) s.charAt(i, at) << 32) | ((long) s.charAt(i, at + 1) << 16) | s.charAt(i, at + 2);
+    }
+
+    /**
+     * Snittar a[0..aLen) med b in-place i a; båda är stigande. Returnerar ny längd.
+     */
+    private static int intersect(int[] a, int aLen, int[] b) {
+        int i = 0, j = 0, out = 0;
+        while (i < aLen && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                a[out++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** Växande int-lista som ignorerar upprepning av senast tillagda ordinal. */
+    private static final class Posting {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
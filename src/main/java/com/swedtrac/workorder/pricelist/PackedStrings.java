@@ -0,0 +1,67 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PackedStrings.java
+package com.swedtrac.workorder.pricelist;
+
+/**
+ * Många strängar packade i en gemensam char-array med en offset-array bredvid.
+ * Ersätter en String (med eget objekthuvud och egen array) per värde; jämförelser
+ * och delsträngssökning görs direkt mot arrayen, och en String skapas bara när
+ * ett värde faktiskt lämnas ut.
+ */
+final class PackedStrings {
+
+    private final char[] chars;
+    private final int[] offsets; // size() + 1 element; sträng i = chars[offsets[i], offsets[i + 1])
+
+    PackedStrings(String[] values) {
+        int total = 0;
+        for (String v : values) total += v != null ? v.length() : 0;
+        this.chars = new char[total];
+        this.offsets = new int[values.length + 1];
+        int pos = 0;
+        for (int i = 0; i < values.length; i++) {
+            offsets[i] = pos;
+            if (values[i] != null) {
+                values[i].getChars(0, values[i].length(), chars, pos);
+                pos += values[i].length();
+            }
+        }
+        offsets[values.length] = pos;
+    }
+
+    int size() {
+        return offsets.length - 1;
+    }
+
+    String get(int i) {
+        return new String(chars, offsets[i], length(i));
+    }
+
+    int length(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    char charAt(int i, int index) {
+        return chars[offsets[i] + index];
+    }
+
+    boolean isEmpty(int i) {
+        return offsets[i + 1] == offsets[i];
+    }
+
+    /** Som String.indexOf(q) på värde i. */
+    int indexOf(int i, String q) {
+        int start = offsets[i];
+        int last = offsets[i + 1] - q.length();
+        for (int p = start; p <= last; p++) {
+            if (regionMatches(p, q)) return p - start;
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(int at, String s) {
+        for (int k = 0; k < s.length(); k++) {
+            if (chars[at + k] != s.charAt(k)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PoiPriceWorkbook.java
+package com.swedtrac.workorder.pricelist;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.openxml4j.exceptions.OLE2NotOfficeXmlFileException;
+import org.apache.poi.ss.usermodel.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Läser arbetsboken via POI:s DOM-modell (WorkbookFactory). Hela boken hålls i minnet,
+ * men formatet kan vara både .xlsx och äldre .xls.
+ */
+final class PoiPriceWorkbook implements PriceWorkbook {
+
+    private final Workbook wb;
+
+    private PoiPriceWorkbook(Workbook wb) {
+        this.wb = wb;
+    }
+
+    static PoiPriceWorkbook open(InputStream in) throws IOException {
+        Workbook wb;
+        try {
+            wb = WorkbookFactory.create(in);
+        } catch (OLE2NotOfficeXmlFileException | EncryptedDocumentException oe) {
+            // Fallback: kanske .xls older format
+            in.reset();
+            wb = WorkbookFactory.create(in);
+        }
+        return new PoiPriceWorkbook(wb);
+    }
+
+    @Override
+    public List<String> sheetNames() {
+        List<String> names = new ArrayList<>();
+        for (int si = 0; si < wb.getNumberOfSheets(); si++) {
+            names.add(wb.getSheetName(si));
+        }
+        return names;
+    }
+
+    /**
+     * POI:s usermodel är inte dokumenterat trådsäker, så bladen läses ett i taget.
+     */
+    @Override
+    public boolean supportsConcurrentSheets() {
+        return false;
+    }
+
+    @Override
+    public void readSheet(int index, Consumer<SheetRow> rows) {
+        Sheet sheet = wb.getSheetAt(index);
+        if (sheet == null) return;
+        // en evaluator per blad i stället för en per formelcell
+        FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+        for (Row row : sheet) {
+            SheetRow.Builder b = new SheetRow.Builder(row.getRowNum());
+            for (Cell c : row) {
+                b.cell(c.getColumnIndex(), getCellString(c, evaluator), getCellNumber(c));
+            }
+            rows.accept(b.build());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        wb.close();
+    }
+
+    private static Double getCellNumber(Cell c) {
+        try {
+            if (c.getCellType() == CellType.NUMERIC) return c.getNumericCellValue();
+            if (c.getCellType() == CellType.FORMULA && c.getCachedFormulaResultType() == CellType.NUMERIC) {
+                return c.getNumericCellValue();
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    private static String getCellString(Cell c, FormulaEvaluator evaluator) {
+        if (c == null) return "";
+        try {
+            if (c.getCellType() == CellType.STRING) return c.getStringCellValue().trim();
+            if (c.getCellType() == CellType.NUMERIC) {
+                if (DateUtil.isCellDateFormatted(c)) return c.getDateCellValue().toString();
+                return PriceSheetParser.formatNumber(c.getNumericCellValue());
+            }
+            if (c.getCellType() == CellType.BOOLEAN) return String.valueOf(c.getBooleanCellValue());
+            if (c.getCellType() == CellType.FORMULA) {
+                try {
+                    CellValue val = evaluator.evaluate(c);
+                    if (val == null) return "";
+                    switch (val.getCellType()) {
+                        case STRING: return val.getStringValue().trim();
+                        case NUMERIC: return PriceSheetParser.formatNumber(val.getNumberValue());
+                        case BOOLEAN: return String.valueOf(val.getBooleanValue());
+                        default: return "";
+                    }
+                } catch (Exception e) {
+                    return c.toString().trim();
+                }
+            }
+            return c.toString().trim();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
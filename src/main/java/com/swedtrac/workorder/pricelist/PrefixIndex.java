@@ -0,0 +1,47 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PrefixIndex.java
+package com.swedtrac.workorder.pricelist;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Prefixsökning över normaliserade EM-nummer för autocomplete.
+ * Nyckelordningen (ordinaler sorterade på nyckel) ligger färdig i den kompilerade filen,
+ * så indexet byggs aldrig vid start. Ett prefix slås upp med binärsökning direkt mot
+ * den mappade bufferten och matchningarna ligger sedan i följd, så en fråga kostar
+ * O(log n + k) utan att avkoda några nycklar.
+ */
+final class PrefixIndex {
+
+    private final CompiledPriceList compiled;
+
+    PrefixIndex(CompiledPriceList compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Ordinaler för artiklar vars nyckel börjar med prefixet (redan normaliserat),
+     * i nyckelordning, högst 'limit' stycken.
+     */
+    int[] collect(String prefix, int limit) {
+        byte[] p = prefix.getBytes(StandardCharsets.UTF_8);
+        int n = compiled.itemCount();
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compiled.compareKey(compiled.keyOrder(mid), p) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        int[] out = new int[Math.max(0, Math.min(limit, n - lo))];
+        int count = 0;
+        while (count < out.length && compiled.keyStartsWith(compiled.keyOrder(lo + count), p)) {
+            out[count] = compiled.keyOrder(lo + count);
+            count++;
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    int size() {
+        return compiled.itemCount();
+    }
+}
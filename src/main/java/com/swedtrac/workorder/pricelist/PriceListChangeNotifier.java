@@ -0,0 +1,32 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceListChangeNotifier.java
+package com.swedtrac.workorder.pricelist;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tar emot {@link PriceListDiff} efter en reload och publicerar en {@link PriceListChanged}
+ * med de ändrade EM-nycklarna (högst 'notify-max-keys', annars fullReload).
+ * Ändringsflödet skickar den vidare till anslutna klienter som SSE-händelsen "pricelist",
+ * så öppna ordrar bara behöver jämföra de materialrader som berörs.
+ */
+@Component
+public class PriceListChangeNotifier {
+
+    private final ApplicationEventPublisher events;
+    private final int maxKeys;
+
+    public PriceListChangeNotifier(ApplicationEventPublisher events,
+                                   @Value("${swedtrac.pricelist.notify-max-keys:500}") int maxKeys) {
+        this.events = events;
+        this.maxKeys = Math.max(0, maxKeys);
+    }
+
+    @EventListener
+    public void onReload(PriceListDiff diff) {
+        if (diff.isEmpty()) return;
+        events.publishEvent(PriceListChanged.of(diff, maxKeys));
+    }
+}
@@ -0,0 +1,78 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceListChanged.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Klientvänlig sammanfattning av en reload, publicerad som Spring-händelse av
+ * {@link PriceListChangeNotifier}. Innehåller de ändrade EM-nycklarna (normaliserade) per kategori.
+ * Är de fler än taket skickas inga nycklar alls och {@link #isFullReload()} är sant;
+ * klienten får då jämföra allt den visar mot den nya listan.
+ */
+public class PriceListChanged {
+
+    private final long fromVersion;
+    private final long version;
+    private final boolean fullReload;
+    private final List<String> added;
+    private final List<String> removed;
+    private final List<String> repriced;
+    private final List<String> changed;
+
+    private PriceListChanged(long fromVersion, long version, boolean fullReload, List<String> added,
+                             List<String> removed, List<String> repriced, List<String> changed) {
+        this.fromVersion = fromVersion;
+        this.version = version;
+        this.fullReload = fullReload;
+        this.added = added;
+        this.removed = removed;
+        this.repriced = repriced;
+        this.changed = changed;
+    }
+
+    /**
+     * Sammanfattar diffen; fler än 'maxKeys' nycklar totalt ger fullReload utan nycklar.
+     */
+    static PriceListChanged of(PriceListDiff diff, int maxKeys) {
+        int total = diff.getAdded().size() + diff.getRemoved().size()
+                + diff.getRepriced().size() + diff.getChanged().size();
+        if (total > maxKeys) {
+            List<String> none = Collections.emptyList();
+            return new PriceListChanged(diff.getFromVersion(), diff.getToVersion(), true, none, none, none, none);
+        }
+        return new PriceListChanged(diff.getFromVersion(), diff.getToVersion(), false,
+                diff.getAdded(), diff.getRemoved(), diff.getRepriced(), diff.getChanged());
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /** Den nya prislistans version. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Sant när ändringarna var för många för att räknas upp. */
+    public boolean isFullReload() {
+        return fullReload;
+    }
+
+    public List<String> getAdded() {
+        return added;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public List<String> getRepriced() {
+        return repriced;
+    }
+
+    /** Nycklar vars benämning eller enhet ändrats. */
+    public List<String> getChanged() {
+        return changed;
+    }
+}
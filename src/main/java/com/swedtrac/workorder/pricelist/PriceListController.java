@@ -1,14 +1,23 @@
 // File: src/main/java/com/swedtrac/workorder/pricelist/PriceListController.java
 package com.swedtrac.workorder.pricelist;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/pricelist")
 public class PriceListController {
 
+    // Övre gräns för antal EM-nummer per batchuppslag
+    private static final int MAX_LOOKUP = 1000;
+
+    // Får cachas (även av proxy) men ska alltid valideras mot ETag, eftersom reload kan ske när som helst
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePublic();
+
     private final PriceListService priceListService;
 
     public PriceListController(PriceListService priceListService) {
@@ -17,17 +26,68 @@ public class PriceListController {
 
     // Exakt lookup
     @GetMapping("/{emNr}")
-    public ResponseEntity<PriceItem> getByEmNr(@PathVariable String emNr) {
-        PriceItem item = priceListService.findByEmNrNormalize(emNr);
+    public ResponseEntity<PriceItem> getByEmNr(@PathVariable String emNr, WebRequest request) {
+        // ETag och svar från samma ögonblicksbild, även om en reload sker mitt i anropet
+        PriceListSnapshot snap = priceListService.getSnapshot();
+        // Oförändrad prislista: 304 direkt, utan uppslag eller serialisering
+        if (request.checkNotModified(snap.getETag())) {
+            return null;
+        }
+        PriceItem item = priceListService.findByArticleNumber(snap, emNr);
         if (item == null) {
-            return ResponseEntity.notFound().build();
+            return ResponseEntity.notFound().cacheControl(CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(item);
+    }
+
+    // Batch lookup: flera EM-nummer i ett anrop, svaret i samma ordning som frågan
+    @PostMapping("/lookup")
+    public ResponseEntity<PriceLookupResponse> lookup(@RequestBody List<String> emNrs) {
+        if (emNrs == null) {
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(item);
+        if (emNrs.size() > MAX_LOOKUP) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(priceListService.lookup(emNrs));
     }
 
     // Prefix search (autocomplete)
     @GetMapping("/search")
-    public List<PriceItem> searchByPrefix(@RequestParam(name = "prefix", required = false, defaultValue = "") String prefix) {
-        return priceListService.searchByPrefixNormalize(prefix);
+    public ResponseEntity<List<PriceItem>> searchByPrefix(@RequestParam(name = "prefix", required = false, defaultValue = "") String prefix,
+                                                          WebRequest request) {
+        PriceListSnapshot snap = priceListService.getSnapshot();
+        if (request.checkNotModified(snap.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(priceListService.searchByPrefix(snap, prefix, 20));
+    }
+
+    // Felstavningstolerant sökning (Levenshtein-avstånd 1-2) på EM-nummer och ord i namnet
+    @GetMapping("/fuzzy")
+    public ResponseEntity<List<PriceItem>> fuzzy(@RequestParam(name = "q", required = false, defaultValue = "") String q,
+                                                 @RequestParam(name = "maxDistance", required = false, defaultValue = "2") int maxDistance,
+                                                 WebRequest request) {
+        PriceListSnapshot snap = priceListService.getSnapshot();
+        if (request.checkNotModified(snap.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(priceListService.fuzzySearch(snap, q, maxDistance, 20));
+    }
+
+    // Aktuell version av prislistan (ökar vid varje lyckad reload)
+    @GetMapping("/version")
+    public PriceListSnapshot getVersion() {
+        return priceListService.getSnapshot();
+    }
+
+    // Ändringar (nya, borttagna, nya priser) i senaste reload
+    @GetMapping("/changes")
+    public ResponseEntity<PriceListDiff> getChanges() {
+        PriceListDiff diff = priceListService.getLastDiff();
+        if (diff == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(diff);
     }
-}
\ No newline at end of file
+}
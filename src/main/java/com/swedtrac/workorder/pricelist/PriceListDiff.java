@@ -0,0 +1,102 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceListDiff.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Skillnad mellan två ögonblicksbilder av prislistan, uttryckt i normaliserade EM-nycklar.
+ * Publiceras som Spring-händelse efter varje reload så att lyssnare bara behöver
+ * invalidera de nycklar som faktiskt ändrats i stället för hela listan
+ * (se {@link PriceListChangeNotifier}).
+ *
+ * En nyckel kan finnas i både 'repriced' och 'changed' om både pris och benämning/enhet ändrats.
+ */
+public final class PriceListDiff {
+
+    private final long fromVersion;
+    private final long toVersion;
+    private final List<String> added;
+    private final List<String> removed;
+    private final List<String> repriced;
+    private final List<String> changed;
+
+    private PriceListDiff(long fromVersion, long toVersion, List<String> added, List<String> removed,
+                          List<String> repriced, List<String> changed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.repriced = Collections.unmodifiableList(repriced);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Jämför via respektive hashindex, O(n + m) uppslag utan extra kartor.
+     */
+    static PriceListDiff between(PriceListSnapshot previous, PriceListSnapshot next) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> repriced = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+
+        for (int i = 0; i < next.getItemCount(); i++) {
+            String key = next.itemKey(i);
+            int old = previous.find(key);
+            if (old < 0) {
+                added.add(key);
+                continue;
+            }
+            if (Double.compare(previous.price(old), next.price(i)) != 0) {
+                repriced.add(key);
+            }
+            if (!previous.name(old).equals(next.name(i)) || !previous.unit(old).equals(next.unit(i))) {
+                changed.add(key);
+            }
+        }
+        for (int i = 0; i < previous.getItemCount(); i++) {
+            String key = previous.itemKey(i);
+            if (next.find(key) < 0) {
+                removed.add(key);
+            }
+        }
+        return new PriceListDiff(previous.getVersion(), next.getVersion(), added, removed, repriced, changed);
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public List<String> getAdded() {
+        return added;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public List<String> getRepriced() {
+        return repriced;
+    }
+
+    /** Nycklar vars benämning eller enhet ändrats. */
+    public List<String> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && repriced.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "version " + fromVersion + " -> " + toVersion
+                + ": " + added.size() + " nya, " + removed.size() + " borttagna, " + repriced.size() + " nya priser, "
+                + changed.size() + " ändrade benämningar/enheter";
+    }
+}
@@ -1,403 +1,309 @@
 // File: src/main/java/com/swedtrac/workorder/pricelist/PriceListService.java
 package com.swedtrac.workorder.pricelist;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.openxml4j.exceptions.OLE2NotOfficeXmlFileException;
-import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class PriceListService {
 
-    private final Map<String, PriceItem> byEm = new HashMap<>(); // key = normalized em or name-key
-    private final List<PriceItem> allItems = new ArrayList<>();
+    // Publicerad ögonblicksbild; byts ut i ett svep vid reload så att läsare aldrig ser halvfärdig data
+    private final AtomicReference<PriceListSnapshot> snapshot = new AtomicReference<>(PriceListSnapshot.empty());
+    private final AtomicLong versionCounter = new AtomicLong();
+
+    // true = strömmande SAX-läsning av .xlsx, false = POI:s DOM-modell (WorkbookFactory)
+    private final boolean streaming;
+
+    // Begränsad pool för att tolka prisbladen parallellt vid reload
+    private final ForkJoinPool parsePool;
+
+    // Förkompilerad binärfil som minnesmappas vid start. Måste konfigureras till en beständig
+    // katalog (delad mellan instanser) — i tmp kan den städas bort och då tolkas Excel om vid varje start
+    private final Path compiledPath;
+
+    // Källa: "classpath:prislista.xlsx" eller en sökväg i filsystemet (ev. med prefixet "file:")
+    private final String classpathResource;
+    private final Path sourcePath;
+
+    // Filbevakning med automatisk reload (gäller bara källor i filsystemet)
+    private final boolean watch;
+    private final long watchDebounceMillis;
+    private PriceListWatcher watcher;
+
+    private final ApplicationEventPublisher events;
+    private volatile PriceListDiff lastDiff;
+
+    public PriceListService(
+            @Value("${swedtrac.pricelist.path:classpath:prislista.xlsx}") String path,
+            @Value("${swedtrac.pricelist.watch:false}") boolean watch,
+            @Value("${swedtrac.pricelist.watch-debounce-ms:1000}") long watchDebounceMillis,
+            @Value("${swedtrac.pricelist.loader:streaming}") String loader,
+            @Value("${swedtrac.pricelist.parse-threads:0}") int parseThreads,
+            @Value("${swedtrac.pricelist.compiled-path}") String compiledPath,
+            ApplicationEventPublisher events
+    ) {
+        if (path.startsWith("classpath:")) {
+            this.classpathResource = path.substring("classpath:".length()).replaceFirst("^/", "");
+            this.sourcePath = null;
+        } else {
+            this.classpathResource = null;
+            this.sourcePath = Path.of(path.startsWith("file:") ? path.substring("file:".length()) : path);
+        }
+        this.watch = watch;
+        this.watchDebounceMillis = watchDebounceMillis;
+        this.streaming = !"workbook".equalsIgnoreCase(loader);
+        this.compiledPath = Path.of(compiledPath);
+        this.events = events;
+        // 0 = en tråd per kärna
+        this.parsePool = new ForkJoinPool(parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors());
+    }
 
     @PostConstruct
     public void load() {
         reload();
+        if (watch) {
+            startWatcher();
+        }
     }
 
-    public synchronized void reload() {
-        byEm.clear();
-        allItems.clear();
-        loadData();
-    }
-
-    private void loadData() {
-        try (InputStream in = getClass().getClassLoader().getResourceAsStream("prislista.xlsx")) {
-            if (in == null) {
-                System.err.println("Kunde inte hitta prislista.xlsx i classpath");
-                return;
-            }
-
-            Workbook wb;
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
             try {
-                wb = WorkbookFactory.create(in);
-            } catch (OLE2NotOfficeXmlFileException | EncryptedDocumentException oe) {
-                // Fallback: kanske .xls older format
-                in.reset();
-                wb = WorkbookFactory.create(in);
-            }
-
-            for (int si = 0; si < wb.getNumberOfSheets(); si++) {
-                Sheet sheet = wb.getSheetAt(si);
-                if (sheet == null) continue;
-                String sheetName = sheet.getSheetName();
-                System.out.println("Läser blad: " + sheetName);
-                readSheetFlexible(sheet, sheetName);
+                watcher.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+        parsePool.shutdownNow();
+    }
 
-            System.out.println("Prislista: laddad totalt " + allItems.size() + " artiklar (unika nycklar: " + byEm.size() + ")");
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void startWatcher() {
+        if (sourcePath == null) {
+            System.err.println("Prislista: bevakning kräver en sökväg i filsystemet, inte " + describeSource());
+            return;
+        }
+        try {
+            watcher = new PriceListWatcher(sourcePath, watchDebounceMillis, this::reload);
+            watcher.start();
+        } catch (IOException e) {
+            System.err.println("Prislista: kunde inte bevaka " + sourcePath + ": " + e.getMessage());
         }
     }
 
     /**
-     * Försök läsa ett blad med flexibel heuristik:
-     * - hitta header-rad genom att leta efter typiska kolumnnamn
-     * - mappa kolumner
-     * - iterera rader under header och skapa PriceItem när rimligt
+     * Läser om prislistan till en ny ögonblicksbild och publicerar den.
+     * Synkroniserad endast mot andra reloads — läsare blockeras aldrig.
+     * Excel-filen tolkas bara om när källans hash har ändrats; annars används den
+     * kompilerade filen (eller nuvarande ögonblicksbild om inget ändrats alls).
+     * Misslyckas inläsningen ligger föregående ögonblicksbild kvar.
      */
-    private void readSheetFlexible(Sheet sheet, String sheetName) {
-        if (sheet.getLastRowNum() < 0) return;
-
-        int headerRowIndex = findHeaderRow(sheet, 0, 12);
-        Map<String, Integer> colMap = new HashMap<>();
-
-        if (headerRowIndex >= 0) {
-            Row hdr = sheet.getRow(headerRowIndex);
-            colMap = mapHeaderColumns(hdr);
-        } else {
-            // Ingen tydlig header hittad — försök heuristiskt
-            // Vi försöker hitta en rad med flera textceller som kan vara "Material" etc.
-            headerRowIndex = findHeaderRowByKeywords(sheet);
-            if (headerRowIndex >= 0) {
-                Row hdr = sheet.getRow(headerRowIndex);
-                colMap = mapHeaderColumns(hdr);
-            } else {
-                // fallback: försök läsa tabellformat utan header — sök priser i varje rad
-                processRowsHeuristically(sheet, sheetName);
+    public synchronized void reload() {
+        try {
+            byte[] sourceHash = hashSource();
+            if (sourceHash == null) {
+                System.err.println("Kunde inte hitta prislista: " + describeSource());
+                return;
+            }
+            if (snapshot.get().isBuiltFrom(sourceHash)) {
+                System.out.println("Prislista: källan oförändrad, behåller version " + snapshot.get().getVersion());
                 return;
             }
-        }
 
-        // Om vi lyckats mappa minst en relevant kolumn, processa rader efter header
-        if (!colMap.isEmpty()) {
-            for (int r = headerRowIndex + 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                // Hoppa över rader som återigen är headers eller tomma
-                if (isRowEmpty(row)) continue;
-                if (looksLikeHeaderRowAgain(row)) continue;
-
-                String material = getCellStringSafe(row, colMap.getOrDefault("material", -1));
-                String emNr = getCellStringSafe(row, colMap.getOrDefault("em", -1));
-                String artnr = getCellStringSafe(row, colMap.getOrDefault("artnr", -1));
-                String unit = getCellStringSafe(row, colMap.getOrDefault("unit", -1));
-                Double priceCust = getCellDoubleSafe(row, colMap.getOrDefault("price_customer", -1));
-                Double pricePurchase = getCellDoubleSafe(row, colMap.getOrDefault("price_purchase", -1));
-                Double priceAny = (priceCust != null && priceCust > 0) ? priceCust : (pricePurchase != null ? pricePurchase : null);
-
-                if ((emNr == null || emNr.isBlank()) && (artnr == null || artnr.isBlank()) && (material == null || material.isBlank()) && priceAny == null) {
-                    // sannolikt rad utan data
-                    continue;
+            CompiledPriceList compiled = mapCompiled(sourceHash);
+            if (compiled == null) {
+                PriceListSnapshot.Builder builder = new PriceListSnapshot.Builder();
+                if (!loadData(builder)) {
+                    return;
                 }
-
-                addPriceItemIfValid(material, emNr, artnr, priceAny, unit, sheetName);
+                compiled = storeCompiled(builder.compile(sourceHash));
             }
-        } else {
-            // Ingen mappning: fallback heuristik
-            processRowsHeuristically(sheet, sheetName);
-        }
-    }
 
-    private int findHeaderRow(Sheet sheet, int startRow, int maxRowsToCheck) {
-        int last = Math.min(sheet.getLastRowNum(), startRow + maxRowsToCheck);
-        int bestRow = -1;
-        int bestScore = 0;
-        for (int r = startRow; r <= last; r++) {
-            Row row = sheet.getRow(r);
-            if (row == null) continue;
-            int score = 0;
-            for (Cell c : row) {
-                String txt = getCellString(c).toLowerCase(Locale.ROOT);
-                if (txt.isBlank()) continue;
-                if (txt.contains("em") || txt.contains("em nr") || txt.contains("em nr /") || txt.contains("em nr / leverantör") || txt.contains("em nr/leverantör")) score++;
-                if (txt.contains("art") || txt.contains("art nr") || txt.contains("artnr") || txt.contains("benämning")) score++;
-                if (txt.contains("pris") || txt.contains("pris inköp") || txt.contains("pris till kund") || txt.contains("pris/inköp")) score++;
-                if (txt.contains("enhet") || txt.contains("st") || txt.contains("kg")) score++;
-                if (txt.contains("material") || txt.contains("benämning")) score++;
-            }
-            if (score > bestScore && score >= 2) {
-                bestScore = score;
-                bestRow = r;
+            PriceListSnapshot previous = snapshot.get();
+            PriceListSnapshot next = new PriceListSnapshot(versionCounter.incrementAndGet(), Instant.now(), compiled);
+            snapshot.set(next);
+            System.out.println("Prislista: publicerade version " + next.getVersion() + " (" + next.getItemCount() + " artiklar)");
+            // sökindexen byggs i bakgrunden så att varken start eller första sökningen väntar på dem
+            parsePool.execute(next::warmUp);
+
+            // Första inläsningen är ingen ändring; därefter talar diffen om vilka nycklar som påverkats
+            if (previous.getVersion() > 0) {
+                PriceListDiff diff = PriceListDiff.between(previous, next);
+                lastDiff = diff;
+                System.out.println("Prislista: ändringar " + diff);
+                events.publishEvent(diff);
             }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
-        return bestRow;
     }
 
-    private int findHeaderRowByKeywords(Sheet sheet) {
-        // bredare sökning: leta i fler rader efter rader innehållande "Material" eller "Pris inköp" etc.
-        for (int r = 0; r <= Math.min(sheet.getLastRowNum(), 40); r++) {
-            Row row = sheet.getRow(r);
-            if (row == null) continue;
-            int hits = 0;
-            for (Cell c : row) {
-                String txt = getCellString(c).toLowerCase(Locale.ROOT);
-                if (txt.contains("material")) hits++;
-                if (txt.contains("pris inköp") || txt.contains("pris/inköp") || txt.contains("pris inköp")) hits++;
-                if (txt.contains("pris till kund") || txt.contains("pris till")) hits++;
-                if (txt.contains("em nr") || txt.contains("em nr /")) hits++;
-                if (txt.contains("art") || txt.contains("art nr")) hits++;
-            }
-            if (hits >= 1) return r;
-        }
-        return -1;
+    /**
+     * Aktuell ögonblicksbild (version, laddningstid, antal artiklar).
+     */
+    public PriceListSnapshot getSnapshot() {
+        return snapshot.get();
     }
 
-    private Map<String, Integer> mapHeaderColumns(Row hdr) {
-        Map<String, Integer> mm = new HashMap<>();
-        if (hdr == null) return mm;
-        for (Cell c : hdr) {
-            String text = getCellString(c).toLowerCase(Locale.ROOT).trim();
-            int idx = c.getColumnIndex();
-            if (text.isBlank()) continue;
-            if (text.contains("material") || text.contains("benämning") || text.contains("art nr/benämning") || text.contains("art nr/ benämning")) {
-                mm.put("material", idx);
-                continue;
-            }
-            if (text.contains("em nr") || text.contains("em") || text.contains("em nr /")) {
-                mm.put("em", idx);
-                continue;
-            }
-            if (text.contains("art nr") || text.contains("artnr") || text.contains("art")) {
-                mm.put("artnr", idx);
-                continue;
-            }
-            if (text.contains("pris till") || text.contains("pris till kund") || text.contains("pris kund") || text.contains("pris till")) {
-                mm.put("price_customer", idx);
-                continue;
-            }
-            if (text.contains("pris inköp") || text.contains("pris/inköp") || text.contains("pris inköp")) {
-                mm.put("price_purchase", idx);
-                continue;
-            }
-            if (text.contains("enhet") || text.contains("unit")) {
-                mm.put("unit", idx);
-                continue;
-            }
-            if (text.contains("antal") || text.contains("per lok") || text.contains("per lok")) {
-                mm.put("qty", idx);
-            }
-            // support for service table headers
-            if (text.contains("kr/tim") || text.contains("kr/tim") || text.contains("kr/timme") || text.contains("tid") || text.contains("litt")) {
-                mm.put("service", idx);
-            }
-        }
-        return mm;
+    /**
+     * Ändringar i senaste reload jämfört med versionen innan (null före första reload).
+     */
+    public PriceListDiff getLastDiff() {
+        return lastDiff;
     }
 
-    private void processRowsHeuristically(Sheet sheet, String sheetName) {
-        // Om inget header hittades, gå igenom rader och leta efter rader som innehåller pris (nummer) och namn/emnr
-        for (int r = 0; r <= sheet.getLastRowNum(); r++) {
-            Row row = sheet.getRow(r);
-            if (row == null) continue;
-            if (isRowEmpty(row)) continue;
-
-            // Hitta första textcell (troligtvis namn) och första numeriska cell (troligtvis pris)
-            String possibleName = null;
-            String possibleEm = null;
-            String possibleUnit = null;
-            Double possiblePrice = null;
-
-            for (Cell c : row) {
-                String cs = getCellString(c);
-                if (possibleName == null && looksLikeName(cs)) possibleName = cs;
-                if (possibleEm == null && looksLikeEm(cs)) possibleEm = cs;
-                if (possiblePrice == null) {
-                    Double dv = getCellDoubleSafe(c);
-                    if (dv != null && dv > 0) {
-                        possiblePrice = dv;
-                    } else {
-                        // sometimes price is string with comma
-                        String norm = cs.replaceAll("[^0-9,\\.\\-]", "").replace(',', '.');
-                        try {
-                            if (!norm.isBlank()) {
-                                double pd = Double.parseDouble(norm);
-                                if (pd > 0) possiblePrice = pd;
-                            }
-                        } catch (Exception ignored) {}
-                    }
-                }
-                if (possibleUnit == null && cs != null && cs.matches(".*(st|kg|l|L|dag).*")) possibleUnit = cs;
-            }
-
-            if ((possibleEm != null || possibleName != null) && possiblePrice != null) {
-                addPriceItemIfValid(possibleName, possibleEm, null, possiblePrice, possibleUnit, sheetName);
-            }
+    /**
+     * Öppna källfilen, eller null om den saknas.
+     */
+    private InputStream openSource() throws IOException {
+        if (sourcePath == null) {
+            return getClass().getClassLoader().getResourceAsStream(classpathResource);
         }
+        if (!Files.isRegularFile(sourcePath)) {
+            return null;
+        }
+        return Files.newInputStream(sourcePath);
     }
 
-    private boolean looksLikeName(String s) {
-        if (s == null) return false;
-        String t = s.trim();
-        return t.length() >= 2 && !t.matches("^[0-9\\s\\-\\.,]+$");
-    }
-
-    private boolean looksLikeEm(String s) {
-        if (s == null) return false;
-        String t = s.trim();
-        // em numbers often contain digits and spaces, maybe letters
-        return t.matches(".*\\d.*") && t.length() <= 20;
+    private String describeSource() {
+        return sourcePath != null ? sourcePath.toString() : "classpath:" + classpathResource;
     }
 
-    private boolean isRowEmpty(Row row) {
-        for (Cell c : row) {
-            String v = getCellString(c);
-            if (v != null && !v.isBlank()) return false;
+    /**
+     * SHA-256 av källfilen, eller null om den saknas.
+     */
+    private byte[] hashSource() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = openSource()) {
+            if (in == null) return null;
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) digest.update(buf, 0, n);
         }
-        return true;
+        return digest.digest();
     }
 
-    private boolean looksLikeHeaderRowAgain(Row row) {
-        // skip rows that look like repeated header lines (contain 'Material' or 'Pris inköp' etc.)
-        for (Cell c : row) {
-            String txt = getCellString(c).toLowerCase(Locale.ROOT);
-            if (txt.contains("material") || txt.contains("pris inköp") || txt.contains("pris till kund") || txt.contains("em nr") || txt.contains("art nr")) {
-                return true;
+    /**
+     * Minnesmappa den kompilerade filen om den finns och byggdes från samma källa.
+     */
+    private CompiledPriceList mapCompiled(byte[] sourceHash) {
+        if (!Files.isRegularFile(compiledPath)) return null;
+        try {
+            CompiledPriceList compiled = CompiledPriceList.map(compiledPath);
+            if (compiled.hasSourceHash(sourceHash)) {
+                System.out.println("Prislista: använder kompilerad fil " + compiledPath);
+                return compiled;
             }
+        } catch (IOException e) {
+            System.err.println("Kunde inte läsa kompilerad prislista " + compiledPath + ": " + e.getMessage());
         }
-        return false;
+        return null;
     }
 
-    private String getCellStringSafe(Row row, int idx) {
-        if (row == null || idx < 0) return null;
-        Cell c = row.getCell(idx);
-        return getCellString(c);
+    /**
+     * Skriv den kompilerade listan till disk och mappa den. Går det inte att skriva
+     * (t.ex. skrivskyddad katalog) används bufferten i minnet direkt.
+     */
+    private CompiledPriceList storeCompiled(ByteBuffer bytes) throws IOException {
+        try {
+            CompiledPriceList.write(bytes, compiledPath);
+            CompiledPriceList mapped = CompiledPriceList.map(compiledPath);
+            System.out.println("Prislista: kompilerad till " + compiledPath + " (" + mapped.byteSize() + " byte)");
+            return mapped;
+        } catch (IOException e) {
+            System.err.println("Kunde inte skriva kompilerad prislista " + compiledPath + ": " + e.getMessage());
+            return CompiledPriceList.of(bytes);
+        }
     }
 
-    private Double getCellDoubleSafe(Row row, int idx) {
-        if (row == null || idx < 0) return null;
-        Cell c = row.getCell(idx);
-        return getCellDoubleSafe(c);
-    }
+    private boolean loadData(PriceListSnapshot.Builder builder) {
+        try (InputStream raw = openSource()) {
+            if (raw == null) {
+                System.err.println("Kunde inte hitta prislista: " + describeSource());
+                return false;
+            }
 
-    private Double getCellDoubleSafe(Cell c) {
-        if (c == null) return null;
-        try {
-            if (c.getCellType() == CellType.NUMERIC) {
-                return c.getNumericCellValue();
-            } else if (c.getCellType() == CellType.STRING) {
-                String s = c.getStringCellValue();
-                return parseDoubleFromString(s);
-            } else if (c.getCellType() == CellType.FORMULA) {
-                try {
-                    return c.getNumericCellValue();
-                } catch (Exception e) {
-                    String s = c.getStringCellValue();
-                    return parseDoubleFromString(s);
-                }
-            } else {
-                String s = getCellString(c);
-                return parseDoubleFromString(s);
+            try (PriceWorkbook wb = openWorkbook(raw)) {
+                readSheets(wb, builder);
             }
+
+            System.out.println("Prislista: laddad totalt " + builder.size() + " rader (unika artiklar: " + builder.keyCount() + ")");
+            return true;
         } catch (Exception e) {
-            return null;
+            e.printStackTrace();
+            return false;
         }
     }
 
-    private Double parseDoubleFromString(String s) {
-        if (s == null) return null;
-        String norm = s.replaceAll("[^0-9,\\.\\-]", "").replace(',', '.').trim();
-        if (norm.isEmpty()) return null;
-        try {
-            return Double.parseDouble(norm);
-        } catch (Exception e) {
-            return null;
+    /**
+     * Läs alla blad. Varje blad tolkas till ett eget delresultat — parallellt på parsePool
+     * när läsaren tillåter det — och delresultaten slås sedan ihop i bladordning,
+     * så utfallet blir detsamma som vid sekventiell läsning.
+     */
+    private void readSheets(PriceWorkbook wb, PriceListSnapshot.Builder builder) throws Exception {
+        List<String> sheetNames = wb.sheetNames();
+        if (!wb.supportsConcurrentSheets() || sheetNames.size() < 2) {
+            for (int si = 0; si < sheetNames.size(); si++) {
+                builder.merge(readSheet(wb, si, sheetNames.get(si)));
+            }
+            return;
         }
-    }
 
-    private String getCellString(Cell c) {
-        if (c == null) return "";
+        List<ForkJoinTask<PriceListSnapshot.Builder>> tasks = new ArrayList<>(sheetNames.size());
+        for (int si = 0; si < sheetNames.size(); si++) {
+            final int index = si;
+            tasks.add(parsePool.submit(() -> readSheet(wb, index, sheetNames.get(index))));
+        }
         try {
-            if (c.getCellType() == CellType.STRING) return c.getStringCellValue().trim();
-            if (c.getCellType() == CellType.NUMERIC) {
-                if (DateUtil.isCellDateFormatted(c)) return c.getDateCellValue().toString();
-                double d = c.getNumericCellValue();
-                // show as integer-like if no fraction
-                if (d == Math.floor(d)) return String.valueOf((long) d);
-                return String.valueOf(d);
-            }
-            if (c.getCellType() == CellType.BOOLEAN) return String.valueOf(c.getBooleanCellValue());
-            if (c.getCellType() == CellType.FORMULA) {
-                try {
-                    CellValue val = c.getSheet().getWorkbook().getCreationHelper().createFormulaEvaluator().evaluate(c);
-                    if (val == null) return "";
-                    switch (val.getCellType()) {
-                        case STRING: return val.getStringValue().trim();
-                        case NUMERIC:
-                            double d = val.getNumberValue();
-                            if (d == Math.floor(d)) return String.valueOf((long) d);
-                            return String.valueOf(d);
-                        case BOOLEAN: return String.valueOf(val.getBooleanValue());
-                        default: return "";
-                    }
-                } catch (Exception e) {
-                    return c.toString().trim();
-                }
+            for (ForkJoinTask<PriceListSnapshot.Builder> task : tasks) {
+                builder.merge(task.get());
             }
-            return c.toString().trim();
-        } catch (Exception e) {
-            return "";
+        } finally {
+            // vid fel: vänta inte på blad vars resultat ändå kastas
+            tasks.forEach(t -> t.cancel(false));
         }
     }
 
-    private void addPriceItemIfValid(String material, String emNr, String artnr, Double price, String unit, String sheetName) {
-        // Normalize inputs
-        String name = (material != null && !material.isBlank()) ? material.trim() : (artnr != null ? artnr.trim() : null);
-        String em = (emNr != null && !emNr.isBlank()) ? emNr.trim() : null;
-
-        if ((em == null || em.isBlank()) && (name == null || name.isBlank())) return;
-        double pr = (price != null) ? price : 0.0;
-        String u = (unit != null && !unit.isBlank()) ? unit.trim() : "st";
+    private PriceListSnapshot.Builder readSheet(PriceWorkbook wb, int index, String sheetName) throws Exception {
+        System.out.println("Läser blad: " + sheetName);
+        PriceListSnapshot.Builder partial = new PriceListSnapshot.Builder();
+        PriceSheetParser parser = new PriceSheetParser(sheetName, partial);
+        wb.readSheet(index, parser::accept);
+        parser.finish();
+        return partial;
+    }
 
-        PriceItem item = new PriceItem();
-        // set emNr if available, otherwise use generated name-key
-        if (em != null && !em.isBlank()) {
-            item.setEmNr(em);
-        } else {
-            item.setEmNr("NAME:" + (name.length() > 60 ? name.substring(0, 60) : name));
-        }
-        item.setName(name != null ? name : "");
-        item.setPrice(pr);
-        item.setUnit(u);
-        item.setSourceSheet(sheetName);
-
-        String key = normalize(item.getEmNr());
-        // If duplicate key exists, we keep the first found (you can change to replace if you prefer)
-        if (!byEm.containsKey(key)) {
-            byEm.put(key, item);
-            allItems.add(item);
-        } else {
-            // If existing has price 0 and new has price>0, replace
-            PriceItem existing = byEm.get(key);
-            if ((existing.getPrice() == 0.0 || existing.getPrice() < 0.0001) && item.getPrice() > 0.0) {
-                byEm.put(key, item);
-                // replace in allItems as well
-                allItems.remove(existing);
-                allItems.add(item);
-            }
+    /**
+     * Öppna arbetsboken med vald läsare. Strömmande läsning kräver .xlsx (OOXML);
+     * andra format (t.ex. .xls) läses alltid via POI:s DOM-modell.
+     */
+    private PriceWorkbook openWorkbook(InputStream raw) throws Exception {
+        InputStream in = FileMagic.prepareToCheckMagic(raw);
+        if (streaming && FileMagic.valueOf(in) == FileMagic.OOXML) {
+            return StreamingPriceWorkbook.open(in);
         }
+        return PoiPriceWorkbook.open(in);
     }
 
-    private String normalize(String s) {
+    static String normalize(String s) {
         if (s == null) return "";
         return s.trim().toUpperCase(Locale.ROOT).replaceAll("\\s+", " ");
     }
@@ -406,29 +312,93 @@ public class PriceListService {
 
     /**
      * Find by article number (emNr or artnr). Returns null if not found.
+     * Falls back to the best name match from the trigram index, so a single lookup
+     * typed as an article name still finds it. The batch {@link #lookup} does not.
      */
     public PriceItem findByArticleNumber(String articleNumber) {
+        return findByArticleNumber(snapshot.get(), articleNumber);
+    }
+
+    /**
+     * As {@link #findByArticleNumber(String)}, against a given snapshot. Used by controllers
+     * that take the ETag from the same snapshot, so a reload in between cannot pair
+     * a new ETag with an old answer (or the other way round).
+     */
+    public PriceItem findByArticleNumber(PriceListSnapshot snap, String articleNumber) {
+        PriceItem exact = find(snap, articleNumber);
+        if (exact != null || articleNumber == null) return exact;
+        // fallback: best-ranked match on name
+        int[] hits = snap.nameIndex().search(normalize(articleNumber), 1);
+        return hits.length > 0 ? snap.item(hits[0]) : null;
+    }
+
+    /**
+     * Batch lookup: resolves every article number against the same snapshot.
+     * Results keep the request order; misses are reported with found=false.
+     * Exact match on the normalized number only — the batch prices material rows,
+     * so a miss must never become a guess from the name.
+     */
+    public PriceLookupResponse lookup(List<String> articleNumbers) {
+        PriceListSnapshot snap = snapshot.get();
+        List<PriceLookupResponse.Result> results = new ArrayList<>(articleNumbers.size());
+        for (String nr : articleNumbers) {
+            results.add(new PriceLookupResponse.Result(nr, find(snap, nr)));
+        }
+        return new PriceLookupResponse(snap.getVersion(), results);
+    }
+
+    private static PriceItem find(PriceListSnapshot snap, String articleNumber) {
         if (articleNumber == null) return null;
-        String k = normalize(articleNumber);
-        PriceItem p = byEm.get(k);
-        if (p != null) return p;
-        // fallback: try contains match on name
-        return allItems.stream()
-                .filter(it -> normalize(it.getEmNr()).equals(k) || normalize(it.getName()).contains(k))
-                .findFirst()
-                .orElse(null);
+        return snap.get(normalize(articleNumber));
     }
 
     /**
-     * Search by prefix (autocomplete). Returns up to 'limit' items.
+     * Search by prefix (autocomplete). Returns up to 'limit' items, best first:
+     * exact EM number, EM numbers starting with the prefix (sorted prefix index),
+     * then name matches ranked by the trigram index (prefix before substring).
      */
     public List<PriceItem> searchByPrefix(String prefix, int limit) {
+        return searchByPrefix(snapshot.get(), prefix, limit);
+    }
+
+    /** As {@link #searchByPrefix(String, int)}, against a given snapshot. */
+    public List<PriceItem> searchByPrefix(PriceListSnapshot snap, String prefix, int limit) {
         if (prefix == null || prefix.trim().isEmpty()) return Collections.emptyList();
         String p = normalize(prefix);
-        return allItems.stream()
-                .filter(it -> normalize(it.getEmNr()).startsWith(p) || normalize(it.getName()).contains(p))
-                .limit(limit)
-                .collect(Collectors.toList());
+        List<PriceItem> result = new ArrayList<>(Math.min(limit, 64));
+        // en exakt nyckel sorterar före alla längre nycklar med samma prefix, så den hamnar först
+        for (int ord : snap.prefixIndex().collect(p, limit)) {
+            result.add(snap.item(ord));
+        }
+        if (result.size() < limit) {
+            for (int ord : snap.nameIndex().search(p, limit + result.size())) {
+                if (result.size() >= limit) break;
+                // EM-prefixträffar är redan med från indexet
+                if (snap.keyStartsWith(ord, p)) continue;
+                result.add(snap.item(ord));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Typo-tolerant search: items whose EM number, or a word in their name, is within
+     * 'maxDistance' edits (1-2) of the query. Closest first. Uses the snapshot's BK-tree,
+     * so only a fraction of the terms are compared.
+     */
+    public List<PriceItem> fuzzySearch(String query, int maxDistance, int limit) {
+        return fuzzySearch(snapshot.get(), query, maxDistance, limit);
+    }
+
+    /** As {@link #fuzzySearch(String, int, int)}, against a given snapshot. */
+    public List<PriceItem> fuzzySearch(PriceListSnapshot snap, String query, int maxDistance, int limit) {
+        if (query == null || query.trim().isEmpty()) return Collections.emptyList();
+        String q = normalize(query);
+        List<PriceItem> result = new ArrayList<>();
+        for (int ord : snap.fuzzyIndex().search(q, maxDistance, limit)) {
+            result.add(snap.item(ord));
+        }
+        return result;
     }
 
     // convenience wrapper used by controller in earlier code
@@ -458,6 +428,6 @@ public class PriceListService {
      * Hjälpmetod för att kunna visa allt (kan vara användbar vid debugging)
      */
     public List<PriceItem> getAllItems() {
-        return Collections.unmodifiableList(allItems);
+        return snapshot.get().items();
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceListSnapshot.java
+package com.swedtrac.workorder.pricelist;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Oföränderlig ögonblicksbild av prislistan.
+ * Byggs färdigt vid sidan av (via {@link Builder}) och publiceras sedan med ett enda
+ * referensbyte i PriceListService — läsare ser alltid en komplett lista och behöver inga lås.
+ * Ögonblicksbilden är en tunn vy över den kompilerade listan (se {@link CompiledPriceList}):
+ * priser, referenser och strängar läses direkt ur den mappade bufferten och ingenting
+ * kopieras till heapen vid publicering. Exakta uppslag går mot filens hashindex och
+ * prefixsökning mot filens nyckelordning. PriceItem-objekt skapas först när en artikel lämnas ut.
+ *
+ * Namn- och felstavningsindexen finns inte i filen; de byggs första gången de behövs
+ * (eller i förväg via {@link #warmUp()}) och behålls sedan så länge ögonblicksbilden lever.
+ */
+public final class PriceListSnapshot {
+
+    /**
+     * Höjs när namn-, prefix- eller felstavningssökningen ger andra träffar eller annan
+     * rankning för samma lista, eller när svarens form ändras. Ingår i {@link #getETag()}.
+     */
+    static final int SEARCH_VERSION = 2;
+
+    private static final PriceListSnapshot EMPTY = new PriceListSnapshot(0L, null,
+            compileUnchecked(Collections.emptyList(), Collections.emptyList(), null));
+
+    private final long version;
+    private final Instant loadedAt;
+    private final CompiledPriceList compiled;
+
+    private final List<PriceItem> items;
+    private final PrefixIndex prefixIndex;
+    // byggs vid första namn- eller felstavningssökning
+    private volatile SearchIndexes searchIndexes;
+
+    PriceListSnapshot(long version, Instant loadedAt, CompiledPriceList compiled) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.compiled = compiled;
+        this.items = new AbstractList<>() {
+            @Override
+            public PriceItem get(int index) {
+                return item(index);
+            }
+
+            @Override
+            public int size() {
+                return compiled.itemCount();
+            }
+        };
+        this.prefixIndex = new PrefixIndex(compiled);
+    }
+
+    static PriceListSnapshot empty() {
+        return EMPTY;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Tidpunkt då ögonblicksbilden publicerades (null för den tomma startbilden).
+     */
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * SHA-256 (hex) av källfilen som ögonblicksbilden byggdes från.
+     */
+    public String getSourceHash() {
+        return HexFormat.of().formatHex(compiled.sourceHash());
+    }
+
+    /**
+     * Stark ETag för svar som bara beror på prislistans innehåll. Bygger på källans hash,
+     * så samma fil ger samma ETag även efter omstart (versionsnumret börjar om från 1),
+     * plus filformatets och sökningens versioner, så att en ny release som läser eller
+     * rankar samma fil annorlunda inte får webbläsarna att behålla gamla svar.
+     */
+    public String getETag() {
+        return "\"" + getSourceHash().substring(0, 32)
+                + "-" + CompiledPriceList.FORMAT_VERSION + "." + SEARCH_VERSION + "\"";
+    }
+
+    public int getItemCount() {
+        return compiled.itemCount();
+    }
+
+    /** Ordinal för en normaliserad nyckel, eller -1. */
+    int find(String normalizedKey) {
+        return compiled.find(normalizedKey);
+    }
+
+    PriceItem get(String normalizedKey) {
+        int ord = find(normalizedKey);
+        return ord >= 0 ? item(ord) : null;
+    }
+
+    /**
+     * Ny PriceItem-vy över artikel 'ord'. Objektet hör inte till ögonblicksbilden
+     * och kan ändras av anroparen utan att påverka den.
+     */
+    PriceItem item(int ord) {
+        PriceItem item = new PriceItem();
+        item.setEmNr(compiled.string(compiled.emNrRef(ord)));
+        item.setName(name(ord));
+        item.setPrice(compiled.price(ord));
+        item.setUnit(unit(ord));
+        item.setSourceSheet(compiled.string(compiled.sheetRef(ord)));
+        return item;
+    }
+
+    double price(int ord) {
+        return compiled.price(ord);
+    }
+
+    String name(int ord) {
+        return compiled.string(compiled.nameRef(ord));
+    }
+
+    String unit(int ord) {
+        return compiled.string(compiled.unitRef(ord));
+    }
+
+    boolean isBuiltFrom(byte[] sourceHash) {
+        return compiled.hasSourceHash(sourceHash);
+    }
+
+    /** Alla artiklar i inläsningsordning, som vyer som skapas vid åtkomst. */
+    List<PriceItem> items() {
+        return items;
+    }
+
+    PrefixIndex prefixIndex() {
+        return prefixIndex;
+    }
+
+    NameTrigramIndex nameIndex() {
+        return searchIndexes().names();
+    }
+
+    FuzzyIndex fuzzyIndex() {
+        return searchIndexes().fuzzy();
+    }
+
+    /**
+     * Bygg namn- och felstavningsindexen nu i stället för vid första sökningen.
+     */
+    void warmUp() {
+        searchIndexes();
+    }
+
+    String itemKey(int ord) {
+        return compiled.string(compiled.keyRef(ord));
+    }
+
+    boolean keyStartsWith(int ord, String prefix) {
+        return compiled.keyStartsWith(ord, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SearchIndexes searchIndexes() {
+        SearchIndexes s = searchIndexes;
+        if (s == null) {
+            synchronized (this) {
+                s = searchIndexes;
+                if (s == null) {
+                    s = buildSearchIndexes();
+                    searchIndexes = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private SearchIndexes buildSearchIndexes() {
+        int n = compiled.itemCount();
+        String[] keys = new String[n];
+        String[] normalizedNames = new String[n];
+        for (int ord = 0; ord < n; ord++) {
+            keys[ord] = itemKey(ord);
+            normalizedNames[ord] = PriceListService.normalize(name(ord));
+        }
+        // normaliserade namn, så sökning slipper normalisera per artikel
+        PackedStrings names = new PackedStrings(normalizedNames);
+        return new SearchIndexes(new NameTrigramIndex(names), new FuzzyIndex(keys, names));
+    }
+
+    private record SearchIndexes(NameTrigramIndex names, FuzzyIndex fuzzy) {
+    }
+
+    /**
+     * Samlar artiklar under inläsning. Används bara av en tråd i taget och
+     * kastas efter {@link #compile(byte[])}.
+     */
+    static final class Builder {
+
+        // Insättningsordning = artikelordning; remove + put flyttar en ersatt artikel sist i O(1)
+        private final LinkedHashMap<String, PriceItem> byEm = new LinkedHashMap<>();
+        // alla rader som lagts till, även dubbletter som inte behölls
+        private int rows;
+
+        /**
+         * Lägg till en artikel under nyckeln. Vid dubbletter behålls den första,
+         * utom när den befintliga saknar pris och den nya har ett.
+         */
+        void add(String key, PriceItem item) {
+            rows++;
+            PriceItem existing = byEm.get(key);
+            if (existing == null) {
+                byEm.put(key, item);
+            } else if ((existing.getPrice() == 0.0 || existing.getPrice() < 0.0001) && item.getPrice() > 0.0) {
+                // ersätt och flytta sist, som tidigare remove/add i listan
+                byEm.remove(key);
+                byEm.put(key, item);
+            }
+        }
+
+        /**
+         * Slå in ett delresultat (t.ex. ett blad som lästs parallellt) efter det som redan finns.
+         * Artiklarna läggs till i delresultatets ordning med samma dubblettregler som {@link #add},
+         * så att sammanslagning i bladordning ger samma resultat som sekventiell läsning.
+         */
+        void merge(Builder partial) {
+            partial.byEm.forEach(this::add);
+            // dubbletterna inom delresultatet räknas också som inlästa rader
+            rows += partial.rows - partial.byEm.size();
+        }
+
+        /** Antal inlästa artikelrader, inklusive dubbletter. */
+        int size() {
+            return rows;
+        }
+
+        /** Antal unika nycklar, dvs. artiklar i den färdiga listan. */
+        int keyCount() {
+            return byEm.size();
+        }
+
+        /**
+         * Kompilera insamlade artiklar till binärformatet (se {@link CompiledPriceList}).
+         */
+        ByteBuffer compile(byte[] sourceHash) {
+            return CompiledPriceList.compile(new ArrayList<>(byEm.keySet()), new ArrayList<>(byEm.values()), sourceHash);
+        }
+    }
+
+    private static CompiledPriceList compileUnchecked(List<String> keys, List<PriceItem> items, byte[] sourceHash) {
+        try {
+            return CompiledPriceList.of(CompiledPriceList.compile(keys, items, sourceHash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
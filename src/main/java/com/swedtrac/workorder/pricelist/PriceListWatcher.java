@@ -0,0 +1,95 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceListWatcher.java
+package com.swedtrac.workorder.pricelist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bevakar prislistans fil med WatchService och anropar reload när den har ändrats.
+ * Katalogen bevakas (WatchService kan inte bevaka enskilda filer), och händelser för
+ * andra filer ignoreras. Excel och kopieringsverktyg skriver ofta filen i flera steg
+ * (eller via temporärfil + rename), så reload sker först när inga nya händelser kommit
+ * under debounce-tiden och filens storlek/ändringstid har slutat ändras.
+ */
+final class PriceListWatcher implements Closeable {
+
+    private final Path file;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    PriceListWatcher(Path file, long debounceMillis, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.onChange = onChange;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "prislista-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+        System.out.println("Prislista: bevakar " + file);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = drain(key);
+                if (!relevant) continue;
+
+                // Vänta tills det varit tyst en hel debounce-period och filen är stabil
+                String stamp = stamp();
+                while (true) {
+                    WatchKey more = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                    if (more != null) {
+                        drain(more);
+                        continue;
+                    }
+                    String now = stamp();
+                    if (now.equals(stamp)) break;
+                    stamp = now;
+                }
+                if (Files.isRegularFile(file)) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // avslutas via close()
+        }
+    }
+
+    /** Töm nyckelns händelser; true om någon gällde den bevakade filen. */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    private String stamp() {
+        try {
+            return Files.size(file) + "@" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
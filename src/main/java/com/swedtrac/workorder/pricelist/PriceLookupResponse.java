@@ -0,0 +1,52 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceLookupResponse.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.List;
+
+/**
+ * Svar på en batchuppslagning: ett resultat per efterfrågat EM-nummer, i samma
+ * ordning som i anropet, alla lösta mot samma version av prislistan.
+ */
+public class PriceLookupResponse {
+
+    private final long version;
+    private final List<Result> results;
+
+    PriceLookupResponse(long version, List<Result> results) {
+        this.version = version;
+        this.results = results;
+    }
+
+    /** Prislistans version som alla uppslag gjordes mot. */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public static class Result {
+        private final String emNr;
+        private final PriceItem item;
+
+        Result(String emNr, PriceItem item) {
+            this.emNr = emNr;
+            this.item = item;
+        }
+
+        /** EM-numret som det skickades in. */
+        public String getEmNr() {
+            return emNr;
+        }
+
+        public boolean isFound() {
+            return item != null;
+        }
+
+        /** Träffen, eller null om numret inte finns i prislistan. */
+        public PriceItem getItem() {
+            return item;
+        }
+    }
+}
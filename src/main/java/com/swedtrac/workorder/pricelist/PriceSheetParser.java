@@ -0,0 +1,324 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceSheetParser.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.*;
+
+/**
+ * Tolkar ett prisblad rad för rad med flexibel heuristik:
+ * - hitta header-rad genom att leta efter typiska kolumnnamn
+ * - mappa kolumner
+ * - iterera rader under header och skapa PriceItem när rimligt
+ *
+ * Raderna matas in i ordning via {@link #accept(SheetRow)}. Bara de första
+ * raderna (där headern kan ligga) buffras; resten behandlas direkt, så minnet
+ * är oberoende av bladets storlek. Samma tolkning används oavsett om
+ * arbetsboken läses med POI-DOM eller strömmande SAX.
+ */
+final class PriceSheetParser {
+
+    private static final int HEADER_SCAN_ROWS = 12;       // findHeaderRow: rad 0..12
+    private static final int KEYWORD_SCAN_LAST_ROW = 40;  // findHeaderRowByKeywords: rad 0..40
+
+    private final String sheetName;
+    private final PriceListSnapshot.Builder builder;
+
+    // Rader fram till KEYWORD_SCAN_LAST_ROW buffras tills headern är bestämd; null därefter
+    private List<SheetRow> lookahead = new ArrayList<>();
+    private int headerRowIndex = -1;
+    private Map<String, Integer> colMap; // null = ingen mappning, heuristik på alla rader
+
+    PriceSheetParser(String sheetName, PriceListSnapshot.Builder builder) {
+        this.sheetName = sheetName;
+        this.builder = builder;
+    }
+
+    void accept(SheetRow row) {
+        if (lookahead != null) {
+            if (row.rowNum() <= KEYWORD_SCAN_LAST_ROW) {
+                lookahead.add(row);
+                return;
+            }
+            resolveHeader();
+        }
+        process(row);
+    }
+
+    /** Anropas efter bladets sista rad. */
+    void finish() {
+        if (lookahead != null) resolveHeader();
+    }
+
+    private void resolveHeader() {
+        List<SheetRow> buffered = lookahead;
+        lookahead = null;
+
+        int hdr = findHeaderRow(buffered, 0, HEADER_SCAN_ROWS);
+        if (hdr < 0) {
+            // Ingen tydlig header hittad — försök heuristiskt
+            // Vi försöker hitta en rad med flera textceller som kan vara "Material" etc.
+            hdr = findHeaderRowByKeywords(buffered);
+        }
+        if (hdr >= 0) {
+            headerRowIndex = hdr;
+            Map<String, Integer> mapped = mapHeaderColumns(rowAt(buffered, hdr));
+            // Om vi lyckats mappa minst en relevant kolumn, processa rader efter header
+            colMap = mapped.isEmpty() ? null : mapped;
+        }
+        // annars fallback: försök läsa tabellformat utan header — sök priser i varje rad
+
+        for (SheetRow r : buffered) process(r);
+    }
+
+    private void process(SheetRow row) {
+        if (colMap == null) {
+            processRowHeuristically(row);
+        } else if (row.rowNum() > headerRowIndex) {
+            processMappedRow(row);
+        }
+    }
+
+    private void processMappedRow(SheetRow row) {
+        // Hoppa över rader som återigen är headers eller tomma
+        if (isRowEmpty(row)) return;
+        if (looksLikeHeaderRowAgain(row)) return;
+
+        String material = getCellStringSafe(row, colMap.getOrDefault("material", -1));
+        String emNr = getCellStringSafe(row, colMap.getOrDefault("em", -1));
+        String artnr = getCellStringSafe(row, colMap.getOrDefault("artnr", -1));
+        String unit = getCellStringSafe(row, colMap.getOrDefault("unit", -1));
+        Double priceCust = getCellDoubleSafe(row, colMap.getOrDefault("price_customer", -1));
+        Double pricePurchase = getCellDoubleSafe(row, colMap.getOrDefault("price_purchase", -1));
+        Double priceAny = (priceCust != null && priceCust > 0) ? priceCust : (pricePurchase != null ? pricePurchase : null);
+
+        if ((emNr == null || emNr.isBlank()) && (artnr == null || artnr.isBlank()) && (material == null || material.isBlank()) && priceAny == null) {
+            // sannolikt rad utan data
+            return;
+        }
+
+        addPriceItemIfValid(material, emNr, artnr, priceAny, unit);
+    }
+
+    private static SheetRow rowAt(List<SheetRow> rows, int rowNum) {
+        for (SheetRow r : rows) {
+            if (r.rowNum() == rowNum) return r;
+        }
+        return null;
+    }
+
+    private int findHeaderRow(List<SheetRow> rows, int startRow, int maxRowsToCheck) {
+        int last = startRow + maxRowsToCheck;
+        int bestRow = -1;
+        int bestScore = 0;
+        for (SheetRow row : rows) {
+            int r = row.rowNum();
+            if (r < startRow || r > last) continue;
+            int score = 0;
+            for (int ci = 0; ci < row.cellCount(); ci++) {
+                String txt = row.text(ci).toLowerCase(Locale.ROOT);
+                if (txt.isBlank()) continue;
+                if (txt.contains("em") || txt.contains("em nr") || txt.contains("em nr /") || txt.contains("em nr / leverantör") || txt.contains("em nr/leverantör")) score++;
+                if (txt.contains("art") || txt.contains("art nr") || txt.contains("artnr") || txt.contains("benämning")) score++;
+                if (txt.contains("pris") || txt.contains("pris inköp") || txt.contains("pris till kund") || txt.contains("pris/inköp")) score++;
+                if (txt.contains("enhet") || txt.contains("st") || txt.contains("kg")) score++;
+                if (txt.contains("material") || txt.contains("benämning")) score++;
+            }
+            if (score > bestScore && score >= 2) {
+                bestScore = score;
+                bestRow = r;
+            }
+        }
+        return bestRow;
+    }
+
+    private int findHeaderRowByKeywords(List<SheetRow> rows) {
+        // bredare sökning: leta i fler rader efter rader innehållande "Material" eller "Pris inköp" etc.
+        for (SheetRow row : rows) {
+            int r = row.rowNum();
+            if (r > KEYWORD_SCAN_LAST_ROW) break;
+            int hits = 0;
+            for (int ci = 0; ci < row.cellCount(); ci++) {
+                String txt = row.text(ci).toLowerCase(Locale.ROOT);
+                if (txt.contains("material")) hits++;
+                if (txt.contains("pris inköp") || txt.contains("pris/inköp") || txt.contains("pris inköp")) hits++;
+                if (txt.contains("pris till kund") || txt.contains("pris till")) hits++;
+                if (txt.contains("em nr") || txt.contains("em nr /")) hits++;
+                if (txt.contains("art") || txt.contains("art nr")) hits++;
+            }
+            if (hits >= 1) return r;
+        }
+        return -1;
+    }
+
+    private Map<String, Integer> mapHeaderColumns(SheetRow hdr) {
+        Map<String, Integer> mm = new HashMap<>();
+        if (hdr == null) return mm;
+        for (int ci = 0; ci < hdr.cellCount(); ci++) {
+            String text = hdr.text(ci).toLowerCase(Locale.ROOT).trim();
+            int idx = hdr.column(ci);
+            if (text.isBlank()) continue;
+            if (text.contains("material") || text.contains("benämning") || text.contains("art nr/benämning") || text.contains("art nr/ benämning")) {
+                mm.put("material", idx);
+                continue;
+            }
+            if (text.contains("em nr") || text.contains("em") || text.contains("em nr /")) {
+                mm.put("em", idx);
+                continue;
+            }
+            if (text.contains("art nr") || text.contains("artnr") || text.contains("art")) {
+                mm.put("artnr", idx);
+                continue;
+            }
+            if (text.contains("pris till") || text.contains("pris till kund") || text.contains("pris kund") || text.contains("pris till")) {
+                mm.put("price_customer", idx);
+                continue;
+            }
+            if (text.contains("pris inköp") || text.contains("pris/inköp") || text.contains("pris inköp")) {
+                mm.put("price_purchase", idx);
+                continue;
+            }
+            if (text.contains("enhet") || text.contains("unit")) {
+                mm.put("unit", idx);
+                continue;
+            }
+            if (text.contains("antal") || text.contains("per lok") || text.contains("per lok")) {
+                mm.put("qty", idx);
+            }
+            // support for service table headers
+            if (text.contains("kr/tim") || text.contains("kr/tim") || text.contains("kr/timme") || text.contains("tid") || text.contains("litt")) {
+                mm.put("service", idx);
+            }
+        }
+        return mm;
+    }
+
+    private void processRowHeuristically(SheetRow row) {
+        // Om inget header hittades, leta efter rader som innehåller pris (nummer) och namn/emnr
+        if (isRowEmpty(row)) return;
+
+        // Hitta första textcell (troligtvis namn) och första numeriska cell (troligtvis pris)
+        String possibleName = null;
+        String possibleEm = null;
+        String possibleUnit = null;
+        Double possiblePrice = null;
+
+        for (int ci = 0; ci < row.cellCount(); ci++) {
+            String cs = row.text(ci);
+            if (possibleName == null && looksLikeName(cs)) possibleName = cs;
+            if (possibleEm == null && looksLikeEm(cs)) possibleEm = cs;
+            if (possiblePrice == null) {
+                Double dv = cellDouble(row, ci);
+                if (dv != null && dv > 0) {
+                    possiblePrice = dv;
+                } else {
+                    // sometimes price is string with comma
+                    String norm = cs.replaceAll("[^0-9,\\.\\-]", "").replace(',', '.');
+                    try {
+                        if (!norm.isBlank()) {
+                            double pd = Double.parseDouble(norm);
+                            if (pd > 0) possiblePrice = pd;
+                        }
+                    } catch (Exception ignored) {}
+                }
+            }
+            if (possibleUnit == null && cs != null && cs.matches(".*(st|kg|l|L|dag).*")) possibleUnit = cs;
+        }
+
+        if ((possibleEm != null || possibleName != null) && possiblePrice != null) {
+            addPriceItemIfValid(possibleName, possibleEm, null, possiblePrice, possibleUnit);
+        }
+    }
+
+    private boolean looksLikeName(String s) {
+        if (s == null) return false;
+        String t = s.trim();
+        return t.length() >= 2 && !t.matches("^[0-9\\s\\-\\.,]+$");
+    }
+
+    private boolean looksLikeEm(String s) {
+        if (s == null) return false;
+        String t = s.trim();
+        // em numbers often contain digits and spaces, maybe letters
+        return t.matches(".*\\d.*") && t.length() <= 20;
+    }
+
+    private boolean isRowEmpty(SheetRow row) {
+        for (int ci = 0; ci < row.cellCount(); ci++) {
+            String v = row.text(ci);
+            if (v != null && !v.isBlank()) return false;
+        }
+        return true;
+    }
+
+    private boolean looksLikeHeaderRowAgain(SheetRow row) {
+        // skip rows that look like repeated header lines (contain 'Material' or 'Pris inköp' etc.)
+        for (int ci = 0; ci < row.cellCount(); ci++) {
+            String txt = row.text(ci).toLowerCase(Locale.ROOT);
+            if (txt.contains("material") || txt.contains("pris inköp") || txt.contains("pris till kund") || txt.contains("em nr") || txt.contains("art nr")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getCellStringSafe(SheetRow row, int idx) {
+        if (row == null || idx < 0) return null;
+        int ci = row.indexOf(idx);
+        return ci >= 0 ? row.text(ci) : "";
+    }
+
+    private Double getCellDoubleSafe(SheetRow row, int idx) {
+        if (row == null || idx < 0) return null;
+        int ci = row.indexOf(idx);
+        return ci >= 0 ? cellDouble(row, ci) : null;
+    }
+
+    private Double cellDouble(SheetRow row, int ci) {
+        Double n = row.number(ci);
+        return n != null ? n : parseDoubleFromString(row.text(ci));
+    }
+
+    static Double parseDoubleFromString(String s) {
+        if (s == null) return null;
+        String norm = s.replaceAll("[^0-9,\\.\\-]", "").replace(',', '.').trim();
+        if (norm.isEmpty()) return null;
+        try {
+            return Double.parseDouble(norm);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Textform för ett numeriskt värde: heltal utan decimaler, annars som double.
+     */
+    static String formatNumber(double d) {
+        // show as integer-like if no fraction
+        if (d == Math.floor(d)) return String.valueOf((long) d);
+        return String.valueOf(d);
+    }
+
+    private void addPriceItemIfValid(String material, String emNr, String artnr, Double price, String unit) {
+        // Normalize inputs
+        String name = (material != null && !material.isBlank()) ? material.trim() : (artnr != null ? artnr.trim() : null);
+        String em = (emNr != null && !emNr.isBlank()) ? emNr.trim() : null;
+
+        if ((em == null || em.isBlank()) && (name == null || name.isBlank())) return;
+        double pr = (price != null) ? price : 0.0;
+        String u = (unit != null && !unit.isBlank()) ? unit.trim() : "st";
+
+        PriceItem item = new PriceItem();
+        // set emNr if available, otherwise use generated name-key
+        if (em != null && !em.isBlank()) {
+            item.setEmNr(em);
+        } else {
+            item.setEmNr("NAME:" + (name.length() > 60 ? name.substring(0, 60) : name));
+        }
+        item.setName(name != null ? name : "");
+        item.setPrice(pr);
+        item.setUnit(u);
+        item.setSourceSheet(sheetName);
+
+        // If duplicate key exists, we keep the first found unless it lacks a price (see Builder.add)
+        builder.add(PriceListService.normalize(item.getEmNr()), item);
+    }
+}
@@ -0,0 +1,25 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/PriceWorkbook.java
+package com.swedtrac.workorder.pricelist;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * En öppnad prisarbetsbok som kan läsas blad för blad som {@link SheetRow}-rader.
+ * Implementeras både med POI:s DOM-modell och med strömmande SAX-läsning.
+ */
+interface PriceWorkbook extends Closeable {
+
+    List<String> sheetNames();
+
+    /**
+     * True om {@link #readSheet} får anropas samtidigt från flera trådar för olika blad.
+     */
+    boolean supportsConcurrentSheets();
+
+    /**
+     * Läs bladet med givet index och lämna raderna i ordning till 'rows'.
+     */
+    void readSheet(int index, Consumer<SheetRow> rows) throws Exception;
+}
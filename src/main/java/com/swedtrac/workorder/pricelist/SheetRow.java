@@ -0,0 +1,81 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/SheetRow.java
+package com.swedtrac.workorder.pricelist;
+
+import java.util.Arrays;
+
+/**
+ * En rad ur ett prisblad, oberoende av hur arbetsboken lästes (POI-DOM eller SAX).
+ * Innehåller bara fysiska celler, i kolumnordning. Varje cell har sin textform
+ * (som getCellString gav tidigare) och, för numeriska celler, sitt talvärde.
+ */
+final class SheetRow {
+
+    private final int rowNum;
+    private final int[] cols;
+    private final String[] texts;
+    private final Double[] numbers;
+
+    private SheetRow(int rowNum, int[] cols, String[] texts, Double[] numbers) {
+        this.rowNum = rowNum;
+        this.cols = cols;
+        this.texts = texts;
+        this.numbers = numbers;
+    }
+
+    /** 0-baserat radnummer i bladet. */
+    int rowNum() {
+        return rowNum;
+    }
+
+    int cellCount() {
+        return cols.length;
+    }
+
+    int column(int i) {
+        return cols[i];
+    }
+
+    /** Cellens text (trimmad, aldrig null). */
+    String text(int i) {
+        return texts[i];
+    }
+
+    /** Talvärde för numeriska celler (även formler med numeriskt resultat), annars null. */
+    Double number(int i) {
+        return numbers[i];
+    }
+
+    /** Position för kolumnen bland radens celler, eller -1 om cellen saknas. */
+    int indexOf(int col) {
+        return Arrays.binarySearch(cols, col);
+    }
+
+    static final class Builder {
+        private final int rowNum;
+        private int[] cols = new int[8];
+        private String[] texts = new String[8];
+        private Double[] numbers = new Double[8];
+        private int size;
+
+        Builder(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        Builder cell(int col, String text, Double number) {
+            if (size == cols.length) {
+                cols = Arrays.copyOf(cols, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            cols[size] = col;
+            texts[size] = text != null ? text : "";
+            numbers[size] = number;
+            size++;
+            return this;
+        }
+
+        SheetRow build() {
+            return new SheetRow(rowNum, Arrays.copyOf(cols, size), Arrays.copyOf(texts, size), Arrays.copyOf(numbers, size));
+        }
+    }
+}
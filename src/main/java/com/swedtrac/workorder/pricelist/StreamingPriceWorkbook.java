@@ -0,0 +1,225 @@
+// File: src/main/java/com/swedtrac/workorder/pricelist/StreamingPriceWorkbook.java
+package com.swedtrac.workorder.pricelist;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Läser .xlsx strömmande med POI:s event-API (XSSFReader + SAX).
+ * Bladets XML gås igenom i ett svep och varje rad lämnas vidare så fort den är klar,
+ * så minnet för bladdata motsvarar en rad i stället för hela arbetsboken.
+ * Formelceller läses från sina cachade värden — ingen FormulaEvaluator behövs.
+ */
+final class StreamingPriceWorkbook implements PriceWorkbook {
+
+    private final OPCPackage pkg;
+    private final ReadOnlySharedStringsTable strings;
+    private final boolean[] dateStyles;   // stilindex -> datumformat
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<PackagePart> sheetParts = new ArrayList<>();
+
+    private StreamingPriceWorkbook(OPCPackage pkg) throws Exception {
+        this.pkg = pkg;
+        XSSFReader reader = new XSSFReader(pkg);
+        this.strings = new ReadOnlySharedStringsTable(pkg);
+        this.dateStyles = resolveDateStyles(reader.getStylesTable());
+
+        XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (it.hasNext()) {
+            try (InputStream ignored = it.next()) {
+                sheetNames.add(it.getSheetName());
+                sheetParts.add(it.getSheetPart());
+            }
+        }
+    }
+
+    static StreamingPriceWorkbook open(InputStream in) throws Exception {
+        OPCPackage pkg = OPCPackage.open(in);
+        try {
+            return new StreamingPriceWorkbook(pkg);
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> sheetNames() {
+        return sheetNames;
+    }
+
+    /**
+     * Varje blad har sin egen XML-del och parser; delade strängar och datumstilar
+     * är lästa i förväg och ändras inte, så flera blad kan läsas samtidigt.
+     */
+    @Override
+    public boolean supportsConcurrentSheets() {
+        return true;
+    }
+
+    @Override
+    public void readSheet(int index, Consumer<SheetRow> rows) throws Exception {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new SheetHandler(rows));
+        try (InputStream in = sheetParts.get(index).getInputStream()) {
+            parser.parse(new InputSource(in));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // skrivskyddad läsning — släng paketet utan att spara
+        pkg.revert();
+    }
+
+    private static boolean[] resolveDateStyles(StylesTable styles) {
+        if (styles == null) return new boolean[0];
+        boolean[] out = new boolean[styles.getNumCellStyles()];
+        for (int i = 0; i < out.length; i++) {
+            XSSFCellStyle style = styles.getStyleAt(i);
+            out[i] = style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        }
+        return out;
+    }
+
+    /**
+     * SAX-hanterare för ett blad: bygger en SheetRow per &lt;row&gt; och tolkar
+     * cellvärden på samma sätt som DOM-läsaren gör.
+     */
+    private final class SheetHandler extends DefaultHandler {
+
+        private final Consumer<SheetRow> rows;
+        private final StringBuilder value = new StringBuilder();
+
+        private SheetRow.Builder row;
+        private int rowNum = -1;
+        private int col;
+        private String cellType;
+        private int cellStyle;
+        private boolean hasFormula;
+        private boolean capture;
+        private boolean inInlineString;
+
+        SheetHandler(Consumer<SheetRow> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            switch (localName) {
+                case "row": {
+                    String r = attrs.getValue("r");
+                    rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+                    row = new SheetRow.Builder(rowNum);
+                    col = -1;
+                    break;
+                }
+                case "c": {
+                    String ref = attrs.getValue("r");
+                    col = ref != null ? new CellReference(ref).getCol() : col + 1;
+                    cellType = attrs.getValue("t");
+                    String s = attrs.getValue("s");
+                    cellStyle = s != null ? Integer.parseInt(s) : 0;
+                    hasFormula = false;
+                    value.setLength(0);
+                    break;
+                }
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "v":
+                    capture = true;
+                    break;
+                case "is":
+                    inInlineString = true;
+                    break;
+                case "t":
+                    if (inInlineString) capture = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capture) value.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    capture = false;
+                    break;
+                case "is":
+                    inInlineString = false;
+                    break;
+                case "c":
+                    if (row != null) addCell();
+                    break;
+                case "row":
+                    if (row != null) rows.accept(row.build());
+                    row = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void addCell() {
+            String v = value.toString();
+            String type = cellType != null ? cellType : "n";
+            switch (type) {
+                case "s":
+                    if (v.isEmpty()) return;
+                    row.cell(col, strings.getItemAt(Integer.parseInt(v.trim())).getString().trim(), null);
+                    return;
+                case "inlineStr":
+                case "str":
+                    row.cell(col, v.trim(), null);
+                    return;
+                case "b":
+                    row.cell(col, String.valueOf("1".equals(v.trim())), null);
+                    return;
+                case "e":
+                    // formel med felresultat ger tom text, precis som vid evaluering
+                    row.cell(col, hasFormula ? "" : v.trim(), null);
+                    return;
+                case "n":
+                    if (v.isBlank()) return;
+                    double d;
+                    try {
+                        d = Double.parseDouble(v.trim());
+                    } catch (NumberFormatException e) {
+                        row.cell(col, v.trim(), null);
+                        return;
+                    }
+                    // datumformat gäller bara rena värden; formelresultat visas som tal
+                    boolean date = !hasFormula && cellStyle < dateStyles.length && dateStyles[cellStyle] && DateUtil.isValidExcelDate(d);
+                    row.cell(col, date ? DateUtil.getJavaDate(d).toString() : PriceSheetParser.formatNumber(d), d);
+                    return;
+                default:
+                    row.cell(col, v.trim(), null);
+            }
+        }
+    }
+}
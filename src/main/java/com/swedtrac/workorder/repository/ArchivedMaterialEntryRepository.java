@@ -0,0 +1,10 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.ArchivedMaterialEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ArchivedMaterialEntryRepository extends JpaRepository<ArchivedMaterialEntry, Long> {
+    List<MaterialEntryRow> findByWorkOrderIdOrderByIdAsc(Long workOrderId);
+}
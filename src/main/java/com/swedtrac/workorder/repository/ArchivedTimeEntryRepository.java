@@ -0,0 +1,10 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.ArchivedTimeEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ArchivedTimeEntryRepository extends JpaRepository<ArchivedTimeEntry, Long> {
+    List<TimeEntryRow> findByWorkOrderIdOrderByIdAsc(Long workOrderId);
+}
@@ -0,0 +1,18 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.ArchivedWorkOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ArchivedWorkOrderRepository extends JpaRepository<ArchivedWorkOrder, Long> {
+
+    // Sökindexets ombyggnad: arkiverade ordrar är sökbara precis som de i work_orders
+    @Query("select new com.swedtrac.workorder.repository.WorkOrderSearchRow("
+            + "w.id, w.version, w.orderNumber, w.title, w.description, w.customer, w.trainNumber, w.vehicle, w.createdAt, w.status) "
+            + "from ArchivedWorkOrder w where w.id > :after order by w.id")
+    List<WorkOrderSearchRow> findSearchRows(@Param("after") Long after, Pageable page);
+}
@@ -0,0 +1,24 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+/**
+ * Utfall för en order i en massuppdatering.
+ * 'status' och 'version' är orderns läge efteråt (null om ordern inte finns).
+ */
+public record BulkOutcome(
+        Long id,
+        Result result,
+        WorkOrderStatus status,
+        Long version
+) {
+
+    public enum Result {
+        /** Ordern uppdaterades. */
+        UPDATED,
+        /** Ordern finns men matchade inte villkoret (fel utgångsstatus, redan arkiverad). */
+        SKIPPED,
+        /** Ingen order med detta id. */
+        NOT_FOUND
+    }
+}
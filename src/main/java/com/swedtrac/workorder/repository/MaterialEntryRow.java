@@ -0,0 +1,22 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderMaterialEntry;
+
+/**
+ * Materialrad som den visas i orderns detaljvy.
+ */
+public record MaterialEntryRow(
+        Long id,
+        String articleNumber,
+        String description,
+        double quantity,
+        String unit,
+        double price,
+        double total
+) {
+
+    public static MaterialEntryRow of(WorkOrderMaterialEntry e) {
+        return new MaterialEntryRow(e.getId(), e.getArticleNumber(), e.getDescription(), e.getQuantity(),
+                e.getUnit(), e.getPrice(), e.getTotal());
+    }
+}
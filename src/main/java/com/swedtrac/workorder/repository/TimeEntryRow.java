@@ -0,0 +1,20 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderTimeEntry;
+
+/**
+ * Tidrad som den visas i orderns detaljvy.
+ */
+public record TimeEntryRow(
+        Long id,
+        String action,
+        String work,
+        double hours,
+        double rate,
+        double total
+) {
+
+    public static TimeEntryRow of(WorkOrderTimeEntry e) {
+        return new TimeEntryRow(e.getId(), e.getAction(), e.getWork(), e.getHours(), e.getRate(), e.getTotal());
+    }
+}
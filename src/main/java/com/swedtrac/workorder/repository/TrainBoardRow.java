@@ -0,0 +1,18 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+/**
+ * En rad på tavlan "Tåg i verkstad" — bara kolumnerna tavlan visar.
+ */
+public record TrainBoardRow(
+        Long id,
+        String location,
+        String trainNumber,
+        String vehicle,
+        String track,
+        String orderNumber,
+        String title,
+        WorkOrderStatus status
+) {
+}
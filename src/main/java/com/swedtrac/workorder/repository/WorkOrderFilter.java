@@ -0,0 +1,35 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Filter för listning av arbetsordrar. Fält som är null ignoreras.
+ * afterUpdatedAt/afterId är keyset-markören: nästa sida börjar efter den raden
+ * i sorteringsordningen (updatedAt fallande, id fallande).
+ */
+@Data
+public class WorkOrderFilter {
+
+    private List<WorkOrderStatus> statuses;
+    private String location;
+    private String customer;
+
+    // true = bara arkiverade, false = bara ej arkiverade, null = alla
+    private Boolean archived;
+
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private LocalDateTime updatedFrom;
+    private LocalDateTime updatedTo;
+
+    private LocalDateTime afterUpdatedAt;
+    private Long afterId;
+
+    // bara dessa ordrar (ändringsflödets delta), null = alla
+    private Collection<Long> ids;
+}
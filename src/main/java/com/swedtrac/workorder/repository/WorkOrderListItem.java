@@ -0,0 +1,27 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Arbetsorder som den visas i listor: alla kolumner utom beskrivningen (TEXT),
+ * som bara behövs i detaljvyn.
+ */
+public record WorkOrderListItem(
+        Long id,
+        String orderNumber,
+        String title,
+        String customer,
+        String category,
+        String trainNumber,
+        String vehicle,
+        String location,
+        String track,
+        WorkOrderStatus status,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        LocalDateTime archivedAt,
+        Long version
+) {
+}
@@ -2,10 +2,19 @@ package com.swedtrac.workorder.repository;
 
 import com.swedtrac.workorder.domain.WorkOrder;
 import com.swedtrac.workorder.domain.WorkOrderMaterialEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface WorkOrderMaterialEntryRepository extends JpaRepository<WorkOrderMaterialEntry, Long> {
+    // Frågecachen: resultatet gäller tills tabellen ändras via Hibernate (eller TTL i ehcache.xml)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<WorkOrderMaterialEntry> findByWorkOrder(WorkOrder workOrder);
+
+    // Bara kolumnerna detaljvyn visar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<MaterialEntryRow> findByWorkOrderIdOrderByIdAsc(Long workOrderId);
 }
\ No newline at end of file
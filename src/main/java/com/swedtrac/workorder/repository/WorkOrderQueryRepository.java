@@ -0,0 +1,76 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Egna frågor för WorkOrderRepository som inte går att uttrycka som finder-metoder
+ * (dynamiska filter + keyset-paginering).
+ */
+public interface WorkOrderQueryRepository {
+
+    /**
+     * Hämtar högst 'limit' ordrar som matchar filtret, senast uppdaterade först.
+     * Databasen filtrerar och sorterar; med markör i filtret fortsätter sidan efter den raden.
+     * Bara listkolumnerna hämtas (se {@link WorkOrderListItem}).
+     * Om filtret inte utesluter arkiverade ordrar (archived = false) ingår även de som flyttats till arkivet.
+     */
+    List<WorkOrderListItem> findPage(WorkOrderFilter filter, int limit);
+
+    /**
+     * Som {@link #findPage}, men med orderns summor (se {@link WorkOrderSummary}) i stället för listkolumnerna.
+     */
+    List<WorkOrderSummary> findSummaryPage(WorkOrderFilter filter, int limit);
+
+    /**
+     * Ordern ur work_orders, eller ur arkivet om den flyttats dit (som fristående WorkOrder, se
+     * {@link com.swedtrac.workorder.domain.ArchivedWorkOrder#toWorkOrder()}).
+     */
+    Optional<WorkOrder> findIncludingArchive(Long id);
+
+    /**
+     * Byter status (och arkivering enligt {@link WorkOrderStatus#getArchiveEffect()}) med en enda
+     * UPDATE ... RETURNING. Ordern uppdateras bara om versionen är 'expectedVersion' (obligatorisk).
+     * Tomt resultat om ordern saknas eller har ändrats sedan klienten läste den.
+     */
+    Optional<WorkOrder> updateStatus(Long id, WorkOrderStatus status, Long expectedVersion);
+
+    /**
+     * Arkiverar ordern med en enda UPDATE ... RETURNING, med samma versionskontroll som {@link #updateStatus}.
+     */
+    Optional<WorkOrder> archive(Long id, Long expectedVersion);
+
+    /**
+     * Räknar om orderns timmar och tidssumma ur de sparade tidraderna (efter flush av väntande
+     * radändringar). Skrivs förbi entiteten, så versionen ökar inte och en samtidig statusändring
+     * skrivs inte över; bara den här orderns post i andranivåcachen tas bort.
+     */
+    void updateTimeTotals(Long id);
+
+    /**
+     * Som {@link #updateTimeTotals}, för materialsumman.
+     */
+    void updateMaterialTotal(Long id);
+
+    /**
+     * Id för högst 'limit' ordrar som matchar filtret (utan markör), för massuppdateringar.
+     * Bara work_orders: ordrar i arkivet ändras inte.
+     */
+    List<Long> findIds(WorkOrderFilter filter, int limit);
+
+    /**
+     * Byter status på alla angivna ordrar med en UPDATE ... WHERE id IN (...) i en transaktion,
+     * med samma arkiveringsregel som {@link #updateStatus}. Är 'fromStatuses' angivet ändras bara
+     * ordrar som just nu har någon av dem. Ett utfall per id, i samma ordning som 'ids'.
+     */
+    List<BulkOutcome> updateStatusBulk(List<Long> ids, WorkOrderStatus status, Collection<WorkOrderStatus> fromStatuses);
+
+    /**
+     * Arkiverar alla angivna ordrar som inte redan är arkiverade, på samma sätt som {@link #updateStatusBulk}.
+     */
+    List<BulkOutcome> archiveBulk(List<Long> ids);
+}
@@ -0,0 +1,339 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.ArchivedWorkOrder;
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.Session;
+
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Criteria API-implementation av {@link WorkOrderQueryRepository}.
+ * Keyset-paginering: i stället för OFFSET (som måste läsa förbi alla tidigare rader)
+ * filtreras på (updatedAt, id) &lt; markören, vilket indexet på (updated_at, id) kan söka direkt till.
+ * Status- och arkivbyten är native UPDATE ... RETURNING (PostgreSQL): ett anrop som både
+ * kontrollerar versionen, skriver bara de berörda kolumnerna och returnerar det nya läget.
+ * Listor som kan innehålla arkiverade ordrar läser också arkivtabellen (work_orders_archive) med samma
+ * filter och markör, och de två sidorna slås ihop.
+ */
+class WorkOrderQueryRepositoryImpl implements WorkOrderQueryRepository {
+
+    private static final String TIME_TOTALS_SQL = "UPDATE work_orders SET "
+            + "hours = (SELECT COALESCE(SUM(t.hours), 0) FROM work_order_time_entries t WHERE t.work_order_id = ?), "
+            + "time_total = (SELECT COALESCE(SUM(t.total), 0) FROM work_order_time_entries t WHERE t.work_order_id = ?) "
+            + "WHERE id = ?";
+
+    private static final String MATERIAL_TOTAL_SQL = "UPDATE work_orders SET "
+            + "material_total = (SELECT COALESCE(SUM(m.total), 0) FROM work_order_material_entries m WHERE m.work_order_id = ?) "
+            + "WHERE id = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final WorkOrderChangeFeed changeFeed;
+
+    WorkOrderQueryRepositoryImpl(WorkOrderChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    @Override
+    public List<WorkOrderListItem> findPage(WorkOrderFilter filter, int limit) {
+        // Konstruktoruttryck: bara listkolumnerna läses, inga entiteter hydreras
+        Comparator<WorkOrderListItem> order = Comparator.comparing(WorkOrderListItem::updatedAt)
+                .thenComparing(WorkOrderListItem::id).reversed();
+        return page(WorkOrderListItem.class, filter, limit, order, (cb, root) -> new Selection<?>[]{
+                root.get("id"), root.get("orderNumber"), root.get("title"), root.get("customer"),
+                root.get("category"), root.get("trainNumber"), root.get("vehicle"), root.get("location"),
+                root.get("track"), root.get("status"), root.get("createdAt"), root.get("updatedAt"),
+                root.get("archivedAt"), root.get("version")});
+    }
+
+    @Override
+    public List<WorkOrderSummary> findSummaryPage(WorkOrderFilter filter, int limit) {
+        Comparator<WorkOrderSummary> order = Comparator.comparing(WorkOrderSummary::updatedAt)
+                .thenComparing(WorkOrderSummary::id).reversed();
+        return page(WorkOrderSummary.class, filter, limit, order, (cb, root) -> new Selection<?>[]{
+                root.get("id"), root.get("orderNumber"), root.get("title"), root.get("customer"),
+                root.get("status"), root.get("updatedAt"), root.get("archivedAt"),
+                root.get("hours"), root.get("timeTotal"), root.get("materialTotal"),
+                cb.sum(root.<Double>get("timeTotal"), root.<Double>get("materialTotal"))});
+    }
+
+    /**
+     * En sida ur work_orders och, om filtret kan träffa arkiverade ordrar, samma sida ur arkivet.
+     * Båda är redan sorterade och begränsade till 'limit', så de första 'limit' av de sammanslagna
+     * raderna är sidan; markören (updatedAt, id) fungerar likadant i båda tabellerna.
+     */
+    private <T> List<T> page(Class<T> type, WorkOrderFilter filter, int limit, Comparator<T> order,
+                             BiFunction<CriteriaBuilder, Root<?>, Selection<?>[]> columns) {
+        List<T> hot = page(type, WorkOrder.class, filter, limit, columns);
+        if (Boolean.FALSE.equals(filter.getArchived())) return hot;
+        List<T> cold = page(type, ArchivedWorkOrder.class, filter, limit, columns);
+        if (cold.isEmpty()) return hot;
+        List<T> all = new ArrayList<>(hot.size() + cold.size());
+        all.addAll(hot);
+        all.addAll(cold);
+        all.sort(order);
+        return all.size() > limit ? all.subList(0, limit) : all;
+    }
+
+    private <T> List<T> page(Class<T> type, Class<?> entity, WorkOrderFilter filter, int limit,
+                             BiFunction<CriteriaBuilder, Root<?>, Selection<?>[]> columns) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<?> root = query.from(entity);
+
+        query.select(cb.construct(type, columns.apply(cb, root)));
+        query.where(predicates(cb, root, filter).toArray(new Predicate[0]));
+        query.orderBy(cb.desc(root.get("updatedAt")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Optional<WorkOrder> findIncludingArchive(Long id) {
+        WorkOrder hot = entityManager.find(WorkOrder.class, id);
+        if (hot != null) return Optional.of(hot);
+        return Optional.ofNullable(entityManager.find(ArchivedWorkOrder.class, id)).map(ArchivedWorkOrder::toWorkOrder);
+    }
+
+    @Override
+    @Transactional
+    public Optional<WorkOrder> updateStatus(Long id, WorkOrderStatus status, Long expectedVersion) {
+        // archivedAt följer statusens regel: ARCHIVE = nu, UNARCHIVE = null, KEEP = oförändrad
+        String sql = "UPDATE work_orders SET status = :status, "
+                + "archived_at = CASE :archive WHEN 'ARCHIVE' THEN :now WHEN 'UNARCHIVE' THEN NULL ELSE archived_at END, "
+                + "updated_at = :now, version = version + 1 "
+                + "WHERE id = :id AND version = :version"
+                + " RETURNING *";
+        Query query = entityManager.createNativeQuery(sql, WorkOrder.class)
+                .setParameter("status", status.name())
+                .setParameter("archive", status.getArchiveEffect().name())
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("id", id);
+        return returning(query, expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public Optional<WorkOrder> archive(Long id, Long expectedVersion) {
+        String sql = "UPDATE work_orders SET archived_at = :now, updated_at = :now, version = version + 1 "
+                + "WHERE id = :id AND version = :version"
+                + " RETURNING *";
+        Query query = entityManager.createNativeQuery(sql, WorkOrder.class)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("id", id);
+        return returning(query, expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public void updateTimeTotals(Long id) {
+        updateTotals(TIME_TOTALS_SQL, id, 3);
+    }
+
+    @Override
+    @Transactional
+    public void updateMaterialTotal(Long id) {
+        updateTotals(MATERIAL_TOTAL_SQL, id, 2);
+    }
+
+    /**
+     * Kör summeringen direkt på sessionens JDBC-anslutning. En JPQL- eller native-UPDATE via
+     * Hibernate tömmer hela WorkOrder-regionen i andranivåcachen (Hibernate vet inte vilka rader
+     * som ändrats); här tas bara den berörda ordern bort, på samma sätt som vid statusbyten.
+     */
+    private void updateTotals(String sql, Long id, int idParameters) {
+        // radernas INSERT/UPDATE/DELETE måste vara skrivna innan databasen summerar dem
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 1; i <= idParameters; i++) ps.setLong(i, id);
+                ps.executeUpdate();
+            }
+        });
+        evict(List.of(id));
+    }
+
+    @Override
+    public List<Long> findIds(WorkOrderFilter filter, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<WorkOrder> root = query.from(WorkOrder.class);
+        query.select(root.get("id"));
+        query.where(predicates(cb, root, filter).toArray(new Predicate[0]));
+        query.orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public List<BulkOutcome> updateStatusBulk(List<Long> ids, WorkOrderStatus status,
+                                              Collection<WorkOrderStatus> fromStatuses) {
+        if (ids.isEmpty()) return List.of();
+        boolean guarded = fromStatuses != null && !fromStatuses.isEmpty();
+        String sql = "UPDATE work_orders SET status = :status, "
+                + "archived_at = CASE :archive WHEN 'ARCHIVE' THEN :now WHEN 'UNARCHIVE' THEN NULL ELSE archived_at END, "
+                + "updated_at = :now, version = version + 1 "
+                + "WHERE id IN (:ids)" + (guarded ? " AND status IN (:from)" : "")
+                + " RETURNING id, version, status";
+        Query query = entityManager.createNativeQuery(sql)
+                .setParameter("status", status.name())
+                .setParameter("archive", status.getArchiveEffect().name())
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("ids", ids);
+        if (guarded) {
+            query.setParameter("from", fromStatuses.stream().map(Enum::name).toList());
+        }
+        return outcomes(ids, query);
+    }
+
+    @Override
+    @Transactional
+    public List<BulkOutcome> archiveBulk(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        String sql = "UPDATE work_orders SET archived_at = :now, updated_at = :now, version = version + 1 "
+                + "WHERE id IN (:ids) AND archived_at IS NULL"
+                + " RETURNING id, version, status";
+        Query query = entityManager.createNativeQuery(sql)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("ids", ids);
+        return outcomes(ids, query);
+    }
+
+    /**
+     * Kör massuppdateringen och sätter ihop ett utfall per id. Id som inte kom tillbaka från
+     * RETURNING slås upp med en enda fråga för att skilja SKIPPED från NOT_FOUND.
+     */
+    @SuppressWarnings("unchecked")
+    private List<BulkOutcome> outcomes(List<Long> ids, Query update) {
+        Map<Long, BulkOutcome> updated = new HashMap<>();
+        for (Object[] row : (List<Object[]>) update.getResultList()) {
+            Long id = ((Number) row[0]).longValue();
+            updated.put(id, new BulkOutcome(id, BulkOutcome.Result.UPDATED,
+                    WorkOrderStatus.valueOf((String) row[2]), ((Number) row[1]).longValue()));
+        }
+
+        evict(updated.keySet());
+        changeFeed.publish(updated.values().stream()
+                .map(o -> new WorkOrderChange(o.id(), WorkOrderChange.Type.STATUS, o.version(), o.status()))
+                .toList());
+
+        Map<Long, Object[]> untouched = new HashMap<>();
+        List<Long> rest = ids.stream().filter(id -> !updated.containsKey(id)).distinct().toList();
+        if (!rest.isEmpty()) {
+            List<Object[]> rows = entityManager.createQuery(
+                            "select w.id, w.status, w.version from WorkOrder w where w.id in :ids", Object[].class)
+                    .setParameter("ids", rest)
+                    .getResultList();
+            for (Object[] row : rows) {
+                untouched.put((Long) row[0], row);
+            }
+        }
+
+        List<BulkOutcome> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object[] row = untouched.get(id);
+            if (updated.containsKey(id)) {
+                out.add(updated.get(id));
+            } else if (row != null) {
+                out.add(new BulkOutcome(id, BulkOutcome.Result.SKIPPED, (WorkOrderStatus) row[1], (Long) row[2]));
+            } else {
+                out.add(new BulkOutcome(id, BulkOutcome.Result.NOT_FOUND, null, null));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Native UPDATE går förbi Hibernate, så cachade kopior av ordrarna tas bort — direkt och igen
+     * efter commit, så att ingen hinner lägga tillbaka det gamla läget innan ändringen syns.
+     */
+    private void evict(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        List<Long> copy = List.copyOf(ids);
+        copy.forEach(id -> cache.evict(WorkOrder.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    copy.forEach(id -> cache.evict(WorkOrder.class, id));
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<WorkOrder> returning(Query query, Long expectedVersion) {
+        query.setParameter("version", Objects.requireNonNull(expectedVersion, "expectedVersion"));
+        List<WorkOrder> rows = query.getResultList();
+        if (rows.isEmpty()) return Optional.empty();
+        WorkOrder wo = rows.get(0);
+        evict(List.of(wo.getId()));
+        changeFeed.publish(new WorkOrderChange(wo.getId(), WorkOrderChange.Type.STATUS, wo.getVersion(), wo.getStatus()));
+        return Optional.of(wo);
+    }
+
+    private List<Predicate> predicates(CriteriaBuilder cb, Root<?> root, WorkOrderFilter f) {
+        List<Predicate> where = new ArrayList<>();
+        if (f.getIds() != null) {
+            where.add(f.getIds().isEmpty() ? cb.disjunction() : root.get("id").in(f.getIds()));
+        }
+        if (f.getStatuses() != null && !f.getStatuses().isEmpty()) {
+            where.add(root.get("status").in(f.getStatuses()));
+        }
+        if (f.getLocation() != null && !f.getLocation().isBlank()) {
+            where.add(cb.equal(root.get("location"), f.getLocation().trim()));
+        }
+        if (f.getCustomer() != null && !f.getCustomer().isBlank()) {
+            where.add(cb.equal(root.get("customer"), f.getCustomer().trim()));
+        }
+        if (f.getArchived() != null) {
+            where.add(f.getArchived() ? cb.isNotNull(root.get("archivedAt")) : cb.isNull(root.get("archivedAt")));
+        }
+        if (f.getCreatedFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(root.<LocalDateTime>get("createdAt"), f.getCreatedFrom()));
+        }
+        if (f.getCreatedTo() != null) {
+            where.add(cb.lessThan(root.<LocalDateTime>get("createdAt"), f.getCreatedTo()));
+        }
+        if (f.getUpdatedFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(root.<LocalDateTime>get("updatedAt"), f.getUpdatedFrom()));
+        }
+        if (f.getUpdatedTo() != null) {
+            where.add(cb.lessThan(root.<LocalDateTime>get("updatedAt"), f.getUpdatedTo()));
+        }
+        if (f.getAfterUpdatedAt() != null && f.getAfterId() != null) {
+            // (updatedAt, id) < (markör) i fallande ordning
+            where.add(cb.or(
+                    cb.lessThan(root.<LocalDateTime>get("updatedAt"), f.getAfterUpdatedAt()),
+                    cb.and(
+                            cb.equal(root.get("updatedAt"), f.getAfterUpdatedAt()),
+                            cb.lessThan(root.<Long>get("id"), f.getAfterId()))));
+        }
+        return where;
+    }
+}
@@ -1,9 +1,38 @@
 package com.swedtrac.workorder.repository;
 
 import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long> {
-    // Lägg till egna finder-metoder här vid behov, t.ex.
-    // List<WorkOrder> findByStatus(WorkOrderStatus status);
-}
\ No newline at end of file
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long>, WorkOrderQueryRepository {
+
+    // Tåg i verkstad: ej arkiverade ordrar med given status, sorterade per plats.
+    // Använder indexet på (status, archived_at, location).
+    @Query("select new com.swedtrac.workorder.repository.TrainBoardRow("
+            + "w.id, w.location, w.trainNumber, w.vehicle, w.track, w.orderNumber, w.title, w.status) "
+            + "from WorkOrder w "
+            + "where w.status in :statuses and w.archivedAt is null "
+            + "order by w.location, w.trainNumber, w.id")
+    List<TrainBoardRow> findTrainBoard(@Param("statuses") Collection<WorkOrderStatus> statuses);
+
+    // Detaljvyn: ordern med sina rader. En fetch join per samling (två samlingar i samma fråga
+    // skulle ge tid x material rader); anropas i samma transaktion fylls samma WorkOrder-instans på.
+    @Query("select w from WorkOrder w left join fetch w.timeEntries where w.id = :id")
+    Optional<WorkOrder> findWithTimeEntries(@Param("id") Long id);
+
+    @Query("select w from WorkOrder w left join fetch w.materialEntries where w.id = :id")
+    Optional<WorkOrder> findWithMaterialEntries(@Param("id") Long id);
+
+    // Sökindexets ombyggnad: de sökbara fälten, sida för sida i id-ordning
+    @Query("select new com.swedtrac.workorder.repository.WorkOrderSearchRow("
+            + "w.id, w.version, w.orderNumber, w.title, w.description, w.customer, w.trainNumber, w.vehicle, w.createdAt, w.status) "
+            + "from WorkOrder w where w.id > :after order by w.id")
+    List<WorkOrderSearchRow> findSearchRows(@Param("after") Long after, Pageable page);
+}
@@ -0,0 +1,22 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * De sökbara fälten för en order, för att bygga fulltextindexet.
+ */
+public record WorkOrderSearchRow(
+        Long id,
+        Long version,
+        String orderNumber,
+        String title,
+        String description,
+        String customer,
+        String trainNumber,
+        String vehicle,
+        LocalDateTime createdAt,
+        WorkOrderStatus status
+) {
+}
@@ -0,0 +1,24 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Order med sina summerade kostnader, t.ex. för faktureringsunderlag.
+ * Summorna läses från de denormaliserade kolumnerna på work_orders — raderna hämtas inte.
+ */
+public record WorkOrderSummary(
+        Long id,
+        String orderNumber,
+        String title,
+        String customer,
+        WorkOrderStatus status,
+        LocalDateTime updatedAt,
+        LocalDateTime archivedAt,
+        Double hours,
+        Double timeTotal,
+        Double materialTotal,
+        Double total
+) {
+}
@@ -2,10 +2,19 @@ package com.swedtrac.workorder.repository;
 
 import com.swedtrac.workorder.domain.WorkOrder;
 import com.swedtrac.workorder.domain.WorkOrderTimeEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface WorkOrderTimeEntryRepository extends JpaRepository<WorkOrderTimeEntry, Long> {
+    // Frågecachen: resultatet gäller tills tabellen ändras via Hibernate (eller TTL i ehcache.xml)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<WorkOrderTimeEntry> findByWorkOrder(WorkOrder workOrder);
+
+    // Bara kolumnerna detaljvyn visar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<TimeEntryRow> findByWorkOrderIdOrderByIdAsc(Long workOrderId);
 }
\ No newline at end of file
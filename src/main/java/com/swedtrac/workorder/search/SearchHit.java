@@ -0,0 +1,22 @@
+// File: src/main/java/com/swedtrac/workorder/search/SearchHit.java
+package com.swedtrac.workorder.search;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * En träff i fulltextsökningen: orderns visningsfält och dess poäng (högre = bättre).
+ */
+public record SearchHit(
+        long id,
+        String orderNumber,
+        String title,
+        String customer,
+        String trainNumber,
+        String vehicle,
+        LocalDateTime createdAt,
+        WorkOrderStatus status,
+        float score
+) {
+}
@@ -0,0 +1,13 @@
+// File: src/main/java/com/swedtrac/workorder/search/SearchResult.java
+package com.swedtrac.workorder.search;
+
+import java.util.List;
+
+/**
+ * En sida med träffar. 'total' är antalet träffar totalt, för att kunna bläddra.
+ */
+public record SearchResult(
+        int total,
+        List<SearchHit> hits
+) {
+}
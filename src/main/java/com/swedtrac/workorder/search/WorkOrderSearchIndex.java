@@ -0,0 +1,290 @@
+// File: src/main/java/com/swedtrac/workorder/search/WorkOrderSearchIndex.java
+package com.swedtrac.workorder.search;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverterat fulltextindex över arbetsordrar, i minnet.
+ * Varje order delas upp i termer (ord och tal) från ordernummer, tågnummer, fordon, titel,
+ * kund och beskrivning. Termerna ligger i en sorterad ordlista så att en sökterm också
+ * träffar termer som börjar med den ("broms" hittar "bromsbelägg").
+ *
+ * Alla sökord måste träffa. Träffar rankas med BM25-liknande poäng: sällsynta termer väger
+ * tyngre och fältvikter gör att t.ex. ett fordonsnummer slår ett ord i beskrivningen.
+ *
+ * Indexet hålls aktuellt av {@link WorkOrderSearchListener} (sparade ordrar) och
+ * {@link WorkOrderSearchIndexer} (status- och arkivbyten, som görs med SQL direkt), och byggs om
+ * vid start av {@link WorkOrderSearchIndexer}. Läsare och skrivare synkroniseras med ett läs/skrivlås.
+ *
+ * Under en ombyggnad ({@link #beginRebuild()} till {@link #putAll}) antecknas alla ändringar som
+ * kommer in och spelas upp igen efter de inlästa ordrarna. Annars kunde en order som tagits bort
+ * eller bytt status medan databasen lästes komma tillbaka i sitt gamla läge.
+ */
+@Component
+public class WorkOrderSearchIndex {
+
+    // Fältvikter: identifierare först, fritext sist
+    static final float ORDER_NUMBER = 4.0f;
+    static final float TRAIN_NUMBER = 3.0f;
+    static final float VEHICLE = 3.0f;
+    static final float TITLE = 2.0f;
+    static final float CUSTOMER = 1.5f;
+    static final float DESCRIPTION = 1.0f;
+
+    // Prefixträffar räknas lägre än exakta, och en kort sökterm får inte expandera hur långt som helst
+    private static final float PREFIX_FACTOR = 0.8f;
+    private static final int MAX_EXPANSIONS = 64;
+    private static final float K1 = 1.2f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>(); // term -> order -> viktad frekvens
+    private final Map<Long, Document> documents = new HashMap<>();
+    private volatile boolean ready;
+    // ändringar under pågående ombyggnad, i ordning (null = ingen ombyggnad)
+    private List<Runnable> replay;
+
+    /**
+     * En indexerad order: visningsfälten för träfflistan plus dess termer.
+     * Skapas utanför låset (tokenisering är det dyra) och läggs sedan in med {@link #put}.
+     */
+    public record Document(
+            long id,
+            long version,
+            String orderNumber,
+            String title,
+            String customer,
+            String trainNumber,
+            String vehicle,
+            LocalDateTime createdAt,
+            WorkOrderStatus status,
+            Map<String, Float> terms
+    ) {
+
+        Document withStatus(long version, WorkOrderStatus status) {
+            return new Document(id, version, orderNumber, title, customer, trainNumber, vehicle, createdAt, status, terms);
+        }
+    }
+
+    public static Document document(Long id, Long version, String orderNumber, String title, String description,
+                                    String customer, String trainNumber, String vehicle, LocalDateTime createdAt,
+                                    WorkOrderStatus status) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, orderNumber, ORDER_NUMBER);
+        addTerms(terms, trainNumber, TRAIN_NUMBER);
+        addTerms(terms, vehicle, VEHICLE);
+        addTerms(terms, title, TITLE);
+        addTerms(terms, customer, CUSTOMER);
+        addTerms(terms, description, DESCRIPTION);
+        return new Document(id, version != null ? version : 0L, orderNumber, title, customer,
+                trainNumber, vehicle, createdAt, status, terms);
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String t : tokenize(text)) {
+            terms.merge(t, weight, Float::sum);
+        }
+    }
+
+    /**
+     * Gemener, delat på allt som inte är bokstav eller siffra. Enstaka bokstäver tas bort
+     * (för vanliga för att vara sökbara), enstaka siffror behålls.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String t : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (t.length() >= 2 || (t.length() == 1 && Character.isDigit(t.charAt(0)))) {
+                out.add(t);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Lägg in eller ersätt en order. En äldre version än den som redan finns ignoreras,
+     * så att en ombyggnad som läste ordern före en ändring inte skriver över ändringen.
+     */
+    public void put(Document doc) {
+        apply(() -> putLocked(doc));
+    }
+
+    public void remove(long id) {
+        apply(() -> {
+            Document old = documents.remove(id);
+            if (old != null) unlink(old);
+        });
+    }
+
+    /**
+     * Ny status och version för en indexerad order, utan att tokenisera om den (de sökbara
+     * fälten är oförändrade). Ignoreras om indexet redan har en nyare version.
+     */
+    public void updateStatus(long id, long version, WorkOrderStatus status) {
+        apply(() -> {
+            Document old = documents.get(id);
+            if (old != null && old.version() <= version) {
+                documents.put(id, old.withStatus(version, status));
+            }
+        });
+    }
+
+    /**
+     * Markera att en ombyggnad börjar: ändringar från och med nu spelas upp igen i {@link #putAll}.
+     * Anropas innan databasen läses.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lägg in många ordrar under ett och samma skrivlås (ombyggnad), spela upp ändringar som
+     * kommit in under ombyggnaden och markera indexet som klart.
+     */
+    public void putAll(Collection<Document> docs) {
+        lock.writeLock().lock();
+        try {
+            for (Document doc : docs) {
+                putLocked(doc);
+            }
+            if (replay != null) {
+                replay.forEach(Runnable::run);
+                replay = null;
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Utför en ändring under skrivlåset och anteckna den om en ombyggnad pågår
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (replay != null) replay.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(Document doc) {
+        Document old = documents.get(doc.id());
+        if (old != null) {
+            if (old.version() > doc.version()) return;
+            unlink(old);
+        }
+        documents.put(doc.id(), doc);
+        doc.terms().forEach((term, tf) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(doc.id(), tf));
+    }
+
+    private void unlink(Document doc) {
+        for (String term : doc.terms().keySet()) {
+            Map<Long, Float> p = postings.get(term);
+            if (p == null) continue;
+            p.remove(doc.id());
+            if (p.isEmpty()) postings.remove(term);
+        }
+    }
+
+    /** Sant när startens ombyggnad är klar. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sök. Alla ord i frågan måste träffa (exakt eller som prefix); bäst rankade först.
+     * 'createdFrom'/'createdTo' (valfria) begränsar på orderns skapandetid.
+     */
+    public SearchResult search(String query, LocalDateTime createdFrom, LocalDateTime createdTo, int offset, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) return new SearchResult(0, List.of());
+
+        lock.readLock().lock();
+        try {
+            int n = documents.size();
+            Map<Long, Float> scores = null;
+            // ovanligaste ordet först, så att snittet krymper snabbt
+            words = new ArrayList<>(new LinkedHashSet<>(words));
+            words.sort(Comparator.comparingInt(this::estimatedFrequency));
+            for (String word : words) {
+                Map<Long, Float> wordScores = scoreWord(word, n, scores);
+                if (wordScores.isEmpty()) return new SearchResult(0, List.of());
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    Map<Long, Float> next = new HashMap<>();
+                    for (Map.Entry<Long, Float> e : wordScores.entrySet()) {
+                        Float prev = scores.get(e.getKey());
+                        if (prev != null) next.put(e.getKey(), prev + e.getValue());
+                    }
+                    if (next.isEmpty()) return new SearchResult(0, List.of());
+                    scores = next;
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Float> e : scores.entrySet()) {
+                Document d = documents.get(e.getKey());
+                if (createdFrom != null && (d.createdAt() == null || d.createdAt().isBefore(createdFrom))) continue;
+                if (createdTo != null && (d.createdAt() == null || !d.createdAt().isBefore(createdTo))) continue;
+                hits.add(new SearchHit(d.id(), d.orderNumber(), d.title(), d.customer(), d.trainNumber(),
+                        d.vehicle(), d.createdAt(), d.status(), e.getValue()));
+            }
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(SearchHit::id, Comparator.reverseOrder()));
+
+            int from = Math.min(offset, hits.size());
+            int to = Math.min(from + limit, hits.size());
+            return new SearchResult(hits.size(), new ArrayList<>(hits.subList(from, to)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Antal ordrar med exakt denna term (prefixträffar räknas inte) — bara för att välja ordning
+    private int estimatedFrequency(String word) {
+        Map<Long, Float> p = postings.get(word);
+        return p != null ? p.size() : 0;
+    }
+
+    /**
+     * Poäng per order för ett sökord: bästa termen bland exakt träff och termer med ordet som prefix.
+     * Med 'within' satt räknas bara ordrar som redan träffat tidigare ord.
+     */
+    private Map<Long, Float> scoreWord(String word, int n, Map<Long, Float> within) {
+        Map<Long, Float> out = new HashMap<>();
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> e : postings.tailMap(word, true).entrySet()) {
+            String term = e.getKey();
+            if (!term.startsWith(word) || expansions++ >= MAX_EXPANSIONS) break;
+            Map<Long, Float> docs = e.getValue();
+            float idf = (float) Math.log(1.0 + (n - docs.size() + 0.5) / (docs.size() + 0.5));
+            float factor = term.length() == word.length() ? 1.0f : PREFIX_FACTOR;
+            for (Map.Entry<Long, Float> d : docs.entrySet()) {
+                if (within != null && !within.containsKey(d.getKey())) continue;
+                float tf = d.getValue();
+                float s = factor * idf * tf * (K1 + 1) / (tf + K1);
+                out.merge(d.getKey(), s, Math::max);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,82 @@
+// File: src/main/java/com/swedtrac/workorder/search/WorkOrderSearchIndexer.java
+package com.swedtrac.workorder.search;
+
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderSearchRow;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Bygger sökindexet från databasen när applikationen startat.
+ * Ordrarna läses sida för sida (keyset på id) och tokeniseras parallellt;
+ * sedan läggs allt in under ett enda skrivlås.
+ * Ordrar som flyttats till arkivet indexeras också, så att de går att hitta (och öppna) som förut.
+ *
+ * Följer också ändringsflödet: status- och arkivbyten görs med SQL direkt (inga JPA-händelser),
+ * så deras nya status och version förs in i indexet härifrån.
+ */
+@Component
+public class WorkOrderSearchIndexer {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final WorkOrderRepository workOrderRepository;
+    private final ArchivedWorkOrderRepository archivedWorkOrderRepository;
+    private final WorkOrderSearchIndex index;
+
+    public WorkOrderSearchIndexer(WorkOrderRepository workOrderRepository,
+                                  ArchivedWorkOrderRepository archivedWorkOrderRepository,
+                                  WorkOrderSearchIndex index,
+                                  WorkOrderChangeFeed changeFeed) {
+        this.workOrderRepository = workOrderRepository;
+        this.archivedWorkOrderRepository = archivedWorkOrderRepository;
+        this.index = index;
+        changeFeed.addListener(this::onChanges);
+    }
+
+    private void onChanges(List<WorkOrderChange> changes) {
+        for (WorkOrderChange change : changes) {
+            if (change.type() == WorkOrderChange.Type.STATUS && change.version() != null) {
+                index.updateStatus(change.id(), change.version(), change.status());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        // före läsningen: ändringar som committas under tiden spelas upp efter de inlästa ordrarna
+        index.beginRebuild();
+        List<WorkOrderSearchIndex.Document> docs = new ArrayList<>();
+        load(docs, workOrderRepository::findSearchRows);
+        load(docs, archivedWorkOrderRepository::findSearchRows);
+        index.putAll(docs);
+        System.out.println("Sökindex: " + index.size() + " arbetsordrar indexerade på "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private void load(List<WorkOrderSearchIndex.Document> docs,
+                      BiFunction<Long, PageRequest, List<WorkOrderSearchRow>> source) {
+        long after = 0L;
+        while (true) {
+            List<WorkOrderSearchRow> rows = source.apply(after, PageRequest.ofSize(BATCH_SIZE));
+            if (rows.isEmpty()) break;
+            // tokeniseringen är det som kostar; databasläsningen är sekventiell ändå
+            docs.addAll(rows.parallelStream()
+                    .map(r -> WorkOrderSearchIndex.document(r.id(), r.version(), r.orderNumber(), r.title(),
+                            r.description(), r.customer(), r.trainNumber(), r.vehicle(), r.createdAt(), r.status()))
+                    .toList());
+            after = rows.get(rows.size() - 1).id();
+            if (rows.size() < BATCH_SIZE) break;
+        }
+    }
+}
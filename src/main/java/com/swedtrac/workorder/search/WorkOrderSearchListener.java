@@ -0,0 +1,55 @@
+// File: src/main/java/com/swedtrac/workorder/search/WorkOrderSearchListener.java
+package com.swedtrac.workorder.search;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA-lyssnare på WorkOrder som håller sökindexet aktuellt.
+ * Händelserna kommer vid flush, alltså före commit: orderns fält läses av direkt,
+ * men indexet ändras först när transaktionen har committats (en rollback lämnar det orört).
+ * Status- och arkivbyten görs med SQL direkt och går inte via lyssnaren; de når indexet via
+ * ändringsflödet (se {@link WorkOrderSearchIndexer}).
+ */
+@Component
+public class WorkOrderSearchListener {
+
+    private final WorkOrderSearchIndex index;
+
+    public WorkOrderSearchListener(WorkOrderSearchIndex index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onSave(WorkOrder wo) {
+        WorkOrderSearchIndex.Document doc = WorkOrderSearchIndex.document(wo.getId(), wo.getVersion(),
+                wo.getOrderNumber(), wo.getTitle(), wo.getDescription(), wo.getCustomer(),
+                wo.getTrainNumber(), wo.getVehicle(), wo.getCreatedAt(), wo.getStatus());
+        afterCommit(() -> index.put(doc));
+    }
+
+    @PostRemove
+    void onRemove(WorkOrder wo) {
+        long id = wo.getId();
+        afterCommit(() -> index.remove(id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.repository.WorkOrderFilter;
+
+import java.util.List;
+
+/**
+ * Massarkivering: antingen en lista med id eller ett filter.
+ */
+public record BulkArchiveRequest(
+        List<Long> ids,
+        WorkOrderFilter filter
+) {
+}
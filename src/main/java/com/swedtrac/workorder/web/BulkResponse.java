@@ -0,0 +1,28 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.repository.BulkOutcome;
+
+import java.util.List;
+
+/**
+ * Svar på en massuppdatering: antal per utfall och ett utfall per order.
+ */
+public record BulkResponse(
+        int updated,
+        int skipped,
+        int notFound,
+        List<BulkOutcome> results
+) {
+
+    static BulkResponse of(List<BulkOutcome> results) {
+        int updated = 0, skipped = 0, notFound = 0;
+        for (BulkOutcome r : results) {
+            switch (r.result()) {
+                case UPDATED -> updated++;
+                case SKIPPED -> skipped++;
+                case NOT_FOUND -> notFound++;
+            }
+        }
+        return new BulkResponse(updated, skipped, notFound, results);
+    }
+}
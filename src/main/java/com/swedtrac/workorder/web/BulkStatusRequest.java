@@ -0,0 +1,19 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.repository.WorkOrderFilter;
+
+import java.util.List;
+
+/**
+ * Massbyte av status: antingen en lista med id eller ett filter (samma fält som listans parametrar).
+ * 'fromStatuses' begränsar ändringen till ordrar som just nu har någon av dessa statusar,
+ * t.ex. bara COMPLETED -> READY_FOR_INVOICING.
+ */
+public record BulkStatusRequest(
+        List<Long> ids,
+        WorkOrderFilter filter,
+        WorkOrderStatus status,
+        List<WorkOrderStatus> fromStatuses
+) {
+}
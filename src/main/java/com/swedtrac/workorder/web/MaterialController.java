@@ -3,8 +3,11 @@ package com.swedtrac.workorder.web;
 
 import com.swedtrac.workorder.pricelist.PriceItem;
 import com.swedtrac.workorder.pricelist.PriceListService;
+import com.swedtrac.workorder.pricelist.PriceListSnapshot;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Enkel REST controller för prislistan.
@@ -16,6 +19,8 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*")
 public class MaterialController {
 
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePublic();
+
     private final PriceListService priceListService;
 
     public MaterialController(PriceListService priceListService) {
@@ -23,12 +28,18 @@ public class MaterialController {
     }
 
     @GetMapping("/{articleNumber}")
-    public ResponseEntity<PriceItem> getByArticleNumber(@PathVariable String articleNumber) {
-        PriceItem item = priceListService.findByEmNrNormalize(articleNumber);
+    public ResponseEntity<PriceItem> getByArticleNumber(@PathVariable String articleNumber, WebRequest request) {
+        // Svaret beror bara på prislistans version — 304 om klienten redan har den.
+        // ETag och uppslag tas från samma ögonblicksbild så att en reload emellan inte blandar ihop dem.
+        PriceListSnapshot snap = priceListService.getSnapshot();
+        if (request.checkNotModified(snap.getETag())) {
+            return null;
+        }
+        PriceItem item = priceListService.findByArticleNumber(snap, articleNumber);
         if (item == null) {
-            return ResponseEntity.notFound().build();
+            return ResponseEntity.notFound().cacheControl(CACHE_CONTROL).build();
         }
-        return ResponseEntity.ok(item);
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(item);
     }
 
     /**
@@ -39,7 +50,7 @@ public class MaterialController {
     public ResponseEntity<String> reload() {
         try {
             priceListService.reload();
-            return ResponseEntity.ok("Prislista reloadad");
+            return ResponseEntity.ok("Prislista reloadad (version " + priceListService.getSnapshot().getVersion() + ")");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Kunde inte ladda prislista: " + e.getMessage());
         }
@@ -0,0 +1,11 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.repository.TrainBoardRow;
+
+import java.util.List;
+
+/**
+ * Tåg i verkstad för en plats (location null = okänd plats).
+ */
+public record TrainLocationGroup(String location, List<TrainBoardRow> trains) {
+}
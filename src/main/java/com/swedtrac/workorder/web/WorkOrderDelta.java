@@ -0,0 +1,20 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.repository.WorkOrderListItem;
+
+import java.util.List;
+
+/**
+ * Svar på GET /api/workorders/changes?since=...: ändrade ordrar som matchar filtret ('items',
+ * senast uppdaterade först) och id för ändrade ordrar som ska bort ur klientens lista
+ * ('removed': borttagna eller som inte längre matchar filtret, t.ex. efter statusbyte).
+ * reset/more och token som i flödets ChangeSet.
+ */
+public record WorkOrderDelta(
+        String token,
+        boolean reset,
+        boolean more,
+        List<WorkOrderListItem> items,
+        List<Long> removed
+) {
+}
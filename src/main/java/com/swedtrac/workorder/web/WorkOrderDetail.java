@@ -0,0 +1,17 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.repository.MaterialEntryRow;
+import com.swedtrac.workorder.repository.TimeEntryRow;
+
+import java.util.List;
+
+/**
+ * Allt detaljvyn behöver om en order: ordern själv och dess tid- och materialrader.
+ */
+public record WorkOrderDetail(
+        WorkOrder order,
+        List<TimeEntryRow> timeEntries,
+        List<MaterialEntryRow> materialEntries
+) {
+}
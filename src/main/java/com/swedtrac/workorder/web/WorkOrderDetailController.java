@@ -1,15 +1,22 @@
 package com.swedtrac.workorder.web;
 
 import com.swedtrac.workorder.domain.*;
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import com.swedtrac.workorder.repository.ArchivedMaterialEntryRepository;
+import com.swedtrac.workorder.repository.ArchivedTimeEntryRepository;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.MaterialEntryRow;
+import com.swedtrac.workorder.repository.TimeEntryRow;
 import com.swedtrac.workorder.repository.WorkOrderMaterialEntryRepository;
 import com.swedtrac.workorder.repository.WorkOrderRepository;
 import com.swedtrac.workorder.repository.WorkOrderTimeEntryRepository;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/workorders/{workOrderId}")
@@ -19,61 +26,130 @@ public class WorkOrderDetailController {
     private final WorkOrderRepository workOrderRepository;
     private final WorkOrderTimeEntryRepository timeEntryRepository;
     private final WorkOrderMaterialEntryRepository materialEntryRepository;
+    private final ArchivedWorkOrderRepository archivedWorkOrderRepository;
+    private final ArchivedTimeEntryRepository archivedTimeEntryRepository;
+    private final ArchivedMaterialEntryRepository archivedMaterialEntryRepository;
+    private final WorkOrderChangeFeed changeFeed;
 
     public WorkOrderDetailController(
             WorkOrderRepository workOrderRepository,
             WorkOrderTimeEntryRepository timeEntryRepository,
-            WorkOrderMaterialEntryRepository materialEntryRepository
+            WorkOrderMaterialEntryRepository materialEntryRepository,
+            ArchivedWorkOrderRepository archivedWorkOrderRepository,
+            ArchivedTimeEntryRepository archivedTimeEntryRepository,
+            ArchivedMaterialEntryRepository archivedMaterialEntryRepository,
+            WorkOrderChangeFeed changeFeed
     ) {
         this.workOrderRepository = workOrderRepository;
         this.timeEntryRepository = timeEntryRepository;
         this.materialEntryRepository = materialEntryRepository;
+        this.archivedWorkOrderRepository = archivedWorkOrderRepository;
+        this.archivedTimeEntryRepository = archivedTimeEntryRepository;
+        this.archivedMaterialEntryRepository = archivedMaterialEntryRepository;
+        this.changeFeed = changeFeed;
     }
 
     private Optional<WorkOrder> findWorkOrder(Long workOrderId) {
         return workOrderRepository.findById(workOrderId);
     }
 
+    // ================================
+    // GET /api/workorders/{id}/detail
+    // Ordern med tid- och materialrader i ett svar (detaljvyn), två frågor i stället för tre anrop.
+    // Ordrar som flyttats till arkivet läses därifrån.
+    // ================================
+    @GetMapping("/detail")
+    @Transactional(readOnly = true)
+    public ResponseEntity<WorkOrderDetail> getDetail(@PathVariable Long workOrderId) {
+        Optional<WorkOrder> woOpt = workOrderRepository.findWithTimeEntries(workOrderId);
+        if (woOpt.isEmpty()) {
+            return archivedWorkOrderRepository.findById(workOrderId)
+                    .map(archived -> ResponseEntity.ok(new WorkOrderDetail(
+                            archived.toWorkOrder(),
+                            archivedTimeEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId),
+                            archivedMaterialEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId))))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        }
+        // samma persistenskontext: fyller materialraderna på samma instans
+        workOrderRepository.findWithMaterialEntries(workOrderId);
+        WorkOrder wo = woOpt.get();
+
+        return ResponseEntity.ok(new WorkOrderDetail(
+                wo,
+                wo.getTimeEntries().stream().map(TimeEntryRow::of).toList(),
+                wo.getMaterialEntries().stream().map(MaterialEntryRow::of).toList()));
+    }
+
     // ================================
     // TID
     // ================================
 
     @GetMapping("/time-entries")
-    public ResponseEntity<List<WorkOrderTimeEntry>> getTimeEntries(@PathVariable Long workOrderId) {
-        Optional<WorkOrder> woOpt = findWorkOrder(workOrderId);
-        if (woOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<List<TimeEntryRow>> getTimeEntries(@PathVariable Long workOrderId) {
+        // existsById räcker — ordern själv (med beskrivning) behöver inte läsas
+        if (!workOrderRepository.existsById(workOrderId)) {
+            if (!archivedWorkOrderRepository.existsById(workOrderId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(archivedTimeEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
         }
-        List<WorkOrderTimeEntry> list = timeEntryRepository.findByWorkOrder(woOpt.get());
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok(timeEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
     }
 
+    /**
+     * Sparar orderns tidrader som en helhet. Rader med känt id uppdateras (createdAt behålls,
+     * oförändrade rader skrivs inte alls), rader utan id läggs till och rader som inte längre
+     * finns med tas bort med en enda DELETE ... WHERE id IN (...).
+     * Orderns timmar och tidssumma räknas sedan om av databasen i samma transaktion.
+     */
     @PostMapping("/time-entries")
+    @Transactional
     public ResponseEntity<?> saveTimeEntries(
             @PathVariable Long workOrderId,
             @RequestBody List<WorkOrderTimeEntry> entries
     ) {
         Optional<WorkOrder> woOpt = findWorkOrder(workOrderId);
         if (woOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+            return archivedOrNotFound(workOrderId);
         }
         WorkOrder wo = woOpt.get();
 
-        // Radera gamla och spara nya (enklaste möjliga logik)
-        List<WorkOrderTimeEntry> existing = timeEntryRepository.findByWorkOrder(wo);
-        timeEntryRepository.deleteAll(existing);
-
-        LocalDateTime now = LocalDateTime.now();
-        for (WorkOrderTimeEntry e : entries) {
-            e.setId(null);
-            e.setWorkOrder(wo);
-            e.setTotal(e.getHours() * e.getRate());
-            e.setCreatedAt(now);
-            e.setUpdatedAt(now);
+        Map<Long, WorkOrderTimeEntry> existing = new HashMap<>();
+        for (WorkOrderTimeEntry e : timeEntryRepository.findByWorkOrder(wo)) {
+            existing.put(e.getId(), e);
+        }
+
+        List<WorkOrderTimeEntry> inserts = new ArrayList<>();
+        for (WorkOrderTimeEntry in : entries) {
+            WorkOrderTimeEntry current = in.getId() != null ? existing.remove(in.getId()) : null;
+            if (current == null) {
+                // ny rad (eller id som inte hör till ordern)
+                in.setId(null);
+                in.setWorkOrder(wo);
+                in.setTotal(in.getHours() * in.getRate());
+                in.setCreatedAt(null);
+                in.setUpdatedAt(null);
+                inserts.add(in);
+            } else {
+                // hanterad entitet: Hibernate skriver bara om något faktiskt ändrats
+                current.setAction(in.getAction());
+                current.setWork(in.getWork());
+                current.setHours(in.getHours());
+                current.setRate(in.getRate());
+                current.setTotal(in.getHours() * in.getRate());
+            }
+        }
+
+        if (!existing.isEmpty()) {
+            timeEntryRepository.deleteAllByIdInBatch(existing.keySet());
         }
+        timeEntryRepository.saveAll(inserts);
 
-        List<WorkOrderTimeEntry> saved = timeEntryRepository.saveAll(entries);
-        return ResponseEntity.ok(saved);
+        // ordersummorna räknas om ur de sparade raderna i samma transaktion
+        workOrderRepository.updateTimeTotals(workOrderId);
+        publishTotals(wo);
+
+        return ResponseEntity.ok(timeEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
     }
 
     // ================================
@@ -81,40 +157,77 @@ public class WorkOrderDetailController {
     // ================================
 
     @GetMapping("/material-entries")
-    public ResponseEntity<List<WorkOrderMaterialEntry>> getMaterialEntries(@PathVariable Long workOrderId) {
-        Optional<WorkOrder> woOpt = findWorkOrder(workOrderId);
-        if (woOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<List<MaterialEntryRow>> getMaterialEntries(@PathVariable Long workOrderId) {
+        if (!workOrderRepository.existsById(workOrderId)) {
+            if (!archivedWorkOrderRepository.existsById(workOrderId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(archivedMaterialEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
         }
-        List<WorkOrderMaterialEntry> list = materialEntryRepository.findByWorkOrder(woOpt.get());
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok(materialEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
     }
 
+    /**
+     * Sparar orderns materialrader, på samma sätt som tidraderna.
+     */
     @PostMapping("/material-entries")
+    @Transactional
     public ResponseEntity<?> saveMaterialEntries(
             @PathVariable Long workOrderId,
             @RequestBody List<WorkOrderMaterialEntry> entries
     ) {
         Optional<WorkOrder> woOpt = findWorkOrder(workOrderId);
         if (woOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+            return archivedOrNotFound(workOrderId);
         }
         WorkOrder wo = woOpt.get();
 
-        // Radera gamla och spara nya
-        List<WorkOrderMaterialEntry> existing = materialEntryRepository.findByWorkOrder(wo);
-        materialEntryRepository.deleteAll(existing);
-
-        LocalDateTime now = LocalDateTime.now();
-        for (WorkOrderMaterialEntry e : entries) {
-            e.setId(null);
-            e.setWorkOrder(wo);
-            e.setTotal(e.getQuantity() * e.getPrice());
-            e.setCreatedAt(now);
-            e.setUpdatedAt(now);
+        Map<Long, WorkOrderMaterialEntry> existing = new HashMap<>();
+        for (WorkOrderMaterialEntry e : materialEntryRepository.findByWorkOrder(wo)) {
+            existing.put(e.getId(), e);
+        }
+
+        List<WorkOrderMaterialEntry> inserts = new ArrayList<>();
+        for (WorkOrderMaterialEntry in : entries) {
+            WorkOrderMaterialEntry current = in.getId() != null ? existing.remove(in.getId()) : null;
+            if (current == null) {
+                in.setId(null);
+                in.setWorkOrder(wo);
+                in.setTotal(in.getQuantity() * in.getPrice());
+                in.setCreatedAt(null);
+                in.setUpdatedAt(null);
+                inserts.add(in);
+            } else {
+                current.setArticleNumber(in.getArticleNumber());
+                current.setDescription(in.getDescription());
+                current.setQuantity(in.getQuantity());
+                current.setUnit(in.getUnit());
+                current.setPrice(in.getPrice());
+                current.setTotal(in.getQuantity() * in.getPrice());
+            }
+        }
+
+        if (!existing.isEmpty()) {
+            materialEntryRepository.deleteAllByIdInBatch(existing.keySet());
         }
+        materialEntryRepository.saveAll(inserts);
+
+        workOrderRepository.updateMaterialTotal(workOrderId);
+        publishTotals(wo);
+
+        return ResponseEntity.ok(materialEntryRepository.findByWorkOrderIdOrderByIdAsc(workOrderId));
+    }
+
+    // Ordrar i arkivet ändras inte: 409 i stället för 404 så att klienten kan säga varför
+    private ResponseEntity<?> archivedOrNotFound(Long workOrderId) {
+        if (archivedWorkOrderRepository.existsById(workOrderId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Arbetsordern ligger i arkivet och kan inte ändras");
+        }
+        return ResponseEntity.notFound().build();
+    }
 
-        List<WorkOrderMaterialEntry> saved = materialEntryRepository.saveAll(entries);
-        return ResponseEntity.ok(saved);
+    // Summorna skrivs förbi entiteten och dess lyssnare, så ändringsflödet får veta det här
+    private void publishTotals(WorkOrder wo) {
+        changeFeed.publish(new WorkOrderChange(wo.getId(), WorkOrderChange.Type.UPDATED, wo.getVersion(), wo.getStatus()));
     }
-}
\ No newline at end of file
+}
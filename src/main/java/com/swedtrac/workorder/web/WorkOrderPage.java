@@ -0,0 +1,26 @@
+package com.swedtrac.workorder.web;
+
+import java.util.List;
+
+/**
+ * En sida i en listning. nextCursor skickas tillbaka som ?cursor=... för nästa sida
+ * och är null när det inte finns fler rader.
+ */
+public class WorkOrderPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public WorkOrderPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,42 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.search.WorkOrderSearchIndex;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/workorders/search")
+@CrossOrigin(origins = "*")
+public class WorkOrderSearchController {
+
+    private static final int MAX_LIMIT = 200;
+
+    private final WorkOrderSearchIndex index;
+
+    public WorkOrderSearchController(WorkOrderSearchIndex index) {
+        this.index = index;
+    }
+
+    // ================================
+    // GET /api/workorders/search?q=broms x2000&createdFrom=2025-03-01T00:00:00&limit=20&offset=0
+    // Fulltextsökning i ordernummer, tågnummer, fordon, titel, kund och beskrivning, bäst träff först
+    // ================================
+    @GetMapping
+    public ResponseEntity<?> search(
+            @RequestParam("q") String q,
+            @RequestParam(name = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(name = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "offset", required = false, defaultValue = "0") int offset
+    ) {
+        if (!index.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Sökindexet byggs, försök igen om en stund");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return ResponseEntity.ok(index.search(q, createdFrom, createdTo, Math.max(0, offset), pageSize));
+    }
+}
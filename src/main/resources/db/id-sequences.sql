@@ -0,0 +1,21 @@
+-- Id-sekvenser för work_orders, work_order_time_entries och work_order_material_entries.
+-- Körs vid varje start efter Hibernates schemauppdatering (spring.jpa.defer-datasource-initialization)
+-- och är idempotent: sekvenserna skapas vid behov och flyttas fram förbi högsta befintliga id,
+-- men aldrig bakåt (andra instanser kan redan ha reserverat id-block).
+-- Pooled-optimeraren delar ut id:n (värde - 49 .. värde), därför INCREMENT BY 50 = allocationSize.
+
+CREATE SEQUENCE IF NOT EXISTS work_orders_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS work_order_time_entries_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS work_order_material_entries_seq START WITH 1 INCREMENT BY 50;
+
+-- Tabeller skapade med IDENTITY: id sätts nu av Hibernate, så kolumnens egen generator tas bort
+ALTER TABLE work_orders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE work_order_time_entries ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE work_order_material_entries ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+SELECT setval('work_orders_seq',
+        GREATEST((SELECT MAX(id) FROM work_orders), (SELECT last_value FROM work_orders_seq)));
+SELECT setval('work_order_time_entries_seq',
+        GREATEST((SELECT MAX(id) FROM work_order_time_entries), (SELECT last_value FROM work_order_time_entries_seq)));
+SELECT setval('work_order_material_entries_seq',
+        GREATEST((SELECT MAX(id) FROM work_order_material_entries), (SELECT last_value FROM work_order_material_entries_seq)));
@@ -0,0 +1,9 @@
+-- Fyller i work_orders.hours/time_total/material_total för ordrar som fanns innan kolumnerna lades till.
+-- Därefter håller WorkOrderDetailController summorna uppdaterade när raderna sparas.
+-- Idempotent: rör bara ordrar där summorna saknas.
+
+UPDATE work_orders w
+SET hours          = COALESCE((SELECT SUM(t.hours) FROM work_order_time_entries t WHERE t.work_order_id = w.id), 0),
+    time_total     = COALESCE((SELECT SUM(t.total) FROM work_order_time_entries t WHERE t.work_order_id = w.id), 0),
+    material_total = COALESCE((SELECT SUM(m.total) FROM work_order_material_entries m WHERE m.work_order_id = w.id), 0)
+WHERE w.hours IS NULL OR w.time_total IS NULL OR w.material_total IS NULL;
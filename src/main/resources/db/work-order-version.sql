@@ -0,0 +1,4 @@
+-- Ordrar som fanns innan optimistisk låsning infördes saknar version.
+-- Idempotent: rör bara rader där versionen saknas.
+
+UPDATE work_orders SET version = 0 WHERE version IS NULL;
@@ -3,8 +3,12 @@
 const apiBase = '/api/workorders';
 
 let allOrders = [];
+let nextOrdersCursor = null;
+let changeToken = null;   // ändringsflödets token för listan som visas (?since=)
+const viewCache = {};     // tidigare laddade vyer: { orders, cursor, token }
 let currentView = 'active';
 let currentDetailOrder = null;
+let editingVersion = null; // version för ordern i redigeringsformuläret
 let timeLines = [];
 let materialLines = [];
 
@@ -25,7 +29,7 @@ document.querySelectorAll('.tab-button').forEach(btn => {
         if (modal) modal.style.display = 'none';
 
         if (tab === 'trains') loadTrainsView();
-        if (tab === 'orders') loadOrders();
+        if (tab === 'orders') syncOrders();
     });
 });
 
@@ -33,13 +37,24 @@ document.querySelectorAll('.tab-button').forEach(btn => {
 const viewSelect = document.getElementById('order-view');
 if (viewSelect) {
     viewSelect.addEventListener('change', (e) => {
+        // spara vyn som lämnas; en vy som redan laddats hämtar bara det som ändrats sedan dess
+        viewCache[currentView] = { orders: allOrders, cursor: nextOrdersCursor, token: changeToken };
         currentView = e.target.value;
-        renderOrdersForCurrentView();
+        const cached = viewCache[currentView];
+        if (cached) {
+            allOrders = cached.orders;
+            nextOrdersCursor = cached.cursor;
+            changeToken = cached.token;
+            renderOrdersForCurrentView();
+            syncOrders();
+        } else {
+            loadOrders();
+        }
     });
 }
 
 const reloadBtn = document.getElementById('reload');
-if (reloadBtn) reloadBtn.addEventListener('click', loadOrders);
+if (reloadBtn) reloadBtn.addEventListener('click', () => loadOrders());
 const reloadTrainsBtn = document.getElementById('reload-trains');
 if (reloadTrainsBtn) reloadTrainsBtn.addEventListener('click', loadTrainsView);
 
@@ -53,24 +68,141 @@ if (closeCreateBtn) closeCreateBtn.addEventListener('click', closeCreateModal);
 const createCancelBtn = document.getElementById('create-modal-cancel');
 if (createCancelBtn) createCancelBtn.addEventListener('click', closeCreateModal);
 
-/* Ladda ordrar */
-async function loadOrders() {
+/* Filter (query-parametrar) per vy — servern filtrerar och pagineras */
+function viewQuery(view) {
+    switch (view) {
+        case 'active': return 'status=OPEN&status=IN_PROGRESS&archived=false';
+        case 'done': return 'status=COMPLETED&archived=false';
+        case 'finance': return 'status=READY_FOR_INVOICING&status=INVOICED&archived=false';
+        case 'archive': return 'archived=true';
+        default: return '';
+    }
+}
+
+/* Ladda ordrar (append = hämta nästa sida och lägg till) */
+async function loadOrders(append = false) {
     const msg = document.getElementById('list-message');
     if (msg) msg.textContent = '';
     try {
-        const res = await fetch(apiBase);
+        let url = `${apiBase}?${viewQuery(currentView)}`;
+        if (append && nextOrdersCursor) url += `&cursor=${encodeURIComponent(nextOrdersCursor)}`;
+        const res = await fetch(url);
         const txt = await res.text();
         if (!res.ok) {
             if (msg) msg.textContent = `Fel vid hämtning: ${res.status} ${txt}`;
             return;
         }
-        allOrders = JSON.parse(txt);
+        const page = JSON.parse(txt);
+        if (append) {
+            // en order som flyttats upp av ett delta kan också finnas på en äldre sida
+            const seen = new Set(allOrders.map(o => o.id));
+            allOrders = allOrders.concat(page.items.filter(o => !seen.has(o.id)));
+        } else {
+            allOrders = page.items;
+            changeToken = res.headers.get('X-Change-Token');
+        }
+        nextOrdersCursor = page.nextCursor;
         renderOrdersForCurrentView();
     } catch (err) {
         if (msg) msg.textContent = `Tekniskt fel vid hämtning: ${err}`;
     }
 }
 
+/* Hämta bara ordrar som ändrats sedan changeToken och lägg in dem i listan.
+   Servern svarar med reset om token är okänd (t.ex. efter omstart) — då laddas listan om. */
+let syncing = null;
+let syncAgain = false;
+async function syncOrders() {
+    if (syncing) {
+        syncAgain = true;
+        return syncing;
+    }
+    syncing = (async () => {
+        try {
+            do {
+                syncAgain = false;
+                await applyChanges();
+            } while (syncAgain);
+        } finally {
+            syncing = null;
+        }
+    })();
+    return syncing;
+}
+
+async function applyChanges() {
+    if (!changeToken) {
+        await loadOrders();
+        return;
+    }
+    const view = currentView;
+    const msg = document.getElementById('list-message');
+    try {
+        let more = true;
+        let changed = false;
+        while (more) {
+            const res = await fetch(`${apiBase}/changes?since=${encodeURIComponent(changeToken)}&${viewQuery(view)}`);
+            if (view !== currentView) return; // vyn byttes under tiden
+            if (!res.ok) {
+                if (msg) msg.textContent = `Fel vid hämtning av ändringar: ${res.status}`;
+                return;
+            }
+            const delta = await res.json();
+            if (delta.reset) {
+                await loadOrders();
+                return;
+            }
+            const drop = new Set(delta.removed.concat(delta.items.map(o => o.id)));
+            if (drop.size > 0) {
+                allOrders = allOrders.filter(o => !drop.has(o.id)).concat(delta.items);
+                changed = true;
+            }
+            changeToken = delta.token;
+            more = delta.more;
+        }
+        if (changed) {
+            // samma ordning som servern: senast uppdaterade först
+            allOrders.sort((a, b) => (b.updatedAt ?? '').localeCompare(a.updatedAt ?? '') || b.id - a.id);
+            renderOrdersForCurrentView();
+        }
+    } catch (err) {
+        if (msg) msg.textContent = `Tekniskt fel vid hämtning av ändringar: ${err}`;
+    }
+}
+
+/* Ändringsflöde (SSE): servern meddelar efter commit vilka ordrar som ändrats, ihopslaget per order.
+   Listan hämtar då bara de ändrade raderna; tåg-tavlan laddas om om den visas. */
+function isTabActive(tab) {
+    const el = document.getElementById('tab-' + tab);
+    return !!el && el.classList.contains('active');
+}
+
+const refreshTrainsSoon = debounce(() => loadTrainsView(), 500);
+
+function connectChangeFeed() {
+    if (!window.EventSource) return;
+    const source = new EventSource(`${apiBase}/stream`);
+    // "hello" kommer vid varje (åter)anslutning — hämta det som ev. missades medan anslutningen var nere
+    source.addEventListener('hello', () => {
+        if (changeToken && isTabActive('orders')) syncOrders();
+    });
+    source.addEventListener('changes', () => {
+        if (isTabActive('orders')) syncOrders();
+        if (isTabActive('trains')) refreshTrainsSoon();
+    });
+    // ny prislista inläst — jämför öppen orders materialrader mot de nya listpriserna,
+    // men bara om någon av raderna berörs (eller om ändringarna var för många för att räknas upp)
+    source.addEventListener('pricelist', (e) => {
+        const dv = document.getElementById('order-detail-view');
+        if (!dv || dv.style.display !== 'block') return;
+        const change = JSON.parse(e.data);
+        const touched = new Set([...change.added, ...change.removed, ...change.repriced, ...change.changed]);
+        if (change.fullReload || materialLines.some(l => touched.has(normalizeEmNr(l.articleNumber)))) {
+            markListPrices(materialLines);
+        }
+    });
+}
+
 /* Rendera ordrar beroende på vy — grupperat per location */
 function renderOrdersForCurrentView() {
     // Först hitta sektionen att rendera i
@@ -102,24 +234,8 @@ function renderOrdersForCurrentView() {
 
     container.innerHTML = ''; // töm container
 
-    // Filtrera ordrar enligt vy
-    let filtered = [];
-    switch (currentView) {
-        case 'active':
-            filtered = allOrders.filter(wo => (wo.status === 'OPEN' || wo.status === 'IN_PROGRESS') && !wo.archivedAt);
-            break;
-        case 'done':
-            filtered = allOrders.filter(wo => wo.status === 'COMPLETED' && !wo.archivedAt);
-            break;
-        case 'finance':
-            filtered = allOrders.filter(wo => (wo.status === 'READY_FOR_INVOICING' || wo.status === 'INVOICED') && !wo.archivedAt);
-            break;
-        case 'archive':
-            filtered = allOrders.filter(wo => wo.archivedAt || wo.status === 'CANCELLED');
-            break;
-        default:
-            filtered = allOrders;
-    }
+    // Ordrarna är redan filtrerade för vyn av servern
+    const filtered = allOrders;
 
     // Om inga ordrar, visa meddelande
     const title = document.getElementById('orders-list-title');
@@ -200,7 +316,7 @@ function renderOrdersForCurrentView() {
                     <button onclick="openOrderDetail(${wo.id})">Öppna</button>
                     <button onclick="openEditModal(${wo.id})">Redigera</button>
                     <div style="margin-top:6px;">
-                        <select onchange="changeStatus(${wo.id}, this.value)">
+                        <select onchange="changeStatus(${wo.id}, ${wo.version ?? 'null'}, this.value)">
                             <option value="">Ändra status...</option>
                             <option value="OPEN">Öppen</option>
                             <option value="IN_PROGRESS">Pågående</option>
@@ -218,6 +334,15 @@ function renderOrdersForCurrentView() {
         block.appendChild(table);
         container.appendChild(block);
     });
+
+    // Fler sidor finns på servern
+    if (nextOrdersCursor) {
+        const more = document.createElement('button');
+        more.textContent = 'Visa fler';
+        more.style.marginTop = '10px';
+        more.addEventListener('click', () => loadOrders(true));
+        container.appendChild(more);
+    }
 }
 
 /* Hjälpfunktioner */
@@ -253,17 +378,24 @@ function escapeHtml(s) {
         .replaceAll("'", '&#39;');
 }
 
-/* Ändra status */
-async function changeStatus(id, newStatus) {
+/* Ändra status (versionen skickas med så att samtidiga ändringar ger 409 i stället för att skriva över) */
+async function changeStatus(id, version, newStatus) {
     if (!newStatus) return;
     try {
-        const res = await fetch(`${apiBase}/${id}/status?status=${encodeURIComponent(newStatus)}`, { method: 'PATCH' });
+        // versionen är obligatorisk; saknas den svarar servern 428 och listan hämtas om
+        const url = `${apiBase}/${id}/status?status=${encodeURIComponent(newStatus)}&version=${encodeURIComponent(version ?? '')}`;
+        const res = await fetch(url, { method: 'PATCH' });
         const txt = await res.text();
+        if (res.status === 409 || res.status === 428) {
+            alert('Arbetsordern har ändrats av någon annan. Listan uppdateras — försök igen.');
+            await syncOrders();
+            return;
+        }
         if (!res.ok) {
             alert(`Fel vid statusändring: ${res.status} ${txt}`);
             return;
         }
-        await loadOrders();
+        await syncOrders();
         await loadTrainsView();
     } catch (err) {
         alert('Tekniskt fel vid statusändring: ' + err);
@@ -273,13 +405,15 @@ async function changeStatus(id, newStatus) {
 /* Öppna detaljvy (overlay) */
 async function openOrderDetail(id) {
     try {
-        const res = await fetch(`${apiBase}/${id}`);
+        // ordern och båda radlistorna i ett anrop
+        const res = await fetch(`${apiBase}/${id}/detail`);
         const txt = await res.text();
         if (!res.ok) {
             alert('Kunde inte hämta arbetsorder: ' + res.status + ' ' + txt);
             return;
         }
-        const wo = JSON.parse(txt);
+        const detail = JSON.parse(txt);
+        const wo = detail.order;
         currentDetailOrder = wo;
 
         document.getElementById('detail-orderNumber').textContent = wo.orderNumber || '';
@@ -292,10 +426,14 @@ async function openOrderDetail(id) {
         document.getElementById('detail-title').textContent = wo.title || '';
         document.getElementById('detail-description').textContent = wo.description || '';
 
-        await loadTimeEntries(id);
-        await loadMaterialEntries(id);
+        timeLines = detail.timeEntries || [];
+        materialLines = detail.materialEntries || [];
+        renderTimeLines();
+        renderMaterialLines();
+        updateTotals();
 
         document.getElementById('order-detail-view').style.display = 'block';
+        markListPrices(materialLines);
     } catch (err) {
         alert('Tekniskt fel vid öppning: ' + err);
     }
@@ -438,6 +576,18 @@ function renderMaterialLines() {
         }
     };
 
+    // Artikelnummer inskrivet utan att välja förslag -> exakt uppslag
+    tbody.onchange = async function(e) {
+        const input = e.target;
+        if (input.dataset.field !== 'articleNumber') return;
+        const idx = Number(input.closest('tr')?.dataset.index);
+        if (isNaN(idx) || materialLines[idx].price) return;
+        const item = await fetchPriceByEm(input.value);
+        if (item && materialLines[idx] && materialLines[idx].articleNumber === input.value) {
+            fillMaterialRowFromSuggestion(idx, item);
+        }
+    };
+
     // Delegated click for remove buttons
     tbody.onclick = function(e) {
         const btn = e.target.closest('.remove-material-btn');
@@ -499,6 +649,8 @@ document.getElementById('save-detail')?.addEventListener('click', async () => {
             }
             return;
         }
+        // servern svarar med de sparade raderna, inklusive id för nya rader
+        timeLines = await tRes.json();
         const mRes = await fetch(`${apiBase}/${id}/material-entries`, {
             method: 'POST',
             headers: { 'Content-Type': 'application/json' },
@@ -512,13 +664,15 @@ document.getElementById('save-detail')?.addEventListener('click', async () => {
             }
             return;
         }
+        materialLines = await mRes.json();
         if (msg) {
             msg.textContent = 'Ändringar sparade!';
             msg.classList.remove('error');
         }
-        await loadTimeEntries(id);
-        await loadMaterialEntries(id);
-        await loadOrders();
+        renderTimeLines();
+        renderMaterialLines();
+        updateTotals();
+        await syncOrders();
     } catch (err) {
         if (msg) {
             msg.textContent = 'Tekniskt fel vid sparande: ' + err;
@@ -534,25 +688,21 @@ async function loadTrainsView() {
     if (container) container.innerHTML = '';
     if (msg) msg.textContent = '';
     try {
-        const res = await fetch(apiBase);
+        const res = await fetch(`${apiBase}/trains-in-workshop`);
         const txt = await res.text();
         if (!res.ok) {
             if (msg) msg.textContent = `Fel vid hämtning: ${res.status} ${txt}`;
             return;
         }
-        const orders = JSON.parse(txt);
-        const active = orders.filter(wo => (wo.status === 'OPEN' || wo.status === 'IN_PROGRESS') && !wo.archivedAt);
-        if (active.length === 0) {
+        // Servern filtrerar och grupperar per plats
+        const groups = JSON.parse(txt);
+        if (groups.length === 0) {
             if (container) container.innerHTML = '<p>Inga tåg i verkstad just nu.</p>';
             return;
         }
-        const grouped = {};
-        active.forEach(wo => {
-            const loc = wo.location || 'Okänd plats';
-            if (!grouped[loc]) grouped[loc] = [];
-            grouped[loc].push(wo);
-        });
-        for (const [loc, ords] of Object.entries(grouped)) {
+        for (const group of groups) {
+            const loc = group.location || 'Okänd plats';
+            const ords = group.trains;
             const block = document.createElement('div');
             block.className = 'train-location-block';
             const title = document.createElement('div');
@@ -588,6 +738,7 @@ async function loadTrainsView() {
 function openCreateModal() {
     const idEl = document.getElementById('createModal-id');
     if (idEl) idEl.value = '';
+    editingVersion = null;
     document.getElementById('create-modal-title') && (document.getElementById('create-modal-title').textContent = 'Ny arbetsorder');
     document.getElementById('createModal-orderNumber') && (document.getElementById('createModal-orderNumber').value = '');
     document.getElementById('createModal-title') && (document.getElementById('createModal-title').value = '');
@@ -616,6 +767,7 @@ async function openEditModal(id) {
             return;
         }
         const wo = JSON.parse(txt);
+        editingVersion = wo.version ?? null;
         document.getElementById('create-modal-title') && (document.getElementById('create-modal-title').textContent = 'Redigera arbetsorder');
         document.getElementById('createModal-id') && (document.getElementById('createModal-id').value = wo.id || '');
         document.getElementById('createModal-orderNumber') && (document.getElementById('createModal-orderNumber').value = wo.orderNumber || '');
@@ -659,7 +811,7 @@ document.getElementById('create-modal-form')?.addEventListener('submit', async (
             res = await fetch(`${apiBase}/${id}`, {
                 method: 'PUT',
                 headers: { 'Content-Type': 'application/json' },
-                body: JSON.stringify(payload)
+                body: JSON.stringify({ ...payload, version: editingVersion })
             });
         } else {
             res = await fetch(apiBase, {
@@ -669,6 +821,13 @@ document.getElementById('create-modal-form')?.addEventListener('submit', async (
             });
         }
         const text = await res.text();
+        if (res.status === 409) {
+            if (msgEl) {
+                msgEl.textContent = 'Arbetsordern har ändrats av någon annan sedan du öppnade den. Stäng och öppna igen.';
+                msgEl.classList.add('error');
+            }
+            return;
+        }
         if (!res.ok) {
             if (msgEl) {
                 msgEl.textContent = `Fel: ${res.status} ${text}`;
@@ -681,7 +840,7 @@ document.getElementById('create-modal-form')?.addEventListener('submit', async (
             msgEl.classList.remove('error');
         }
         closeCreateModal();
-        await loadOrders();
+        await syncOrders();
     } catch (err) {
         if (msgEl) {
             msgEl.textContent = 'Tekniskt fel: ' + err;
@@ -701,7 +860,13 @@ function debounce(fn, wait) {
     };
 }
 
+// Samma normalisering som prislistans nycklar (trim, versaler, ett blanksteg)
+function normalizeEmNr(emNr) {
+    return (emNr || '').trim().toUpperCase().replace(/\s+/g, ' ');
+}
+
 // Fetch exact price by emNr
+// (GET så att svaret kan cachas av webbläsaren och valideras med ETag)
 async function fetchPriceByEm(emNr) {
     if (!emNr || !emNr.trim()) return null;
     try {
@@ -714,6 +879,52 @@ async function fetchPriceByEm(emNr) {
     }
 }
 
+// Fetch prices for many emNr in one call (t.ex. alla materialrader i en order).
+// Returnerar en array i samma ordning som emNrs, med null för nummer som saknas.
+async function fetchPricesByEm(emNrs) {
+    const keys = (emNrs || []).map(e => (e || '').trim());
+    const wanted = keys.filter(k => k);
+    if (wanted.length === 0) return keys.map(() => null);
+    try {
+        const res = await fetch('/api/pricelist/lookup', {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/json' },
+            body: JSON.stringify(wanted)
+        });
+        if (!res.ok) return keys.map(() => null);
+        const data = await res.json();
+        let i = 0;
+        return keys.map(k => {
+            if (!k) return null;
+            const r = data.results[i++];
+            return r && r.found ? r.item : null;
+        });
+    } catch (e) {
+        console.error('Price lookup error', e);
+        return keys.map(() => null);
+    }
+}
+
+// Jämför orderns materialrader med aktuell prislista (ett anrop för alla rader)
+// och markera priser som avviker från listpriset
+async function markListPrices(lines) {
+    const listItems = await fetchPricesByEm(lines.map(l => l.articleNumber));
+    if (lines !== materialLines) return; // annan order öppnad under tiden
+    const tbody = document.querySelector('#material-table tbody');
+    if (!tbody) return;
+    listItems.forEach((item, idx) => {
+        const priceInput = tbody.querySelector(`tr[data-index="${idx}"] input[data-field="price"]`);
+        if (!priceInput) return;
+        if (!item || Math.abs(item.price - (lines[idx].price || 0)) < 0.005) {
+            priceInput.title = '';
+            priceInput.style.borderColor = '';
+            return;
+        }
+        priceInput.title = `Listpris: ${item.price.toFixed(2)} kr`;
+        priceInput.style.borderColor = '#e0a800';
+    });
+}
+
 // Fetch suggestions by prefix
 async function fetchPriceSuggestions(prefix) {
     if (!prefix || !prefix.trim()) return [];
@@ -727,6 +938,19 @@ async function fetchPriceSuggestions(prefix) {
     }
 }
 
+// Fetch suggestions tolerant to typos (used when the prefix search finds nothing)
+async function fetchFuzzySuggestions(query) {
+    if (!query || query.trim().length < 3) return [];
+    try {
+        const res = await fetch(`/api/pricelist/fuzzy?q=${encodeURIComponent(query.trim())}`);
+        if (!res.ok) return [];
+        return await res.json();
+    } catch (e) {
+        console.error('Fuzzy suggestions error', e);
+        return [];
+    }
+}
+
 // Ritar förslag-lista under ett input-element
 function showSuggestionsForInput(inputEl, suggestions, onSelect) {
     removeSuggestionBox(inputEl);
@@ -777,7 +1001,8 @@ function removeSuggestionBox(inputEl) {
 
 // När användaren skriver i articleNumber-fält -> sök förslag (debounced)
 const debouncedSuggest = debounce(async function(inputEl, prefix, rowIdx) {
-    const suggestions = await fetchPriceSuggestions(prefix);
+    let suggestions = await fetchPriceSuggestions(prefix);
+    if (suggestions.length === 0) suggestions = await fetchFuzzySuggestions(prefix);
     showSuggestionsForInput(inputEl, suggestions, (item) => {
         fillMaterialRowFromSuggestion(rowIdx, item);
     });
@@ -815,4 +1040,5 @@ function fillMaterialRowFromSuggestion(rowIdx, item) {
 /* --- END: Price lookup / autocomplete helpers --- */
 
 /* Init load */
-loadOrders();
\ No newline at end of file
+loadOrders();
+connectChangeFeed();
\ No newline at end of file
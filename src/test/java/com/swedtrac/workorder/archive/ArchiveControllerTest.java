@@ -0,0 +1,70 @@
+package com.swedtrac.workorder.archive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Körningens livscykel över HTTP. Själva flytten (DELETE ... RETURNING) kräver PostgreSQL;
+ * här finns inga ordrar att flytta, så körningen blir klar utan att någon flyttas.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ArchiveControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper json;
+
+    @Test
+    void runIsAcceptedAndFinishesInBackground() throws Exception {
+        String body = mvc.perform(post("/api/archive/run"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        long id = json.readTree(body).get("id").asLong();
+
+        JsonNode job = waitForRun(id);
+
+        assertThat(job.get("state").asText()).isEqualTo("DONE");
+        assertThat(job.get("error").isNull()).isTrue();
+        assertThat(job.get("result").get("orders").asInt()).isZero();
+        assertThat(job.get("finishedAt").isNull()).isFalse();
+        mvc.perform(get("/api/archive/runs"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(id));
+    }
+
+    @Test
+    void unknownRunIsNotFound() throws Exception {
+        mvc.perform(get("/api/archive/runs/{id}", 999_999))
+                .andExpect(status().isNotFound());
+    }
+
+    private JsonNode waitForRun(long id) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            String body = mvc.perform(get("/api/archive/runs/{id}", id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode job = json.readTree(body);
+            if (!"RUNNING".equals(job.get("state").asText()) || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
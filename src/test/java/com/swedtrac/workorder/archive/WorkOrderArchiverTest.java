@@ -0,0 +1,85 @@
+package com.swedtrac.workorder.archive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kontrollen av arkivtabellerna, mot en egen H2-databas där schemat inte stämmer.
+ */
+class WorkOrderArchiverTest {
+
+    private DriverManagerDataSource dataSource;
+    private WorkOrderArchiver archiver;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:arkivschema;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE work_orders (id BIGINT PRIMARY KEY, status VARCHAR(30), archived_at TIMESTAMP, track VARCHAR(20))");
+        jdbc.execute("CREATE TABLE work_orders_archive (id BIGINT PRIMARY KEY, status VARCHAR(30), archived_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE work_order_material_entries (id BIGINT PRIMARY KEY, work_order_id BIGINT)");
+        jdbc.execute("CREATE TABLE work_order_material_entries_archive (id BIGINT PRIMARY KEY, work_order_id BIGINT)");
+        // work_order_time_entries finns inte alls
+        archiver = new WorkOrderArchiver(new DataSourceTransactionManager(dataSource), dataSource, 365, 500, 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        archiver.shutdown();
+        new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void missingArchiveColumnsFailTheRunInsteadOfDroppingData() throws Exception {
+        // vid start loggas felet; applikationen startar ändå
+        archiver.verifySchema();
+
+        ArchiveJob job = waitFor(archiver.start().orElseThrow().id());
+
+        assertThat(job.state()).isEqualTo(ArchiveJob.State.FAILED);
+        assertThat(job.result()).isNull();
+        assertThat(job.error())
+                .contains("work_orders_archive saknar [track]")
+                .contains("work_order_time_entries hittades inte")
+                .doesNotContain("work_order_material_entries");
+        // kolumnlistorna sparas inte efter ett fel: nästa körning kontrollerar schemat igen
+        new JdbcTemplate(dataSource).execute("ALTER TABLE work_orders_archive ADD COLUMN track VARCHAR(20)");
+        ArchiveJob next = waitFor(archiver.start().orElseThrow().id());
+        assertThat(next.state()).isEqualTo(ArchiveJob.State.FAILED);
+        assertThat(next.error()).isEqualTo("work_order_time_entries hittades inte");
+    }
+
+    @Test
+    void tableNamesAreMatchedExactlyNotAsPatterns() throws Exception {
+        // "_" i work_order_time_entries matchar vilket tecken som helst i ett LIKE-mönster
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE work0order_time_entries (id BIGINT PRIMARY KEY, work_order_id BIGINT)");
+        jdbc.execute("CREATE TABLE work_orders0archive (id BIGINT PRIMARY KEY, track VARCHAR(20))");
+
+        ArchiveJob job = waitFor(archiver.start().orElseThrow().id());
+
+        assertThat(job.state()).isEqualTo(ArchiveJob.State.FAILED);
+        assertThat(job.error())
+                .contains("work_orders_archive saknar [track]")
+                .contains("work_order_time_entries hittades inte");
+    }
+
+    private ArchiveJob waitFor(long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        Optional<ArchiveJob> job = archiver.job(id);
+        while (job.orElseThrow().state() == ArchiveJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            job = archiver.job(id);
+        }
+        return job.orElseThrow();
+    }
+}
@@ -0,0 +1,59 @@
+package com.swedtrac.workorder.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CacheStatsControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void statisticsAreOffByDefaultAndReportedAsOff() throws Exception {
+        assertThat(statistics().isStatisticsEnabled()).isFalse();
+
+        mvc.perform(get("/api/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.secondLevelCacheEnabled").value(true))
+                .andExpect(jsonPath("$.statisticsEnabled").value(false))
+                .andExpect(jsonPath("$.regions").isEmpty())
+                .andExpect(jsonPath("$.queries").value(nullValue()));
+    }
+
+    @Test
+    void enabledStatisticsListRegions() throws Exception {
+        Statistics statistics = statistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            mvc.perform(get("/api/cache/stats"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.statisticsEnabled").value(true))
+                    .andExpect(jsonPath("$.regions[*].name").value(hasItem("com.swedtrac.workorder.domain.WorkOrder")))
+                    .andExpect(jsonPath("$.queries.name").value("queries"));
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
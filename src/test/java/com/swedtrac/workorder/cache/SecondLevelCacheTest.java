@@ -0,0 +1,139 @@
+package com.swedtrac.workorder.cache;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.repository.TimeEntryRow;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderTimeEntryRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Att andra läsningen av en order och dess rader besvaras ur second-level- och frågecachen
+ * utan SQL, och att en ändring bara tar bort den ändrade ordern ur cachen.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private WorkOrderRepository workOrderRepository;
+
+    @Autowired
+    private WorkOrderTimeEntryRepository timeEntryRepository;
+
+    private Statistics statistics;
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        cache = entityManagerFactory.getCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void secondFindByIdIsServedFromCacheWithoutSql() {
+        Long id = saveOrder();
+        cache.evict(WorkOrder.class, id);
+
+        inTransaction(() -> workOrderRepository.findById(id).orElseThrow());
+        assertThat(cache.contains(WorkOrder.class, id)).isTrue();
+
+        long statements = statistics.getPrepareStatementCount();
+        long hits = statistics.getSecondLevelCacheHitCount();
+        WorkOrder again = inTransaction(() -> workOrderRepository.findById(id).orElseThrow());
+
+        assertThat(again.getId()).isEqualTo(id);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(hits);
+    }
+
+    @Test
+    void secondEntryQueryIsServedFromQueryCache() throws Exception {
+        Long id = saveOrder();
+        saveTimeEntry(id, "Bromsbelägg");
+
+        inTransaction(() -> timeEntryRepository.findByWorkOrderIdOrderByIdAsc(id));
+        long statements = statistics.getPrepareStatementCount();
+        long queryHits = statistics.getQueryCacheHitCount();
+
+        assertThat(inTransaction(() -> timeEntryRepository.findByWorkOrderIdOrderByIdAsc(id))).hasSize(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(queryHits + 1);
+
+        // ändrade rader gör den cachade listan ogiltig
+        saveTimeEntry(id, "Hjul");
+        assertThat(inTransaction(() -> timeEntryRepository.findByWorkOrderIdOrderByIdAsc(id)))
+                .extracting(TimeEntryRow::action).containsExactly("Hjul");
+    }
+
+    @Test
+    void savingEntriesEvictsOnlyThatOrder() throws Exception {
+        Long changed = saveOrder();
+        Long other = saveOrder();
+        inTransaction(() -> workOrderRepository.findAllById(List.of(changed, other)));
+        assertThat(cache.contains(WorkOrder.class, changed)).isTrue();
+        assertThat(cache.contains(WorkOrder.class, other)).isTrue();
+
+        // summorna skrivs med SQL förbi Hibernate; bara den ordern tas bort ur cachen
+        saveTimeEntry(changed, "Bromsbelägg");
+
+        assertThat(cache.contains(WorkOrder.class, changed)).isFalse();
+        assertThat(cache.contains(WorkOrder.class, other)).isTrue();
+        assertThat(inTransaction(() -> workOrderRepository.findById(changed).orElseThrow()).getHours()).isEqualTo(2.0);
+    }
+
+    private Long saveOrder() {
+        WorkOrder wo = new WorkOrder();
+        wo.setOrderNumber("C-" + UUID.randomUUID());
+        wo.setTitle("Bromsar");
+        wo.setCustomer("SJ");
+        return workOrderRepository.save(wo).getId();
+    }
+
+    // ersätter orderns tidrader med en enda rad
+    private void saveTimeEntry(Long workOrderId, String action) throws Exception {
+        mvc.perform(post("/api/workorders/{id}/time-entries", workOrderId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"action\":\"" + action + "\",\"work\":\"Byte\",\"hours\":2.0,\"rate\":500.0}]"))
+                .andExpect(status().isOk());
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+}
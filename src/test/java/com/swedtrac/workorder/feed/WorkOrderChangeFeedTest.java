@@ -0,0 +1,141 @@
+package com.swedtrac.workorder.feed;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WorkOrderChangeFeedTest {
+
+    // lång flush-period: testerna går mot loggen, inte mot SSE
+    private final WorkOrderChangeFeed feed = new WorkOrderChangeFeed(60_000, 5, 1_000);
+
+    @AfterEach
+    void close() {
+        feed.close();
+    }
+
+    @Test
+    void sinceReturnsOneChangePerOrderInCommitOrder() {
+        String start = feed.token();
+        feed.publish(updated(1, 2));
+        feed.publish(List.of(updated(2, 5), updated(1, 3)));
+
+        ChangeSet changes = feed.since(start, 10);
+
+        assertThat(changes.reset()).isFalse();
+        assertThat(changes.more()).isFalse();
+        assertThat(changes.token()).isEqualTo(feed.token()).isNotEqualTo(start);
+        assertThat(changes.changes()).extracting(WorkOrderChange::id, WorkOrderChange::version)
+                .containsExactly(tuple(2L, 5L), tuple(1L, 3L));
+        assertThat(feed.since(changes.token(), 10).changes()).isEmpty();
+    }
+
+    @Test
+    void limitGivesContinuationToken() {
+        String start = feed.token();
+        feed.publish(List.of(updated(1, 1), updated(2, 1), updated(3, 1)));
+
+        ChangeSet first = feed.since(start, 2);
+        assertThat(first.more()).isTrue();
+        assertThat(first.changes()).extracting(WorkOrderChange::id).containsExactly(1L, 2L);
+
+        ChangeSet rest = feed.since(first.token(), 2);
+        assertThat(rest.more()).isFalse();
+        assertThat(rest.changes()).extracting(WorkOrderChange::id).containsExactly(3L);
+        assertThat(rest.token()).isEqualTo(feed.token());
+    }
+
+    @Test
+    void unknownForeignOrFutureTokensGiveReset() {
+        feed.publish(updated(1, 1));
+        String current = feed.token();
+        String seq = current.substring(current.lastIndexOf('-') + 1);
+
+        for (String token : new String[]{null, "", "skräp", "annanstart-" + seq, current + "x",
+                current.substring(0, current.lastIndexOf('-') + 1) + "99"}) {
+            ChangeSet changes = feed.since(token, 10);
+            assertThat(changes.reset()).as(token).isTrue();
+            assertThat(changes.token()).isEqualTo(current);
+            assertThat(changes.changes()).isEmpty();
+        }
+    }
+
+    @Test
+    void tokenOlderThanLogGivesReset() {
+        String start = feed.token();
+        // loggen rymmer fem ordrar; den sjätte tränger ut den första
+        for (long id = 1; id <= 6; id++) feed.publish(updated(id, 1));
+
+        assertThat(feed.since(start, 10).reset()).isTrue();
+        String afterFirst = start.substring(0, start.lastIndexOf('-') + 1) + 1;
+        assertThat(feed.since(afterFirst, 10).changes()).extracting(WorkOrderChange::id)
+                .containsExactly(2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    void sameOrderChangedRepeatedlyKeepsOneLogEntry() {
+        String start = feed.token();
+        for (long v = 1; v <= 20; v++) feed.publish(updated(1, v));
+
+        ChangeSet changes = feed.since(start, 10);
+        assertThat(changes.reset()).isFalse();
+        assertThat(changes.changes()).extracting(WorkOrderChange::version).containsExactly(20L);
+    }
+
+    @Test
+    void changesInTransactionAreRecordedOnlyAfterCommit() {
+        String start = feed.token();
+        List<List<WorkOrderChange>> heard = new ArrayList<>();
+        feed.addListener(heard::add);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            feed.publish(updated(1, 1));
+            assertThat(feed.token()).isEqualTo(start);
+            assertThat(heard).isEmpty();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(feed.since(start, 10).changes()).extracting(WorkOrderChange::id).containsExactly(1L);
+        assertThat(heard).containsExactly(List.of(updated(1, 1)));
+    }
+
+    @Test
+    void failingListenerDoesNotStopOthers() {
+        List<WorkOrderChange> heard = new ArrayList<>();
+        feed.addListener(changes -> {
+            throw new IllegalStateException("trasig");
+        });
+        feed.addListener(heard::addAll);
+
+        feed.publish(updated(7, 1));
+
+        assertThat(heard).containsExactly(updated(7, 1));
+    }
+
+    @Test
+    void mergeKeepsCreatedUnlessDeleted() {
+        WorkOrderChange created = new WorkOrderChange(1L, WorkOrderChange.Type.CREATED, 0L, WorkOrderStatus.OPEN);
+        WorkOrderChange status = new WorkOrderChange(1L, WorkOrderChange.Type.STATUS, 1L, WorkOrderStatus.IN_PROGRESS);
+        WorkOrderChange deleted = new WorkOrderChange(1L, WorkOrderChange.Type.DELETED, null, null);
+
+        assertThat(created.merge(status))
+                .isEqualTo(new WorkOrderChange(1L, WorkOrderChange.Type.CREATED, 1L, WorkOrderStatus.IN_PROGRESS));
+        assertThat(created.merge(deleted)).isEqualTo(deleted);
+        assertThat(status.merge(updated(1, 2))).isEqualTo(updated(1, 2));
+    }
+
+    private static WorkOrderChange updated(long id, long version) {
+        return new WorkOrderChange(id, WorkOrderChange.Type.UPDATED, version, WorkOrderStatus.OPEN);
+    }
+}
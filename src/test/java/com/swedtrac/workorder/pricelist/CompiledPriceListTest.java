@@ -0,0 +1,110 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledPriceListTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsThroughMappedFile() throws IOException {
+        List<PriceItem> items = List.of(
+                item("12 34 567", "Hydraulolja 46", 85.5, "L"),
+                item("NAME:Bromsbelägg", "Bromsbelägg", 0, "sats"),
+                item("99 00 001", "Kolborste ÅÄÖ", 1234.25, "st"));
+        List<String> keys = items.stream().map(i -> PriceListService.normalize(i.getEmNr())).toList();
+        byte[] hash = new byte[32];
+        Arrays.fill(hash, (byte) 7);
+
+        Path file = dir.resolve("prislista.swpl");
+        CompiledPriceList.write(CompiledPriceList.compile(keys, items, hash), file);
+        CompiledPriceList compiled = CompiledPriceList.map(file);
+
+        assertThat(compiled.itemCount()).isEqualTo(3);
+        assertThat(compiled.hasSourceHash(hash)).isTrue();
+        assertThat(compiled.hasSourceHash(new byte[32])).isFalse();
+        for (int ord = 0; ord < items.size(); ord++) {
+            PriceItem expected = items.get(ord);
+            assertThat(compiled.string(compiled.keyRef(ord))).isEqualTo(keys.get(ord));
+            assertThat(compiled.string(compiled.emNrRef(ord))).isEqualTo(expected.getEmNr());
+            assertThat(compiled.string(compiled.nameRef(ord))).isEqualTo(expected.getName());
+            assertThat(compiled.string(compiled.unitRef(ord))).isEqualTo(expected.getUnit());
+            assertThat(compiled.string(compiled.sheetRef(ord))).isEqualTo("Prislista");
+            assertThat(compiled.price(ord)).isEqualTo(expected.getPrice());
+        }
+    }
+
+    @Test
+    void findsEveryKeyIncludingHashCollisions() throws IOException {
+        List<String> keys = new ArrayList<>(List.of("AA", "BB", "Aa"));   // "Aa" och "BB" har samma hashCode
+        for (int i = 0; i < 1000; i++) keys.add("EM " + i);
+        List<PriceItem> items = keys.stream().map(k -> item(k, "Artikel " + k, 1, "st")).toList();
+        CompiledPriceList compiled = CompiledPriceList.of(CompiledPriceList.compile(keys, items, null));
+
+        for (int ord = 0; ord < keys.size(); ord++) {
+            assertThat(compiled.find(keys.get(ord))).isEqualTo(ord);
+        }
+        assertThat(compiled.find("EM 1000")).isEqualTo(-1);
+        assertThat(compiled.find("")).isEqualTo(-1);
+        assertThat(CompiledPriceList.of(CompiledPriceList.compile(List.of(), List.of(), null)).find("AA")).isEqualTo(-1);
+    }
+
+    @Test
+    void keyOrderIsSortedByUnsignedUtf8Bytes() throws IOException {
+        List<String> keys = List.of("Ö 1", "B", "12", "A 2", "Å", "A");
+        List<PriceItem> items = keys.stream().map(k -> item(k, k, 1, "st")).toList();
+        CompiledPriceList compiled = CompiledPriceList.of(CompiledPriceList.compile(keys, items, null));
+
+        List<String> ordered = new ArrayList<>();
+        for (int i = 0; i < compiled.itemCount(); i++) {
+            ordered.add(compiled.string(compiled.keyRef(compiled.keyOrder(i))));
+        }
+        assertThat(ordered).containsExactly("12", "A", "A 2", "B", "Å", "Ö 1");
+        assertThat(compiled.compareKey(keys.indexOf("Å"), "Ö".getBytes(StandardCharsets.UTF_8))).isNegative();
+        assertThat(compiled.keyStartsWith(keys.indexOf("A 2"), "A ".getBytes(StandardCharsets.UTF_8))).isTrue();
+    }
+
+    @Test
+    void storesRepeatedStringsOnce() throws IOException {
+        List<String> keys = List.of("1", "2", "3");
+        List<PriceItem> items = keys.stream().map(k -> item(k, "Samma namn", 1, "st")).toList();
+        CompiledPriceList compiled = CompiledPriceList.of(CompiledPriceList.compile(keys, items, null));
+
+        assertThat(compiled.nameRef(0)).isEqualTo(compiled.nameRef(1)).isEqualTo(compiled.nameRef(2));
+        assertThat(compiled.unitRef(0)).isEqualTo(compiled.unitRef(2));
+    }
+
+    @Test
+    void rejectsForeignOldOrTruncatedData() {
+        ByteBuffer valid = CompiledPriceList.compile(List.of("A"), List.of(item("A", "A", 1, "st")), null);
+
+        ByteBuffer foreign = copy(valid);
+        foreign.putInt(0, 0x504B0304);
+        assertThatThrownBy(() -> CompiledPriceList.of(foreign)).isInstanceOf(IOException.class);
+
+        ByteBuffer older = copy(valid);
+        older.putInt(4, CompiledPriceList.FORMAT_VERSION - 1);
+        assertThatThrownBy(() -> CompiledPriceList.of(older)).isInstanceOf(IOException.class);
+
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(valid.array(), valid.capacity() - 4));
+        assertThatThrownBy(() -> CompiledPriceList.of(truncated)).isInstanceOf(IOException.class);
+    }
+
+    private static ByteBuffer copy(ByteBuffer buf) {
+        return ByteBuffer.wrap(buf.array().clone());
+    }
+}
@@ -0,0 +1,46 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FuzzyIndexTest {
+
+    // normaliserade nycklar och namn, index = ordinal
+    private final FuzzyIndex index = new FuzzyIndex(
+            new String[]{"12 34 567", "12 34 568", "99 00 001", "12 34 500"},
+            new PackedStrings(new String[]{
+                    "HYDRAULOLJA 46",       // 0
+                    "BROMSBELÄGG FRAM",     // 1
+                    "HYDRAULSLANG",         // 2
+                    "OLJA HYDRAULOLJA"      // 3: samma ord två gånger i samma artikel
+            }));
+
+    @Test
+    void findsKeysWithinDistanceClosestFirst() {
+        assertThat(index.search("12 34 567", 2, 10)).containsExactly(0, 1, 3);
+        assertThat(index.search("12 34 567", 1, 10)).containsExactly(0, 1);
+        assertThat(index.search("12 34 567", 0, 10)).containsExactly(0);
+    }
+
+    @Test
+    void findsMisspelledNameWords() {
+        assertThat(index.search("HYDRAULOLJE", 1, 10)).containsExactly(0, 3);
+        assertThat(index.search("BRMSBELÄG", 2, 10)).containsExactly(1);
+        assertThat(index.search("BRMSBELÄG", 1, 10)).isEmpty();
+    }
+
+    @Test
+    void shortNameWordsAreNotIndexed() {
+        assertThat(index.search("46", 0, 10)).isEmpty();
+    }
+
+    @Test
+    void distanceIsCappedAndLimitRespected() {
+        // "HYDRAUL" ligger 4 från "HYDRAULOLJA"; större maxDistance än 2 hjälper inte
+        assertThat(index.search("HYDRAUL", 5, 10)).isEmpty();
+        assertThat(index.search("12 34 567", 2, 2)).containsExactly(0, 1);
+        assertThat(index.search("", 2, 10)).isEmpty();
+        assertThat(index.search("12 34 567", 2, 0)).isEmpty();
+    }
+}
@@ -0,0 +1,52 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NameTrigramIndexTest {
+
+    // normaliserade namn, index = ordinal
+    private final NameTrigramIndex index = new NameTrigramIndex(new PackedStrings(new String[]{
+            "SKRUV M8 FÖRZINKAD",   // 0: ordbörjan
+            "FILTERHUS",            // 1: namnet börjar med frågan
+            "OLJEFILTER",           // 2: delsträng mitt i ord
+            "FILTER",               // 3: exakt
+            "",                     // 4: tomt namn
+            "LUFT FILTER STOR",     // 5: ordbörjan, längre in
+            "MUTTER M8",            // 6
+            "FILTXLTER"             // 7: har alla trigram i "FILTER", men inte i följd
+    }));
+
+    @Test
+    void ranksExactThenPrefixThenWordStartThenSubstring() {
+        assertThat(index.search("FILTER", 10)).containsExactly(3, 1, 5, 2);
+    }
+
+    @Test
+    void verifiesCandidatesSoScatteredTrigramsDoNotMatch() {
+        assertThat(index.search("FILTER", 10)).doesNotContain(7);
+        assertThat(index.search("XLTER", 10)).containsExactly(7);
+    }
+
+    @Test
+    void twoCharacterQueriesUseBigramsAndMatchAnywhereInTheName() {
+        // två tecken har inget trigram; "M8" står mitt i namnen
+        assertThat(index.search("M8", 10)).containsExactlyInAnyOrder(0, 6);
+        assertThat(index.search("LT", 10)).containsExactly(3, 1, 7, 2, 5);
+        assertThat(index.search("QZ", 10)).isEmpty();
+    }
+
+    @Test
+    void singleCharacterQueriesGiveNoNameHits() {
+        // ett tecken matchar nästan allt; det får EM-prefixindexet svara på
+        assertThat(index.search("F", 10)).isEmpty();
+    }
+
+    @Test
+    void respectsLimitAndIgnoresEmptyQueries() {
+        assertThat(index.search("FILTER", 2)).containsExactly(3, 1);
+        assertThat(index.search("", 10)).isEmpty();
+        assertThat(index.search("FILTER", 0)).isEmpty();
+    }
+}
@@ -0,0 +1,50 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.snapshot;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    private final PriceListSnapshot snap = snapshot(1,
+            item("12 40 300", "Filter", 120, "st"),
+            item("12 34 567", "Hydraulolja", 85, "L"),
+            item("12 34", "Packning", 10, "st"),
+            item("12 34 500", "Bromsbelägg", 900, "sats"),
+            item("99 00 001", "Kabel", 30, "m"),
+            item("ÖVRIGT 1", "Frakt", 500, "st"));
+
+    @Test
+    void returnsMatchingKeysInKeyOrderWithExactKeyFirst() {
+        assertThat(keys(snap.prefixIndex().collect("12 34", 10)))
+                .containsExactly("12 34", "12 34 500", "12 34 567");
+    }
+
+    @Test
+    void respectsLimit() {
+        assertThat(keys(snap.prefixIndex().collect("12", 2))).containsExactly("12 34", "12 34 500");
+    }
+
+    @Test
+    void noMatchBetweenKeysOrPastTheLastKey() {
+        assertThat(snap.prefixIndex().collect("12 35", 10)).isEmpty();
+        assertThat(snap.prefixIndex().collect("ÖVRIGT 2", 10)).isEmpty();
+        assertThat(snap.prefixIndex().collect("12 34 567 8", 10)).isEmpty();
+    }
+
+    @Test
+    void nonAsciiKeysSortAfterAsciiLikeTheirUtf8Bytes() {
+        assertThat(keys(snap.prefixIndex().collect("", 10)))
+                .containsExactly("12 34", "12 34 500", "12 34 567", "12 40 300", "99 00 001", "ÖVRIGT 1");
+        assertThat(keys(snap.prefixIndex().collect("ÖV", 10))).containsExactly("ÖVRIGT 1");
+    }
+
+    private List<String> keys(int[] ords) {
+        return Arrays.stream(ords).mapToObj(snap::itemKey).toList();
+    }
+}
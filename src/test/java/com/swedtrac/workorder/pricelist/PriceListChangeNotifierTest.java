@@ -0,0 +1,71 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.snapshot;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PriceListChangeNotifierTest {
+
+    private final ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+
+    private final PriceListSnapshot previous = snapshot(1,
+            item("12 34", "Filter", 100, "st"),
+            item("56 78", "Olja", 50, "L"),
+            item("90 12", "Kabel", 20, "m"));
+    private final PriceListSnapshot next = snapshot(2,
+            item("56 78", "Olja", 55, "L"),
+            item("90 12", "Kabel 2,5", 20, "m"),
+            item("34 56", "Lampa", 75, "st"));
+
+    @Test
+    void publishesChangedKeysPerCategory() {
+        new PriceListChangeNotifier(events, 10).onReload(PriceListDiff.between(previous, next));
+
+        PriceListChanged change = published();
+        assertThat(change.getFromVersion()).isEqualTo(1);
+        assertThat(change.getVersion()).isEqualTo(2);
+        assertThat(change.isFullReload()).isFalse();
+        assertThat(change.getAdded()).containsExactly("34 56");
+        assertThat(change.getRemoved()).containsExactly("12 34");
+        assertThat(change.getRepriced()).containsExactly("56 78");
+        assertThat(change.getChanged()).containsExactly("90 12");
+    }
+
+    @Test
+    void tooManyKeysBecomesFullReloadWithoutKeys() {
+        // fyra ändrade nycklar, taket är tre
+        new PriceListChangeNotifier(events, 3).onReload(PriceListDiff.between(previous, next));
+
+        PriceListChanged change = published();
+        assertThat(change.isFullReload()).isTrue();
+        assertThat(change.getVersion()).isEqualTo(2);
+        assertThat(change.getAdded()).isEmpty();
+        assertThat(change.getRemoved()).isEmpty();
+        assertThat(change.getRepriced()).isEmpty();
+        assertThat(change.getChanged()).isEmpty();
+    }
+
+    @Test
+    void emptyDiffPublishesNothing() {
+        new PriceListChangeNotifier(events, 10).onReload(PriceListDiff.between(previous, snapshot(2,
+                item("12 34", "Filter", 100, "st"),
+                item("56 78", "Olja", 50, "L"),
+                item("90 12", "Kabel", 20, "m"))));
+
+        verify(events, never()).publishEvent(any(Object.class));
+    }
+
+    private PriceListChanged published() {
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(events).publishEvent(event.capture());
+        return (PriceListChanged) event.getValue();
+    }
+}
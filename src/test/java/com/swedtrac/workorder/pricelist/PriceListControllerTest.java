@@ -0,0 +1,127 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PriceListControllerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path workbook;
+    private PriceListService service;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workbook = dir.resolve("prislista.xlsx");
+        PriceListServiceTest.writeWorkbook(workbook, 0, 20, i -> 10 + i);
+        service = new PriceListService("file:" + workbook, false, 0, "streaming", 1,
+                dir.resolve("prislista.swpl").toString(), event -> { });
+        service.load();
+        mvc = MockMvcBuilders.standaloneSetup(new PriceListController(service)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void batchLookupAnswersInRequestOrderAgainstOneVersion() throws Exception {
+        mvc.perform(post("/api/pricelist/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"em  3\", \"EM 99\", \"EM 12\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.results.length()").value(3))
+                .andExpect(jsonPath("$.results[0].emNr").value("em  3"))
+                .andExpect(jsonPath("$.results[0].found").value(true))
+                .andExpect(jsonPath("$.results[0].item.price").value(13.0))
+                .andExpect(jsonPath("$.results[1].found").value(false))
+                .andExpect(jsonPath("$.results[1].item").value(nullValue()))
+                .andExpect(jsonPath("$.results[2].item.name").value("Artikel 12"));
+    }
+
+    @Test
+    void batchLookupNeverFallsBackToName() throws Exception {
+        // "Artikel 3" är ett namn, inte ett EM-nummer
+        mvc.perform(post("/api/pricelist/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Artikel 3\", \"EM\", \"em 3\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].found").value(false))
+                .andExpect(jsonPath("$.results[1].found").value(false))
+                .andExpect(jsonPath("$.results[2].item.emNr").value("EM 3"));
+    }
+
+    @Test
+    void singleLookupFallsBackToBestNameMatch() throws Exception {
+        mvc.perform(get("/api/pricelist/{emNr}", "EM 3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.emNr").value("EM 3"));
+        mvc.perform(get("/api/pricelist/{emNr}", "Artikel 3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.emNr").value("EM 3"));
+        mvc.perform(get("/api/pricelist/{emNr}", "Okänd"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void unchangedPriceListAnswersNotModified() throws Exception {
+        String etag = mvc.perform(get("/api/pricelist/{emNr}", "EM 3"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isEqualTo(service.getSnapshot().getETag());
+
+        mvc.perform(get("/api/pricelist/{emNr}", "EM 3").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        // samma ETag gäller alla uppslag mot samma version, även missar och sökningar
+        mvc.perform(get("/api/pricelist/{emNr}", "EM 99").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/pricelist/search").param("prefix", "EM 1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/pricelist/fuzzy").param("q", "EM 1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void reloadWithNewPricesChangesETag() throws Exception {
+        String etag = service.getSnapshot().getETag();
+        PriceListServiceTest.writeWorkbook(workbook, 0, 20, i -> 20 + i);
+        service.reload();
+
+        mvc.perform(get("/api/pricelist/{emNr}", "EM 3").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, service.getSnapshot().getETag()))
+                .andExpect(jsonPath("$.price").value(23.0));
+        assertThat(service.getSnapshot().getETag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    void batchLookupRejectsMoreThanLimit() throws Exception {
+        String body = "[" + String.join(",", Collections.nCopies(1001, "\"EM 1\"")) + "]";
+        mvc.perform(post("/api/pricelist/lookup").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isPayloadTooLarge());
+    }
+}
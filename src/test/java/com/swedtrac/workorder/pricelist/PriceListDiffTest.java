@@ -0,0 +1,66 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.snapshot;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceListDiffTest {
+
+    @Test
+    void reportsAddedRemovedAndRepricedKeys() {
+        PriceListSnapshot previous = snapshot(1,
+                item("12 34", "Filter", 100, "st"),
+                item("56 78", "Olja", 50, "L"),
+                item("90 12", "Kabel", 20, "m"));
+        PriceListSnapshot next = snapshot(2,
+                item("56 78", "Olja", 55, "L"),
+                item("90 12", "Kabel", 20, "m"),
+                item("34 56", "Lampa", 75, "st"));
+
+        PriceListDiff diff = PriceListDiff.between(previous, next);
+
+        assertThat(diff.getFromVersion()).isEqualTo(1);
+        assertThat(diff.getToVersion()).isEqualTo(2);
+        assertThat(diff.getAdded()).containsExactly("34 56");
+        assertThat(diff.getRemoved()).containsExactly("12 34");
+        assertThat(diff.getRepriced()).containsExactly("56 78");
+        assertThat(diff.isEmpty()).isFalse();
+    }
+
+    @Test
+    void identicalListsGiveEmptyDiff() {
+        PriceListSnapshot previous = snapshot(1, item("12 34", "Filter", 100, "st"));
+        PriceListSnapshot next = snapshot(2, item("12 34", "Filter", 100, "st"));
+
+        assertThat(PriceListDiff.between(previous, next).isEmpty()).isTrue();
+    }
+
+    @Test
+    void reportsNameAndUnitChangesSeparatelyFromPrice() {
+        PriceListSnapshot previous = snapshot(1,
+                item("12 34", "Filter", 100, "st"),
+                item("56 78", "Olja", 50, "L"),
+                item("90 12", "Kabel", 20, "m"));
+        PriceListSnapshot next = snapshot(2,
+                item("12 34", "Filter, stort", 100, "st"),
+                item("56 78", "Olja", 50, "dunk"),
+                item("90 12", "Kabel 2,5", 25, "m"));
+
+        PriceListDiff diff = PriceListDiff.between(previous, next);
+
+        assertThat(diff.getChanged()).containsExactly("12 34", "56 78", "90 12");
+        assertThat(diff.getRepriced()).containsExactly("90 12");
+        assertThat(diff.getAdded()).isEmpty();
+        assertThat(diff.getRemoved()).isEmpty();
+    }
+
+    @Test
+    void keysAreComparedNormalized() {
+        PriceListSnapshot previous = snapshot(1, item("12  34", "Filter", 100, "st"));
+        PriceListSnapshot next = snapshot(2, item("12 34 ", "Filter", 100, "st"));
+
+        assertThat(PriceListDiff.between(previous, next).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,40 @@
+package com.swedtrac.workorder.pricelist;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Små prislistor för tester, byggda som vid inläsning: via {@link PriceListSnapshot.Builder}
+ * (samma dubblettregler) och kompilerade till binärformatet.
+ */
+final class PriceListFixtures {
+
+    private PriceListFixtures() {
+    }
+
+    static PriceItem item(String emNr, String name, double price, String unit) {
+        PriceItem item = new PriceItem();
+        item.setEmNr(emNr);
+        item.setName(name);
+        item.setPrice(price);
+        item.setUnit(unit);
+        item.setSourceSheet("Prislista");
+        return item;
+    }
+
+    static PriceListSnapshot snapshot(long version, PriceItem... items) {
+        PriceListSnapshot.Builder builder = new PriceListSnapshot.Builder();
+        for (PriceItem item : items) {
+            builder.add(PriceListService.normalize(item.getEmNr()), item);
+        }
+        byte[] sourceHash = new byte[32];
+        Arrays.fill(sourceHash, (byte) version);
+        try {
+            return new PriceListSnapshot(version, Instant.now(), CompiledPriceList.of(builder.compile(sourceHash)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
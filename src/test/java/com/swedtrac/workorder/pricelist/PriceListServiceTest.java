@@ -0,0 +1,228 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntToDoubleFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceListServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<PriceListService> services = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        services.forEach(PriceListService::shutdown);
+    }
+
+    @Test
+    void sheetsParsedInParallelGiveSameListAsOneThread() throws IOException {
+        Path workbook = dir.resolve("flera-blad.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            for (int s = 0; s < 6; s++) {
+                Sheet sheet = wb.createSheet("Blad " + s);
+                header(sheet.createRow(0));
+                for (int i = 0; i < 200; i++) {
+                    Row row = sheet.createRow(i + 1);
+                    // nycklarna överlappar mellan bladen, och vartannat blad saknar pris för en del
+                    row.createCell(0).setCellValue("Artikel " + s + "-" + i);
+                    row.createCell(1).setCellValue("EM " + (i + s * 50));
+                    row.createCell(4).setCellValue(s % 2 == 0 && i % 3 == 0 ? 0 : 10 + i);
+                    row.createCell(5).setCellValue("st");
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(workbook)) {
+                wb.write(out);
+            }
+        }
+
+        List<String> oneThread = items(service(workbook, "streaming", 1, "en.swpl"));
+        List<String> parallel = items(service(workbook, "streaming", 4, "flera.swpl"));
+
+        assertThat(parallel).isNotEmpty().containsExactlyElementsOf(oneThread);
+    }
+
+    @Test
+    void startsFromCompiledFileWhileSourceIsUnchanged() throws IOException {
+        Path workbook = dir.resolve("prislista.xlsx");
+        writeWorkbook(workbook, 0, 50, i -> 10 + i);
+        Path compiled = dir.resolve("prislista.swpl");
+
+        List<String> parsed = items(service(workbook, "streaming", 1, "prislista.swpl"));
+        FileTime compiledAt = Files.getLastModifiedTime(compiled);
+
+        // en ny instans (t.ex. efter omstart) mappar filen i stället för att tolka om arbetsboken
+        PriceListService restarted = service(workbook, "streaming", 1, "prislista.swpl");
+        assertThat(items(restarted)).containsExactlyElementsOf(parsed);
+        assertThat(Files.getLastModifiedTime(compiled)).isEqualTo(compiledAt);
+        assertThat(restarted.findByArticleNumber("em 7")).isNotNull();
+
+        // ändrad källa: ny hash, så filen kompileras om
+        writeWorkbook(workbook, 0, 60, i -> 10 + i);
+        PriceListService changed = service(workbook, "streaming", 1, "prislista.swpl");
+        assertThat(changed.getSnapshot().getItemCount()).isEqualTo(60);
+    }
+
+    @Test
+    void fileChangeIsReloadedAndPublishedAsDiff() throws Exception {
+        Path workbook = dir.resolve("bevakad.xlsx");
+        writeWorkbook(workbook, 0, 50, i -> 10 + i);
+        List<Object> events = new CopyOnWriteArrayList<>();
+        PriceListService service = new PriceListService("file:" + workbook, true, 100, "streaming", 1,
+                dir.resolve("bevakad.swpl").toString(), events::add);
+        services.add(service);
+        service.load();
+        assertThat(service.getSnapshot().getVersion()).isEqualTo(1);
+
+        // ersätt filen som ett kopieringsverktyg gör: skriv vid sidan av och byt namn
+        Path next = dir.resolve("ny.tmp");
+        writeWorkbook(next, 5, 55, i -> i == 20 ? 999 : 10 + i);
+        Files.move(next, workbook, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // ögonblicksbilden byts innan diffen publiceras, så vänta på händelsen
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (events.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(service.getSnapshot().getVersion()).isEqualTo(2);
+        assertThat(service.findByArticleNumber("EM 54")).isNotNull();
+        assertThat(service.findByArticleNumber("EM 0")).isNull();
+
+        PriceListDiff diff = service.getLastDiff();
+        assertThat(events).containsExactly(diff);
+        assertThat(diff.getFromVersion()).isEqualTo(1);
+        assertThat(diff.getAdded()).containsExactly("EM 50", "EM 51", "EM 52", "EM 53", "EM 54");
+        assertThat(diff.getRemoved()).containsExactly("EM 0", "EM 1", "EM 2", "EM 3", "EM 4");
+        assertThat(diff.getRepriced()).containsExactly("EM 20");
+    }
+
+    @Test
+    void readersKeepTheirSnapshotWhileReloadsSwapInNewOnes() throws Exception {
+        Path workbook = dir.resolve("prislista.xlsx");
+        writeWorkbook(workbook, 0, 20, i -> 100 + i);
+        PriceListService service = service(workbook, "streaming", 1, "prislista.swpl");
+        PriceListSnapshot held = service.getSnapshot();
+
+        // läsare som hela tiden slår upp två artiklar mot samma ögonblicksbild: de ska alltid
+        // komma från samma generation (samma prisnivå), aldrig saknas och versionen aldrig gå bakåt
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> problems = new CopyOnWriteArrayList<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            while (!done.get()) {
+                PriceListSnapshot snap = service.getSnapshot();
+                PriceItem a = service.findByArticleNumber(snap, "EM 3");
+                PriceItem b = service.findByArticleNumber(snap, "EM 7");
+                if (a == null || b == null) problems.add("saknas i version " + snap.getVersion());
+                else if (a.getPrice() - 3 != b.getPrice() - 7) problems.add("blandade priser i version " + snap.getVersion());
+                if (snap.getVersion() < lastVersion) problems.add("version " + snap.getVersion() + " efter " + lastVersion);
+                lastVersion = snap.getVersion();
+            }
+        });
+        reader.start();
+        for (int round = 1; round <= 6; round++) {
+            int level = 100 * (round + 1);
+            writeWorkbook(workbook, 0, 20, i -> level + i);
+            service.reload();
+        }
+        done.set(true);
+        reader.join(10_000);
+
+        assertThat(problems).isEmpty();
+        assertThat(service.getSnapshot().getVersion()).isEqualTo(7);
+        assertThat(service.findByArticleNumber("EM 3").getPrice()).isEqualTo(703.0);
+        // en läsare som höll kvar den första bilden ser fortfarande den, trots att filen bakom bytts ut
+        assertThat(held.getVersion()).isEqualTo(1);
+        assertThat(service.findByArticleNumber(held, "EM 3").getPrice()).isEqualTo(103.0);
+    }
+
+    @Test
+    void eTagFollowsSourceAndFormatAndSearchVersions() throws IOException {
+        Path workbook = dir.resolve("prislista.xlsx");
+        writeWorkbook(workbook, 0, 10, i -> 10 + i);
+        PriceListSnapshot first = service(workbook, "streaming", 1, "prislista.swpl").getSnapshot();
+
+        // samma källa efter omstart ger samma ETag, trots att versionsnumret börjar om
+        assertThat(service(workbook, "streaming", 1, "prislista.swpl").getSnapshot().getETag())
+                .isEqualTo(first.getETag());
+        assertThat(first.getETag())
+                .startsWith("\"" + first.getSourceHash().substring(0, 32))
+                .endsWith("-" + CompiledPriceList.FORMAT_VERSION + "." + PriceListSnapshot.SEARCH_VERSION + "\"");
+
+        writeWorkbook(workbook, 0, 10, i -> 20 + i);
+        assertThat(service(workbook, "streaming", 1, "prislista.swpl").getSnapshot().getETag())
+                .isNotEqualTo(first.getETag());
+    }
+
+    @Test
+    void unchangedSourceIsNotRepublished() throws IOException {
+        Path workbook = dir.resolve("prislista.xlsx");
+        writeWorkbook(workbook, 0, 10, i -> 10 + i);
+        List<Object> events = new ArrayList<>();
+        PriceListService service = new PriceListService("file:" + workbook, false, 0, "streaming", 1,
+                dir.resolve("prislista.swpl").toString(), events::add);
+        services.add(service);
+        service.load();
+
+        service.reload();
+
+        assertThat(service.getSnapshot().getVersion()).isEqualTo(1);
+        assertThat(service.getLastDiff()).isNull();
+        assertThat(events).isEmpty();
+    }
+
+    // rader from..to-1 med EM-nummer "EM i" och pris price(i)
+    static void writeWorkbook(Path file, int from, int to, IntToDoubleFunction price) throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Prislista");
+            header(sheet.createRow(0));
+            for (int i = from; i < to; i++) {
+                Row row = sheet.createRow(i - from + 1);
+                row.createCell(0).setCellValue("Artikel " + i);
+                row.createCell(1).setCellValue("EM " + i);
+                row.createCell(4).setCellValue(price.applyAsDouble(i));
+                row.createCell(5).setCellValue("st");
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                wb.write(out);
+            }
+        }
+    }
+
+    static void header(Row row) {
+        String[] titles = {"Material", "EM nr", "Art nr", "Pris inköp", "Pris till kund", "Enhet"};
+        for (int c = 0; c < titles.length; c++) row.createCell(c).setCellValue(titles[c]);
+    }
+
+    private PriceListService service(Path workbook, String loader, int threads, String compiledName) {
+        PriceListService service = new PriceListService("file:" + workbook, false, 0, loader, threads,
+                dir.resolve(compiledName).toString(), event -> { });
+        services.add(service);
+        service.load();
+        return service;
+    }
+
+    private static List<String> items(PriceListService service) {
+        List<String> items = new ArrayList<>();
+        service.getAllItems().forEach(item -> items.add(item.toString()));
+        return items;
+    }
+}
@@ -0,0 +1,64 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceListSnapshotBuilderTest {
+
+    @Test
+    void keepsFirstDuplicateButCountsEveryRow() throws IOException {
+        PriceListSnapshot.Builder builder = new PriceListSnapshot.Builder();
+        builder.add("A", item("A", "Första", 10, "st"));
+        builder.add("B", item("B", "Andra", 20, "st"));
+        builder.add("A", item("A", "Dubblett", 99, "st"));
+
+        assertThat(builder.size()).isEqualTo(3);
+        assertThat(builder.keyCount()).isEqualTo(2);
+        assertThat(names(builder)).containsExactly("Första", "Andra");
+    }
+
+    @Test
+    void duplicateWithPriceReplacesOneWithoutAndMovesLast() throws IOException {
+        PriceListSnapshot.Builder builder = new PriceListSnapshot.Builder();
+        builder.add("A", item("A", "Utan pris", 0, "st"));
+        builder.add("B", item("B", "Andra", 20, "st"));
+        builder.add("A", item("A", "Med pris", 15, "st"));
+
+        assertThat(names(builder)).containsExactly("Andra", "Med pris");
+    }
+
+    @Test
+    void mergeInSheetOrderEqualsSequentialAdds() throws IOException {
+        PriceListSnapshot.Builder sequential = new PriceListSnapshot.Builder();
+        PriceListSnapshot.Builder first = new PriceListSnapshot.Builder();
+        PriceListSnapshot.Builder second = new PriceListSnapshot.Builder();
+        List<PriceItem> sheet1 = List.of(item("A", "A1", 0, "st"), item("B", "B1", 5, "st"), item("B", "B1 igen", 6, "st"));
+        List<PriceItem> sheet2 = List.of(item("C", "C2", 7, "st"), item("A", "A2", 8, "st"), item("B", "B2", 9, "st"));
+        sheet1.forEach(i -> sequential.add(i.getEmNr(), i));
+        sheet2.forEach(i -> sequential.add(i.getEmNr(), i));
+        sheet1.forEach(i -> first.add(i.getEmNr(), i));
+        sheet2.forEach(i -> second.add(i.getEmNr(), i));
+
+        PriceListSnapshot.Builder merged = new PriceListSnapshot.Builder();
+        merged.merge(first);
+        merged.merge(second);
+
+        assertThat(names(merged)).containsExactlyElementsOf(names(sequential));
+        assertThat(merged.size()).isEqualTo(sequential.size()).isEqualTo(6);
+        assertThat(merged.keyCount()).isEqualTo(sequential.keyCount()).isEqualTo(3);
+    }
+
+    private static List<String> names(PriceListSnapshot.Builder builder) throws IOException {
+        CompiledPriceList compiled = CompiledPriceList.of(builder.compile(null));
+        PriceListSnapshot snap = new PriceListSnapshot(1, null, compiled);
+        List<String> names = new ArrayList<>();
+        for (int ord = 0; ord < snap.getItemCount(); ord++) names.add(snap.name(ord));
+        return names;
+    }
+}
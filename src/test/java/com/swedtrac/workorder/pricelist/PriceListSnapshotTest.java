@@ -0,0 +1,59 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.item;
+import static com.swedtrac.workorder.pricelist.PriceListFixtures.snapshot;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ögonblicksbilden lagrar artiklarna kolumnvis; PriceItem-vyerna ska ge tillbaka samma värden som lästes in.
+ */
+class PriceListSnapshotTest {
+
+    private final List<PriceItem> items = List.of(
+            item("12 34 567", "Hydraulolja 46", 85.5, "L"),
+            item("99 00 001", "Kolborste ÅÄÖ", 1234.25, "st"),
+            item("NAME:Bromsbelägg", "Bromsbelägg", 0, "sats"),
+            item("55 66", "Kabel", 0.1 + 0.2, "m"));
+
+    @Test
+    void viewsRoundTripTheSameValuesInLoadOrder() {
+        PriceListSnapshot snap = snapshot(1, items.toArray(PriceItem[]::new));
+
+        assertThat(snap.getItemCount()).isEqualTo(items.size());
+        assertThat(snap.items()).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(items);
+        for (int ord = 0; ord < items.size(); ord++) {
+            PriceItem expected = items.get(ord);
+            assertThat(snap.get(PriceListService.normalize(expected.getEmNr())))
+                    .usingRecursiveComparison().isEqualTo(expected);
+            // priset lagras som double, utan avrundning
+            assertThat(snap.price(ord)).isEqualTo(expected.getPrice());
+        }
+    }
+
+    @Test
+    void everyViewIsANewObjectThatDoesNotWriteBack() {
+        PriceListSnapshot snap = snapshot(1, items.toArray(PriceItem[]::new));
+
+        PriceItem view = snap.get("12 34 567");
+        view.setPrice(1);
+        view.setName("Ändrad");
+
+        assertThat(snap.get("12 34 567")).isNotSameAs(view);
+        assertThat(snap.get("12 34 567").getPrice()).isEqualTo(85.5);
+        assertThat(snap.name(0)).isEqualTo("Hydraulolja 46");
+    }
+
+    @Test
+    void missingTextIsReadBackAsEmpty() {
+        PriceListSnapshot snap = snapshot(1, item("77 88", null, 12, null));
+
+        PriceItem view = snap.get("77 88");
+        assertThat(view.getName()).isEmpty();
+        assertThat(view.getUnit()).isEmpty();
+        assertThat(view.getPrice()).isEqualTo(12.0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.swedtrac.workorder.pricelist;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Strömmande SAX-läsning ska ge samma prislista som POI:s DOM-modell.
+ */
+class StreamingPriceWorkbookTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void bundledPriceListGivesSameItemsAsDomReader() throws IOException {
+        Path workbook = dir.resolve("prislista.xlsx");
+        try (InputStream in = getClass().getResourceAsStream("/prislista.xlsx")) {
+            assertThat(in).isNotNull();
+            Files.copy(in, workbook);
+        }
+
+        List<String> streaming = load(workbook, "streaming");
+        assertThat(streaming).isNotEmpty();
+        assertThat(streaming).containsExactlyElementsOf(load(workbook, "workbook"));
+    }
+
+    @Test
+    void formulasDatesAndTextPricesParseLikeDomReader() throws IOException {
+        Path workbook = dir.resolve("blandat.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle filled = wb.createCellStyle();
+            filled.setWrapText(true);
+
+            Sheet sheet = wb.createSheet("Material");
+            sheet.createRow(0).createCell(0).setCellValue("Prislista 2024");
+            header(sheet.createRow(2));
+            Row r = sheet.createRow(3);
+            r.createCell(0).setCellValue("Hydraulolja");
+            r.createCell(1).setCellValue(1234567);                    // numeriskt EM-nummer
+            r.createCell(3).setCellValue(80.5);
+            r.createCell(4).setCellFormula("D4*1.25");                // formel med cachat värde
+            r.createCell(5).setCellValue("L");
+            r = sheet.createRow(4);
+            r.createCell(0).setCellValue("  Bromsbelägg  ");
+            r.createCell(1).setCellValue("12 34 500");
+            r.createCell(4).setCellValue("1 234,50 kr");              // pris som text
+            r.createCell(5).setCellStyle(filled);                     // tom men formaterad cell
+            r.createCell(6).setCellValue(true);
+            r = sheet.createRow(5);
+            r.createCell(0).setCellValue("Leveransdag");
+            r.createCell(1).setCellValue("99 00 001");
+            r.createCell(3).setCellValue(LocalDate.of(2024, 3, 1));
+            r.getCell(3).setCellStyle(dateStyle);
+            r.createCell(4).setCellValue(150);
+            header(sheet.createRow(7));                               // upprepad rubrikrad
+            r = sheet.createRow(8);
+            r.createCell(0).setCellValue("Hydraulolja, dunk");
+            r.createCell(1).setCellValue(1234567);                    // dubblett: första behålls
+            r.createCell(4).setCellValue(999);
+
+            Sheet other = wb.createSheet("Tjänster");
+            r = other.createRow(0);
+            r.createCell(0).setCellValue("Frakt");
+            r.createCell(1).setCellValue("FR 1");
+            r.createCell(2).setCellValue(450);
+            r.createCell(3).setCellValue("st");
+
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            try (OutputStream out = Files.newOutputStream(workbook)) {
+                wb.write(out);
+            }
+        }
+
+        List<String> streaming = load(workbook, "streaming");
+        assertThat(streaming).containsExactlyElementsOf(load(workbook, "workbook"));
+        assertThat(streaming).anySatisfy(s -> assertThat(s).contains("emNr='1234567'", "price=100.625"));
+        assertThat(streaming).anySatisfy(s -> assertThat(s).contains("name='Bromsbelägg'", "price=1234.5"));
+        // bladet utan rubrikrad tolkas heuristiskt, men likadant av båda läsarna
+        assertThat(streaming).anySatisfy(s -> assertThat(s).contains("emNr='FR 1'", "sourceSheet='Tjänster'"));
+    }
+
+    private static void header(Row row) {
+        String[] titles = {"Material", "EM nr", "Art nr", "Pris inköp", "Pris till kund", "Enhet"};
+        for (int c = 0; c < titles.length; c++) row.createCell(c).setCellValue(titles[c]);
+    }
+
+    // Artiklarna i inläsningsordning; varje läsare får en egen kompilerad fil
+    private List<String> load(Path workbook, String loader) {
+        PriceListService service = new PriceListService("file:" + workbook, false, 0, loader, 2,
+                dir.resolve(loader + ".swpl").toString(), event -> { });
+        try {
+            service.load();
+            List<String> items = new ArrayList<>();
+            service.getAllItems().forEach(item -> items.add(item.toString()));
+            return items;
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderMaterialEntry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Id från poolade sekvenser (allocationSize 50): en sekvensfråga per 50 nya rader,
+ * och INSERT-satserna kan då skickas i JDBC-batchar.
+ */
+@SpringBootTest
+class PooledSequenceBatchTest {
+
+    private static final int ROWS = 60;
+
+    @Autowired
+    private WorkOrderRepository workOrderRepository;
+
+    @Autowired
+    private WorkOrderMaterialEntryRepository materialEntryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void batchedInsertsDrawConsecutiveIdsFromThePooledSequence() {
+        WorkOrder wo = new WorkOrder();
+        wo.setOrderNumber("T-" + UUID.randomUUID());
+        wo.setTitle("Materialbatch");
+        wo.setCustomer("SJ");
+        WorkOrder order = workOrderRepository.save(wo);
+        assertThat(sequence("increment")).isEqualTo(50);
+        long before = sequence("base_value");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        List<Long> ids;
+        long statements;
+        try {
+            long prepared = statistics.getPrepareStatementCount();
+            ids = new TransactionTemplate(transactionManager).execute(status -> {
+                List<WorkOrderMaterialEntry> rows = new ArrayList<>();
+                for (int i = 0; i < ROWS; i++) {
+                    WorkOrderMaterialEntry e = new WorkOrderMaterialEntry();
+                    e.setWorkOrder(order);
+                    e.setArticleNumber("EM " + i);
+                    e.setQuantity(1);
+                    e.setPrice(10);
+                    e.setTotal(10);
+                    rows.add(e);
+                }
+                return materialEntryRepository.saveAll(rows).stream().map(WorkOrderMaterialEntry::getId).toList();
+            });
+            statements = statistics.getPrepareStatementCount() - prepared;
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        // id:na kommer ur poolen i följd och sekvensen frågas en gång per 50 rader
+        // (Hibernate frågar två gånger första gången poolen används, därav högst tre)
+        assertThat(ids).containsExactlyElementsOf(LongStream.range(ids.get(0), ids.get(0) + ROWS).boxed().toList());
+        assertThat(sequence("base_value") - before).isBetween(50L, 150L);
+        // sekvensfrågor plus en INSERT per batch om 50, inte en sats per rad
+        assertThat(statements).isLessThan(10);
+    }
+
+    // H2:s bild av sekvensen (nästa värde respektive steg)
+    private long sequence(String column) {
+        return jdbc.queryForObject("SELECT " + column + " FROM information_schema.sequences WHERE sequence_name = ?",
+                Long.class, "work_order_material_entries_seq");
+    }
+}
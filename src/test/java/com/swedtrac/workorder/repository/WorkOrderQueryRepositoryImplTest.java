@@ -0,0 +1,108 @@
+package com.swedtrac.workorder.repository;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cachehanteringen runt status- och arkivbyten. UPDATE ... RETURNING går inte att köra mot H2,
+ * så EntityManager mockas och frågan "returnerar" den uppdaterade ordern.
+ */
+class WorkOrderQueryRepositoryImplTest {
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final Cache cache = mock(Cache.class);
+    private final Query query = mock(Query.class, RETURNS_SELF);
+    private final WorkOrderChangeFeed changeFeed = mock(WorkOrderChangeFeed.class);
+    private final WorkOrderQueryRepositoryImpl repository = new WorkOrderQueryRepositoryImpl(changeFeed);
+
+    @BeforeEach
+    void setUp() {
+        EntityManagerFactory factory = mock(EntityManagerFactory.class);
+        when(entityManager.getEntityManagerFactory()).thenReturn(factory);
+        when(factory.getCache()).thenReturn(cache);
+        when(entityManager.createNativeQuery(anyString(), eq(WorkOrder.class))).thenReturn(query);
+        ReflectionTestUtils.setField(repository, "entityManager", entityManager);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void statusChangeEvictsOnlyThatOrderNowAndAfterCommit() {
+        when(query.getResultList()).thenReturn(List.of(order(7L, 4L, WorkOrderStatus.COMPLETED)));
+
+        Optional<WorkOrder> updated = repository.updateStatus(7L, WorkOrderStatus.COMPLETED, 3L);
+
+        assertThat(updated).isPresent();
+        verify(cache).evict(WorkOrder.class, 7L);
+        afterCommit();
+        verify(cache, times(2)).evict(WorkOrder.class, 7L);
+        verify(cache, never()).evict(WorkOrder.class);
+        verify(cache, never()).evictAll();
+        verify(changeFeed).publish(new WorkOrderChange(7L, WorkOrderChange.Type.STATUS, 4L, WorkOrderStatus.COMPLETED));
+    }
+
+    @Test
+    void archiveEvictsOnlyThatOrder() {
+        when(query.getResultList()).thenReturn(List.of(order(8L, 2L, WorkOrderStatus.INVOICED)));
+
+        assertThat(repository.archive(8L, 1L)).isPresent();
+        afterCommit();
+
+        verify(cache, times(2)).evict(WorkOrder.class, 8L);
+        verify(cache, never()).evictAll();
+    }
+
+    @Test
+    void staleVersionLeavesCacheAlone() {
+        when(query.getResultList()).thenReturn(List.of());
+
+        assertThat(repository.updateStatus(7L, WorkOrderStatus.COMPLETED, 3L)).isEmpty();
+        assertThat(repository.archive(7L, 3L)).isEmpty();
+
+        verify(cache, never()).evict(any(), any());
+        verify(changeFeed, never()).publish(any(WorkOrderChange.class));
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+    }
+
+    private static void afterCommit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static WorkOrder order(Long id, Long version, WorkOrderStatus status) {
+        WorkOrder wo = new WorkOrder();
+        wo.setId(id);
+        wo.setVersion(version);
+        wo.setStatus(status);
+        return wo;
+    }
+}
@@ -0,0 +1,98 @@
+package com.swedtrac.workorder.search;
+
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkOrderSearchIndexTest {
+
+    private final WorkOrderSearchIndex index = new WorkOrderSearchIndex();
+
+    @Test
+    void allWordsMustMatchExactlyOrAsPrefix() {
+        index.put(doc(1, 1, "Byte av bromsbelägg", "X2 2045", WorkOrderStatus.OPEN));
+        index.put(doc(2, 1, "Broms kontroll", "Rc6 1320", WorkOrderStatus.OPEN));
+        index.put(doc(3, 1, "Hjulsvarvning", "X2 2045", WorkOrderStatus.OPEN));
+
+        assertThat(ids(index.search("broms", null, null, 0, 10))).containsExactly(2L, 1L);
+        assertThat(ids(index.search("broms 2045", null, null, 0, 10))).containsExactly(1L);
+        assertThat(ids(index.search("broms hjul", null, null, 0, 10))).isEmpty();
+        assertThat(index.search("  ", null, null, 0, 10).total()).isZero();
+    }
+
+    @Test
+    void identifierFieldsOutrankDescription() {
+        index.put(WorkOrderSearchIndex.document(1L, 1L, "WO-1", "Service", "Se fordon 2045 efteråt",
+                "SJ", null, null, LocalDateTime.now(), WorkOrderStatus.OPEN));
+        index.put(doc(2, 1, "Service", "X2 2045", WorkOrderStatus.OPEN));
+
+        assertThat(ids(index.search("2045", null, null, 0, 10))).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void statusChangeIsVisibleInHitsAndOlderVersionsAreIgnored() {
+        index.put(doc(1, 3, "Bromsar", "X2 2045", WorkOrderStatus.OPEN));
+
+        index.updateStatus(1, 4, WorkOrderStatus.COMPLETED);
+        assertThat(index.search("bromsar", null, null, 0, 10).hits().get(0).status()).isEqualTo(WorkOrderStatus.COMPLETED);
+
+        // en försenad äldre ändring eller en gammal läsning ska inte vrida tillbaka läget
+        index.updateStatus(1, 3, WorkOrderStatus.IN_PROGRESS);
+        index.put(doc(1, 2, "Bromsar", "X2 2045", WorkOrderStatus.OPEN));
+        assertThat(index.search("bromsar", null, null, 0, 10).hits().get(0).status()).isEqualTo(WorkOrderStatus.COMPLETED);
+    }
+
+    @Test
+    void changesDuringRebuildWinOverRowsReadBeforeThem() {
+        index.beginRebuild();
+        // ombyggnaden har läst ordrarna 1 och 2; sedan tas 1 bort och 2 byter status innan putAll
+        List<WorkOrderSearchIndex.Document> read = List.of(
+                doc(1, 1, "Bromsar", "X2 2045", WorkOrderStatus.OPEN),
+                doc(2, 1, "Bromsar", "Rc6 1320", WorkOrderStatus.OPEN));
+        index.remove(1);
+        index.updateStatus(2, 2, WorkOrderStatus.INVOICED);
+        assertThat(index.isReady()).isFalse();
+
+        index.putAll(read);
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(1);
+        SearchResult result = index.search("bromsar", null, null, 0, 10);
+        assertThat(ids(result)).containsExactly(2L);
+        assertThat(result.hits().get(0).status()).isEqualTo(WorkOrderStatus.INVOICED);
+
+        // efter ombyggnaden antecknas inget längre
+        index.remove(2);
+        index.putAll(List.of());
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void createdRangeAndPagingApplyAfterRanking() {
+        LocalDateTime now = LocalDateTime.now();
+        for (long id = 1; id <= 5; id++) {
+            index.put(WorkOrderSearchIndex.document(id, 1L, "WO-" + id, "Bromsar", null, "SJ", null, null,
+                    now.minusDays(id), WorkOrderStatus.OPEN));
+        }
+
+        SearchResult page = index.search("bromsar", null, null, 1, 2);
+        assertThat(page.total()).isEqualTo(5);
+        assertThat(ids(page)).containsExactly(4L, 3L);
+        assertThat(ids(index.search("bromsar", now.minusDays(3).minusHours(1), now.minusDays(1).minusHours(1), 0, 10)))
+                .containsExactly(3L, 2L);
+    }
+
+    private static WorkOrderSearchIndex.Document doc(long id, long version, String title, String vehicle,
+                                                     WorkOrderStatus status) {
+        return WorkOrderSearchIndex.document(id, version, "WO-" + id, title, null, "SJ", null, vehicle,
+                LocalDateTime.now(), status);
+    }
+
+    private static List<Long> ids(SearchResult result) {
+        return result.hits().stream().map(SearchHit::id).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package com.swedtrac.workorder.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tavlan "Tåg i verkstad" mot databasen: statusfiltret, arkiverade ordrar och grupperingen per plats.
+ * Andra tester lägger också ordrar i databasen, så bara platserna som skapas här kontrolleras.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class TrainsInWorkshopTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper json;
+
+    @Autowired
+    private WorkOrderRepository workOrderRepository;
+
+    @Test
+    void openAndInProgressOrdersAreGroupedPerLocationInOrder() throws Exception {
+        String prefix = "Plats " + UUID.randomUUID() + " ";
+        String depot = prefix + "A";
+        String yard = prefix + "B";
+        Long open = saveOrder(yard, "X2 2001", WorkOrderStatus.OPEN, null);
+        Long inProgress = saveOrder(depot, "X2 2002", WorkOrderStatus.IN_PROGRESS, null);
+        Long first = saveOrder(depot, "X2 2000", WorkOrderStatus.OPEN, null);
+        // varken klara, avbrutna eller arkiverade ordrar står på tavlan
+        saveOrder(depot, "X2 2003", WorkOrderStatus.COMPLETED, null);
+        saveOrder(depot, "X2 2004", WorkOrderStatus.CANCELLED, null);
+        saveOrder(prefix + "C", "X2 2005", WorkOrderStatus.OPEN, LocalDateTime.now());
+
+        List<JsonNode> groups = groups(prefix);
+
+        assertThat(groups).extracting(g -> g.get("location").asText()).containsExactly(depot, yard);
+        // inom platsen sorterat på tågnummer
+        assertThat(groups.get(0).get("trains")).extracting(t -> t.get("id").asLong()).containsExactly(first, inProgress);
+        assertThat(groups.get(0).get("trains")).extracting(t -> t.get("status").asText())
+                .containsExactly("OPEN", "IN_PROGRESS");
+        assertThat(groups.get(1).get("trains")).extracting(t -> t.get("id").asLong()).containsExactly(open);
+        // bara tavlans kolumner, ingen beskrivning
+        assertThat(groups.get(1).get("trains").get(0).has("description")).isFalse();
+    }
+
+    // Grupperna för platser som börjar med 'prefix', i svarets ordning
+    private List<JsonNode> groups(String prefix) throws Exception {
+        String body = mvc.perform(get("/api/workorders/trains-in-workshop"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<JsonNode> groups = new ArrayList<>();
+        for (JsonNode group : json.readTree(body)) {
+            if (group.get("location").asText().startsWith(prefix)) groups.add(group);
+        }
+        return groups;
+    }
+
+    private Long saveOrder(String location, String trainNumber, WorkOrderStatus status, LocalDateTime archivedAt) {
+        WorkOrder wo = WorkOrderDetailControllerTest.newOrder();
+        wo.setLocation(location);
+        wo.setTrainNumber(trainNumber);
+        wo.setStatus(status);
+        wo.setArchivedAt(archivedAt);
+        wo.setDescription("Lång beskrivning");
+        return workOrderRepository.save(wo).getId();
+    }
+}
@@ -0,0 +1,277 @@
+package com.swedtrac.workorder.web;
+
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.feed.ChangeSet;
+import com.swedtrac.workorder.feed.WorkOrderChange;
+import com.swedtrac.workorder.feed.WorkOrderChangeFeed;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.BulkOutcome;
+import com.swedtrac.workorder.repository.WorkOrderFilter;
+import com.swedtrac.workorder.repository.WorkOrderListItem;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Versionskontroll, massuppdateringar och ändringsdelta i controllern. Repositoryt mockas: de riktade
+ * UPDATE ... RETURNING som status, arkivering och massuppdateringar använder kräver PostgreSQL.
+ */
+@WebMvcTest(WorkOrderController.class)
+class WorkOrderControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private WorkOrderRepository workOrderRepository;
+
+    @MockBean
+    private ArchivedWorkOrderRepository archivedWorkOrderRepository;
+
+    @MockBean
+    private WorkOrderChangeFeed changeFeed;
+
+    @Test
+    void changesWithoutVersionArePreconditionRequired() throws Exception {
+        mvc.perform(patch("/api/workorders/1/status").param("status", "IN_PROGRESS"))
+                .andExpect(status().isPreconditionRequired());
+        mvc.perform(patch("/api/workorders/1/archive"))
+                .andExpect(status().isPreconditionRequired());
+        mvc.perform(put("/api/workorders/1").contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Ny\"}"))
+                .andExpect(status().isPreconditionRequired());
+        verifyNoInteractions(workOrderRepository);
+    }
+
+    @Test
+    void statusChangeReturnsUpdatedOrder() throws Exception {
+        when(workOrderRepository.updateStatus(1L, WorkOrderStatus.IN_PROGRESS, 3L))
+                .thenReturn(Optional.of(order(1L, 4L, WorkOrderStatus.IN_PROGRESS)));
+
+        mvc.perform(patch("/api/workorders/1/status").param("status", "IN_PROGRESS").param("version", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(4))
+                .andExpect(jsonPath("$.status").value("IN_PROGRESS"));
+    }
+
+    @Test
+    void staleStatusChangeIsConflictWithCurrentOrder() throws Exception {
+        when(workOrderRepository.updateStatus(1L, WorkOrderStatus.COMPLETED, 3L)).thenReturn(Optional.empty());
+        when(workOrderRepository.findById(1L)).thenReturn(Optional.of(order(1L, 5L, WorkOrderStatus.READY_FOR_INVOICING)));
+
+        mvc.perform(patch("/api/workorders/1/status").param("status", "COMPLETED").param("version", "3"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.status").value("READY_FOR_INVOICING"));
+    }
+
+    @Test
+    void staleArchiveIsConflictWithCurrentOrder() throws Exception {
+        when(workOrderRepository.archive(1L, 3L)).thenReturn(Optional.empty());
+        when(workOrderRepository.findById(1L)).thenReturn(Optional.of(order(1L, 4L, WorkOrderStatus.INVOICED)));
+
+        mvc.perform(patch("/api/workorders/1/archive").param("version", "3"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void unknownOrderIsNotFoundAndArchivedOrderIsConflict() throws Exception {
+        when(workOrderRepository.updateStatus(anyLong(), any(), anyLong())).thenReturn(Optional.empty());
+        when(workOrderRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(archivedWorkOrderRepository.existsById(2L)).thenReturn(true);
+
+        mvc.perform(patch("/api/workorders/1/status").param("status", "COMPLETED").param("version", "3"))
+                .andExpect(status().isNotFound());
+        mvc.perform(patch("/api/workorders/2/status").param("status", "COMPLETED").param("version", "3"))
+                .andExpect(status().isConflict());
+        mvc.perform(put("/api/workorders/2").contentType(MediaType.APPLICATION_JSON).content("{\"version\":3}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void staleUpdateIsConflictWithoutSaving() throws Exception {
+        when(workOrderRepository.findById(1L)).thenReturn(Optional.of(order(1L, 5L, WorkOrderStatus.OPEN)));
+
+        mvc.perform(put("/api/workorders/1").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Ny titel\",\"version\":4}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.title").value("Bromsar"));
+        verify(workOrderRepository, never()).save(any());
+    }
+
+    @Test
+    void updateRacingAnotherWriterIsConflict() throws Exception {
+        when(workOrderRepository.findById(1L)).thenReturn(Optional.of(order(1L, 5L, WorkOrderStatus.OPEN)));
+        when(workOrderRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(WorkOrder.class, 1L));
+
+        mvc.perform(put("/api/workorders/1").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Ny titel\",\"version\":5}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void updateWithCurrentVersionSaves() throws Exception {
+        when(workOrderRepository.findById(1L)).thenReturn(Optional.of(order(1L, 5L, WorkOrderStatus.OPEN)));
+        when(workOrderRepository.save(any())).thenAnswer(call -> call.getArgument(0));
+
+        mvc.perform(put("/api/workorders/1").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Ny titel\",\"customer\":\"SJ\",\"version\":5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Ny titel"))
+                .andExpect(jsonPath("$.status").value("OPEN"));
+    }
+
+    @Test
+    void bulkStatusReportsOutcomePerIdInRequestOrder() throws Exception {
+        when(workOrderRepository.updateStatusBulk(List.of(3L, 1L, 9L), WorkOrderStatus.INVOICED,
+                List.of(WorkOrderStatus.READY_FOR_INVOICING)))
+                .thenReturn(List.of(
+                        new BulkOutcome(3L, BulkOutcome.Result.UPDATED, WorkOrderStatus.INVOICED, 4L),
+                        new BulkOutcome(1L, BulkOutcome.Result.SKIPPED, WorkOrderStatus.OPEN, 2L),
+                        new BulkOutcome(9L, BulkOutcome.Result.NOT_FOUND, null, null)));
+
+        // dubbletter och null tas bort innan uppdateringen
+        mvc.perform(post("/api/workorders/bulk/status").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[3,1,3,null,9],\"status\":\"INVOICED\","
+                                + "\"fromStatuses\":[\"READY_FOR_INVOICING\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.skipped").value(1))
+                .andExpect(jsonPath("$.notFound").value(1))
+                .andExpect(jsonPath("$.results[0].id").value(3))
+                .andExpect(jsonPath("$.results[0].result").value("UPDATED"))
+                .andExpect(jsonPath("$.results[0].version").value(4))
+                .andExpect(jsonPath("$.results[1].result").value("SKIPPED"))
+                .andExpect(jsonPath("$.results[1].status").value("OPEN"))
+                .andExpect(jsonPath("$.results[2].result").value("NOT_FOUND"));
+    }
+
+    @Test
+    void bulkArchiveByFilterResolvesIdsFirst() throws Exception {
+        when(workOrderRepository.findIds(any(WorkOrderFilter.class), eq(5001))).thenReturn(List.of(5L, 6L));
+        when(workOrderRepository.archiveBulk(List.of(5L, 6L))).thenReturn(List.of(
+                new BulkOutcome(5L, BulkOutcome.Result.UPDATED, WorkOrderStatus.INVOICED, 8L),
+                new BulkOutcome(6L, BulkOutcome.Result.SKIPPED, WorkOrderStatus.INVOICED, 3L)));
+
+        mvc.perform(post("/api/workorders/bulk/archive").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filter\":{\"statuses\":[\"INVOICED\"],\"customer\":\"SJ\"}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.skipped").value(1))
+                .andExpect(jsonPath("$.results.length()").value(2));
+    }
+
+    @Test
+    void bulkWithoutStatusOrTargetIsBadRequest() throws Exception {
+        mvc.perform(post("/api/workorders/bulk/status").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1]}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/workorders/bulk/status").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"INVOICED\"}"))
+                .andExpect(status().isBadRequest());
+        // ett tomt filter skulle träffa alla ordrar; en listmarkör räknas inte som filter
+        mvc.perform(post("/api/workorders/bulk/archive").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filter\":{}}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/workorders/bulk/archive").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[],\"filter\":{\"afterId\":10}}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(workOrderRepository);
+    }
+
+    @Test
+    void bulkOverLimitIsPayloadTooLarge() throws Exception {
+        String ids = LongStream.rangeClosed(1, 5001).mapToObj(Long::toString).collect(Collectors.joining(","));
+        mvc.perform(post("/api/workorders/bulk/archive").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[" + ids + "]}"))
+                .andExpect(status().isPayloadTooLarge());
+
+        when(workOrderRepository.findIds(any(WorkOrderFilter.class), eq(5001)))
+                .thenReturn(LongStream.rangeClosed(1, 5001).boxed().toList());
+        mvc.perform(post("/api/workorders/bulk/status").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filter\":{\"customer\":\"SJ\"},\"status\":\"INVOICED\"}"))
+                .andExpect(status().isPayloadTooLarge());
+        verify(workOrderRepository, never()).updateStatusBulk(any(), any(), any());
+        verify(workOrderRepository, never()).archiveBulk(any());
+    }
+
+    @Test
+    void changesSplitChangedOrdersIntoMatchingRowsAndRemovedIds() throws Exception {
+        when(changeFeed.since("s-4", 500)).thenReturn(new ChangeSet("s-7", false, false, List.of(
+                new WorkOrderChange(1L, WorkOrderChange.Type.STATUS, 3L, WorkOrderStatus.IN_PROGRESS),
+                new WorkOrderChange(2L, WorkOrderChange.Type.STATUS, 6L, WorkOrderStatus.INVOICED))));
+        when(workOrderRepository.findPage(any(WorkOrderFilter.class), eq(2))).thenReturn(List.of(
+                new WorkOrderListItem(1L, "WO-1", "Bromsar", "SJ", null, null, null, "Hagalund", null,
+                        WorkOrderStatus.IN_PROGRESS, null, null, null, 3L)));
+
+        // order 2 matchar inte längre filtret och ska bort ur klientens lista
+        mvc.perform(get("/api/workorders/changes").param("since", "s-4").param("status", "IN_PROGRESS"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("s-7"))
+                .andExpect(jsonPath("$.reset").value(false))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.removed").value(Matchers.contains(2)));
+        verify(workOrderRepository).findPage(argThat(filter -> List.of(1L, 2L).equals(filter.getIds())
+                && List.of(WorkOrderStatus.IN_PROGRESS).equals(filter.getStatuses())), eq(2));
+    }
+
+    @Test
+    void changesWithStaleTokenIsResetWithoutQuery() throws Exception {
+        when(changeFeed.since(any(), anyInt())).thenReturn(new ChangeSet("s-9", true, false, List.of()));
+
+        mvc.perform(get("/api/workorders/changes").param("since", "gammal"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset").value(true))
+                .andExpect(jsonPath("$.token").value("s-9"))
+                .andExpect(jsonPath("$.items").isEmpty());
+        verifyNoInteractions(workOrderRepository);
+    }
+
+    @Test
+    void listCarriesChangeTokenTakenBeforeQuery() throws Exception {
+        when(changeFeed.token()).thenReturn("s-3");
+        when(workOrderRepository.findPage(any(WorkOrderFilter.class), anyInt())).thenReturn(List.of());
+
+        mvc.perform(get("/api/workorders"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Change-Token", "s-3"));
+    }
+
+    static WorkOrder order(Long id, Long version, WorkOrderStatus status) {
+        WorkOrder wo = WorkOrderDetailControllerTest.newOrder();
+        wo.setId(id);
+        wo.setVersion(version);
+        wo.setStatus(status);
+        return wo;
+    }
+}
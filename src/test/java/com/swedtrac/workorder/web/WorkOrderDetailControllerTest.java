@@ -0,0 +1,283 @@
+package com.swedtrac.workorder.web;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swedtrac.workorder.domain.ArchivedMaterialEntry;
+import com.swedtrac.workorder.domain.ArchivedTimeEntry;
+import com.swedtrac.workorder.domain.ArchivedWorkOrder;
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.domain.WorkOrderTimeEntry;
+import com.swedtrac.workorder.repository.ArchivedMaterialEntryRepository;
+import com.swedtrac.workorder.repository.ArchivedTimeEntryRepository;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.TimeEntryRow;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderTimeEntryRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class WorkOrderDetailControllerTest {
+
+    // id för arkivrader, långt ovanför det H2 delar ut till work_orders
+    private static final AtomicLong ARCHIVE_IDS = new AtomicLong(900_000);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper json;
+
+    @Autowired
+    private WorkOrderRepository workOrderRepository;
+
+    @Autowired
+    private WorkOrderTimeEntryRepository timeEntryRepository;
+
+    @Autowired
+    private ArchivedWorkOrderRepository archivedWorkOrderRepository;
+
+    @Autowired
+    private ArchivedTimeEntryRepository archivedTimeEntryRepository;
+
+    @Autowired
+    private ArchivedMaterialEntryRepository archivedMaterialEntryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void savingTimeEntriesUpdatesKeptRowsInsertsNewAndDeletesMissing() throws Exception {
+        WorkOrder wo = workOrderRepository.save(newOrder());
+
+        List<TimeEntryRow> first = saveTimeEntries(wo.getId(), List.of(
+                Map.of("action", "Bromsbelägg", "work", "Byte", "hours", 2.0, "rate", 500.0),
+                Map.of("action", "Hjul", "work", "Svarvning", "hours", 1.5, "rate", 600.0)));
+        assertThat(first).hasSize(2);
+        TimeEntryRow brake = first.get(0);
+        TimeEntryRow wheel = first.get(1);
+        LocalDateTime brakeCreated = timeEntryRepository.findById(brake.id()).orElseThrow().getCreatedAt();
+
+        // bromsraden ändras, hjulraden tas bort och en ny rad läggs till
+        List<TimeEntryRow> second = saveTimeEntries(wo.getId(), List.of(
+                Map.of("id", brake.id(), "action", "Bromsbelägg", "work", "Byte", "hours", 3.0, "rate", 500.0),
+                Map.of("action", "Lampa", "work", "Byte av strålkastare", "hours", 0.5, "rate", 500.0)));
+
+        assertThat(second).extracting(TimeEntryRow::action).containsExactly("Bromsbelägg", "Lampa");
+        assertThat(second.get(0).id()).isEqualTo(brake.id());
+        assertThat(second.get(0).total()).isEqualTo(1500.0);
+        assertThat(timeEntryRepository.existsById(wheel.id())).isFalse();
+
+        WorkOrderTimeEntry kept = timeEntryRepository.findById(brake.id()).orElseThrow();
+        // cachen har nanosekunder, databasen mikrosekunder
+        assertThat(kept.getCreatedAt()).isCloseTo(brakeCreated, within(1, ChronoUnit.MILLIS));
+        assertThat(kept.getHours()).isEqualTo(3.0);
+    }
+
+    @Test
+    void idFromAnotherOrderIsInsertedAsNewRow() throws Exception {
+        WorkOrder other = workOrderRepository.save(newOrder());
+        WorkOrder wo = workOrderRepository.save(newOrder());
+        TimeEntryRow foreign = saveTimeEntries(other.getId(), List.of(
+                Map.of("action", "Skruv", "work", "Dragning", "hours", 1.0, "rate", 400.0))).get(0);
+
+        List<TimeEntryRow> saved = saveTimeEntries(wo.getId(), List.of(
+                Map.of("id", foreign.id(), "action", "Kapad", "work", "Försök", "hours", 9.0, "rate", 9.0)));
+
+        assertThat(saved).hasSize(1);
+        assertThat(saved.get(0).id()).isNotEqualTo(foreign.id());
+        // den andra orderns rad är orörd
+        WorkOrderTimeEntry untouched = timeEntryRepository.findById(foreign.id()).orElseThrow();
+        assertThat(untouched.getAction()).isEqualTo("Skruv");
+        assertThat(untouched.getHours()).isEqualTo(1.0);
+    }
+
+    @Test
+    void totalsFollowSavedRowsWithoutBumpingVersion() throws Exception {
+        WorkOrder wo = newOrder();
+        wo.setCustomer("Kund " + UUID.randomUUID());
+        wo = workOrderRepository.save(wo);
+        Long version = wo.getVersion();
+
+        List<TimeEntryRow> time = saveTimeEntries(wo.getId(), List.of(
+                Map.of("action", "Bromsbelägg", "work", "Byte", "hours", 2.0, "rate", 500.0),
+                Map.of("action", "Hjul", "work", "Svarvning", "hours", 1.5, "rate", 600.0)));
+        postRows(wo.getId(), "material-entries", List.of(
+                Map.of("articleNumber", "12 34", "description", "Belägg", "quantity", 4.0, "unit", "st", "price", 250.0),
+                Map.of("articleNumber", "56 78", "description", "Olja", "quantity", 2.0, "unit", "L", "price", 80.0)));
+
+        JsonNode summary = summary(wo.getCustomer());
+        assertThat(summary.get("hours").asDouble()).isEqualTo(3.5);
+        assertThat(summary.get("timeTotal").asDouble()).isEqualTo(1900.0);
+        assertThat(summary.get("materialTotal").asDouble()).isEqualTo(1160.0);
+        assertThat(summary.get("total").asDouble()).isEqualTo(3060.0);
+
+        // borttagen tidrad och tom materiallista: summorna räknas om ur det som finns kvar
+        saveTimeEntries(wo.getId(), List.of(Map.of("id", time.get(0).id(),
+                "action", "Bromsbelägg", "work", "Byte", "hours", 2.0, "rate", 500.0)));
+        postRows(wo.getId(), "material-entries", List.of());
+
+        summary = summary(wo.getCustomer());
+        assertThat(summary.get("hours").asDouble()).isEqualTo(2.0);
+        assertThat(summary.get("timeTotal").asDouble()).isEqualTo(1000.0);
+        assertThat(summary.get("materialTotal").asDouble()).isEqualTo(0.0);
+        assertThat(summary.get("total").asDouble()).isEqualTo(1000.0);
+        assertThat(workOrderRepository.findById(wo.getId()).orElseThrow().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void savingEntriesOnArchivedOrderIsConflictAndOnUnknownOrderNotFound() throws Exception {
+        ArchivedWorkOrder archived = archivedOrder();
+
+        mvc.perform(post("/api/workorders/{id}/time-entries", archived.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isConflict());
+        mvc.perform(post("/api/workorders/{id}/material-entries", -1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void detailFetchesOrderAndBothCollectionsInTwoStatements() throws Exception {
+        WorkOrder wo = workOrderRepository.save(newOrder());
+        saveTimeEntries(wo.getId(), List.of(
+                Map.of("action", "Bromsbelägg", "work", "Byte", "hours", 2.0, "rate", 500.0),
+                Map.of("action", "Hjul", "work", "Svarvning", "hours", 1.5, "rate", 600.0)));
+        postRows(wo.getId(), "material-entries", List.of(
+                Map.of("articleNumber", "12 34", "description", "Belägg", "quantity", 4.0, "unit", "st", "price", 250.0)));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            long before = statistics.getPrepareStatementCount();
+            JsonNode detail = detail(wo.getId());
+            // en fetch join per samling, inga lata laddningar efteråt
+            assertThat(statistics.getPrepareStatementCount() - before).isEqualTo(2);
+
+            assertThat(detail.get("order").get("id").asLong()).isEqualTo(wo.getId());
+            assertThat(detail.get("timeEntries")).extracting(e -> e.get("action").asText())
+                    .containsExactly("Bromsbelägg", "Hjul");
+            assertThat(detail.get("materialEntries")).extracting(e -> e.get("articleNumber").asText())
+                    .containsExactly("12 34");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void detailOfArchivedOrderIsReadFromTheArchive() throws Exception {
+        ArchivedWorkOrder archived = archivedOrder();
+        LocalDateTime then = archived.getCreatedAt();
+        ArchivedTimeEntry time = new ArchivedTimeEntry();
+        time.setId(archived.getId());
+        time.setWorkOrderId(archived.getId());
+        time.setAction("Boggi");
+        time.setWork("Översyn");
+        time.setHours(4.0);
+        time.setRate(500.0);
+        time.setTotal(2000.0);
+        time.setCreatedAt(then);
+        time.setUpdatedAt(then);
+        archivedTimeEntryRepository.save(time);
+        ArchivedMaterialEntry material = new ArchivedMaterialEntry();
+        material.setId(archived.getId());
+        material.setWorkOrderId(archived.getId());
+        material.setArticleNumber("90 12");
+        material.setDescription("Kabel");
+        material.setQuantity(10.0);
+        material.setUnit("m");
+        material.setPrice(20.0);
+        material.setTotal(200.0);
+        material.setCreatedAt(then);
+        material.setUpdatedAt(then);
+        archivedMaterialEntryRepository.save(material);
+
+        JsonNode detail = detail(archived.getId());
+
+        assertThat(detail.get("order").get("orderNumber").asText()).isEqualTo(archived.getOrderNumber());
+        assertThat(detail.get("order").get("status").asText()).isEqualTo("INVOICED");
+        assertThat(detail.get("timeEntries")).extracting(e -> e.get("action").asText()).containsExactly("Boggi");
+        assertThat(detail.get("materialEntries")).extracting(e -> e.get("total").asDouble()).containsExactly(200.0);
+        mvc.perform(get("/api/workorders/{id}/detail", -1L))
+                .andExpect(status().isNotFound());
+    }
+
+    private JsonNode detail(Long workOrderId) throws Exception {
+        String body = mvc.perform(get("/api/workorders/{id}/detail", workOrderId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return json.readTree(body);
+    }
+
+    private ArchivedWorkOrder archivedOrder() {
+        ArchivedWorkOrder archived = new ArchivedWorkOrder();
+        archived.setId(ARCHIVE_IDS.incrementAndGet());
+        archived.setOrderNumber("A-" + UUID.randomUUID());
+        archived.setTitle("Arkiverad");
+        archived.setCustomer("SJ");
+        archived.setStatus(WorkOrderStatus.INVOICED);
+        archived.setCreatedAt(LocalDateTime.now().minusYears(2).truncatedTo(ChronoUnit.SECONDS));
+        archived.setUpdatedAt(archived.getCreatedAt());
+        archived.setArchivedAt(archived.getCreatedAt());
+        archived.setVersion(3L);
+        return archivedWorkOrderRepository.save(archived);
+    }
+
+    private List<TimeEntryRow> saveTimeEntries(Long workOrderId, List<Map<String, Object>> rows) throws Exception {
+        return json.readValue(postRows(workOrderId, "time-entries", rows), new TypeReference<>() {
+        });
+    }
+
+    private String postRows(Long workOrderId, String path, List<Map<String, Object>> rows) throws Exception {
+        return mvc.perform(post("/api/workorders/{id}/" + path, workOrderId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(rows)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    // Ordern som den syns i /summary (kunden är unik per test)
+    private JsonNode summary(String customer) throws Exception {
+        String body = mvc.perform(get("/api/workorders/summary").param("customer", customer))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        JsonNode items = json.readTree(body).get("items");
+        assertThat(items).hasSize(1);
+        return items.get(0);
+    }
+
+    static WorkOrder newOrder() {
+        WorkOrder wo = new WorkOrder();
+        wo.setOrderNumber("T-" + UUID.randomUUID());
+        wo.setTitle("Bromsar");
+        wo.setCustomer("SJ");
+        wo.setLocation("Hagalund");
+        return wo;
+    }
+}
@@ -0,0 +1,218 @@
+package com.swedtrac.workorder.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swedtrac.workorder.domain.ArchivedWorkOrder;
+import com.swedtrac.workorder.domain.WorkOrder;
+import com.swedtrac.workorder.domain.WorkOrderStatus;
+import com.swedtrac.workorder.repository.ArchivedWorkOrderRepository;
+import com.swedtrac.workorder.repository.WorkOrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class WorkOrderPagingTest {
+
+    // id för arkivrader, långt ovanför det H2 delar ut till work_orders
+    private static final AtomicLong ARCHIVE_IDS = new AtomicLong(700_000);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper json;
+
+    @Autowired
+    private WorkOrderRepository workOrderRepository;
+
+    @Autowired
+    private ArchivedWorkOrderRepository archivedWorkOrderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cursorWalksListNewestFirstWithoutGapsOrRepeats() throws Exception {
+        String customer = "Kund " + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Long newest = saveOrder(customer, now);
+        // samma updatedAt: högst id först
+        Long tieA = saveOrder(customer, now.minusHours(1));
+        Long tieB = saveOrder(customer, now.minusHours(1));
+        Long older = saveOrder(customer, now.minusHours(2));
+        Long oldest = saveOrder(customer, now.minusHours(3));
+
+        List<JsonNode> pages = walk(customer, 2);
+
+        assertThat(pages).hasSize(3);
+        assertThat(ids(pages)).containsExactly(newest, Math.max(tieA, tieB), Math.min(tieA, tieB), older, oldest);
+        assertThat(pages.get(2).get("nextCursor").isNull()).isTrue();
+    }
+
+    @Test
+    void cursorKeepsFilterAndOrderWhenRowsAreAddedBetweenPages() throws Exception {
+        String customer = "Kund " + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Long first = saveOrder(customer, now.minusMinutes(1));
+        Long second = saveOrder(customer, now.minusMinutes(2));
+        Long third = saveOrder(customer, now.minusMinutes(3));
+
+        JsonNode page = list(customer, 2, null);
+        // en ny order hamnar före markören och påverkar inte nästa sida
+        saveOrder(customer, now);
+        JsonNode next = list(customer, 2, page.get("nextCursor").asText());
+
+        assertThat(ids(List.of(page))).containsExactly(first, second);
+        assertThat(ids(List.of(next))).containsExactly(third);
+    }
+
+    @Test
+    void pagesMergeOrdersMovedToArchiveInSameOrder() throws Exception {
+        String customer = "Kund " + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Long hot = saveOrder(customer, now);
+        Long coldNewer = saveArchived(customer, now.minusHours(1));
+        WorkOrder archivedHot = WorkOrderDetailControllerTest.newOrder();
+        archivedHot.setCustomer(customer);
+        archivedHot.setUpdatedAt(now.minusHours(2));
+        archivedHot.setArchivedAt(now.minusHours(2));
+        Long hotArchived = workOrderRepository.save(archivedHot).getId();
+        Long coldOlder = saveArchived(customer, now.minusHours(3));
+
+        // limit=1 ger sidor där varannan rad kommer från vardera tabellen
+        assertThat(ids(walk(customer, 1))).containsExactly(hot, coldNewer, hotArchived, coldOlder);
+        assertThat(ids(walk(customer, 3))).containsExactly(hot, coldNewer, hotArchived, coldOlder);
+        assertThat(ids(List.of(list(customer, 10, null, "false")))).containsExactly(hot);
+        assertThat(ids(List.of(list(customer, 10, null, "true")))).containsExactly(coldNewer, hotArchived, coldOlder);
+
+        // flyttade ordrar går fortfarande att läsa en och en
+        mvc.perform(get("/api/workorders/{id}", coldNewer))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void listsCarryOnlyProjectionColumnsAndLoadNoEntities() throws Exception {
+        String customer = "Kund " + UUID.randomUUID();
+        Long id = saveOrder(customer, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        mvc.perform(post("/api/workorders/{id}/time-entries", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"action\":\"Hjul\",\"work\":\"Svarvning\",\"hours\":2,\"rate\":500}]"))
+                .andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            long entities = statistics.getEntityLoadCount();
+            long collections = statistics.getCollectionFetchCount();
+            JsonNode item = list(customer, 10, null).get("items").get(0);
+            JsonNode summary = json.readTree(mvc.perform(get("/api/workorders/summary").param("customer", customer))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8)).get("items").get(0);
+
+            // listorna är projektioner: inga entiteter hydreras och inga samlingar laddas
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(entities);
+            assertThat(statistics.getCollectionFetchCount()).isEqualTo(collections);
+            assertThat(fieldNames(item)).containsExactlyInAnyOrder("id", "orderNumber", "title", "customer",
+                    "category", "trainNumber", "vehicle", "location", "track", "status", "createdAt", "updatedAt",
+                    "archivedAt", "version");
+            assertThat(fieldNames(summary)).containsExactlyInAnyOrder("id", "orderNumber", "title", "customer",
+                    "status", "updatedAt", "archivedAt", "hours", "timeTotal", "materialTotal", "total");
+            assertThat(summary.get("timeTotal").asDouble()).isEqualTo(1000.0);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() throws Exception {
+        mvc.perform(get("/api/workorders").param("cursor", "inte-en-cursor"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/workorders/summary").param("cursor", "MjAyNHxhYmM"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<JsonNode> walk(String customer, int limit) throws Exception {
+        List<JsonNode> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = list(customer, limit, cursor);
+            pages.add(page);
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null && pages.size() < 10);
+        return pages;
+    }
+
+    private JsonNode list(String customer, int limit, String cursor) throws Exception {
+        return list(customer, limit, cursor, null);
+    }
+
+    private JsonNode list(String customer, int limit, String cursor, String archived) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/workorders")
+                .param("customer", customer)
+                .param("limit", String.valueOf(limit));
+        if (cursor != null) request.param("cursor", cursor);
+        if (archived != null) request.param("archived", archived);
+        String body = mvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return json.readTree(body);
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static List<Long> ids(List<JsonNode> pages) {
+        List<Long> ids = new ArrayList<>();
+        pages.forEach(page -> page.get("items").forEach(item -> ids.add(item.get("id").asLong())));
+        return ids;
+    }
+
+    // Order som redan flyttats till arkivtabellen (arkivet delar id med work_orders)
+    private Long saveArchived(String customer, LocalDateTime updatedAt) {
+        ArchivedWorkOrder archived = new ArchivedWorkOrder();
+        archived.setId(ARCHIVE_IDS.incrementAndGet());
+        archived.setOrderNumber("A-" + UUID.randomUUID());
+        archived.setTitle("Arkiverad");
+        archived.setCustomer(customer);
+        archived.setStatus(WorkOrderStatus.INVOICED);
+        archived.setCreatedAt(updatedAt.minusDays(30));
+        archived.setUpdatedAt(updatedAt);
+        archived.setArchivedAt(updatedAt);
+        archived.setVersion(2L);
+        return archivedWorkOrderRepository.save(archived).getId();
+    }
+
+    private Long saveOrder(String customer, LocalDateTime updatedAt) {
+        WorkOrder wo = WorkOrderDetailControllerTest.newOrder();
+        wo.setCustomer(customer);
+        wo.setUpdatedAt(updatedAt);
+        // finns i entiteten men ska aldrig med i listorna
+        wo.setDescription("Lång beskrivning som bara detaljvyn visar");
+        return workOrderRepository.save(wo).getId();
+    }
+}